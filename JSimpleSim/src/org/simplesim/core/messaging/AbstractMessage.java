@@ -11,6 +11,8 @@
  */
 package org.simplesim.core.messaging;
 
+import java.io.Serializable;
+
 /**
  * Abstract base class for messages that are sent from one port to another.
  * <p>
@@ -25,9 +27,13 @@ package org.simplesim.core.messaging;
  * @see RoutingMessage
  * 
  */
-public class AbstractMessage<A> {
+public class AbstractMessage<A> implements Serializable {
+
+	private static final long serialVersionUID=1L;
 	
+	@SuppressWarnings("serial") // Conditionally serializable
 	private final A src, dest;
+	@SuppressWarnings("serial") // Conditionally serializable
 	private final Object content;
 	
 	/**
@@ -29,6 +29,10 @@ import org.simplesim.model.ModelEntity;
  * <p>
  * Each port must also implement its own {@code copyMessages} strategy to
  * support message forwarding during the simulation run.
+ * <p>
+ * Writing messages is synchronized, so that several threads may forward
+ * messages to the same port concurrently. All other operations are not
+ * thread-safe.
  *
  * @see SinglePort
  * @see MultiPort
@@ -37,6 +41,8 @@ import org.simplesim.model.ModelEntity;
  */
 public abstract class AbstractPort implements Port {
 
+	private static final long serialVersionUID=1L;
+
 	/** parent model that contains this port */
 	private final ModelEntity parent;
 
@@ -45,7 +51,7 @@ public abstract class AbstractPort implements Port {
 	 * set to 1. Thus memory consumption is low in the beginning, it will
 	 * automatically be adapted if needed later on.
 	 */
-	private final List<AbstractMessage<?>> messages=new ArrayList<>(1);
+	private final ArrayList<AbstractMessage<?>> messages=new ArrayList<>(1);
 
 	public AbstractPort(ModelEntity model) {
 		parent=model;
@@ -80,12 +86,12 @@ public abstract class AbstractPort implements Port {
 	}
 
 	@Override
-	public final void write(AbstractMessage<?> message) {
+	public final synchronized void write(AbstractMessage<?> message) {
 		messages.add(message);
 	}
 
 	@Override
-	public final void writeAll(Collection<AbstractMessage<?>> m) {
+	public final synchronized void writeAll(Collection<AbstractMessage<?>> m) {
 		messages.addAll(m);
 	}
 
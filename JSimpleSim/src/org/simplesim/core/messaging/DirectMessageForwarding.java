@@ -27,6 +27,15 @@ public final class DirectMessageForwarding implements MessageForwardingStrategy
 
 	@Override
 	public void forwardMessages(Collection<Agent> agentList) {
+		forward(agentList);
+	}
+
+	@Override
+	public void forwardMessages(Collection<Agent> senders, Collection<Agent> receivers) {
+		addReceivers(forward(senders),receivers);
+	}
+
+	private Collection<Port> forward(Collection<Agent> agentList) {
 		// part I: get list of all ports carrying an outgoing message
 		final Collection<Port> destinations=new ArrayList<>();
 		final Collection<Port> sources=listPortsWithOutgoingMsg(agentList);
@@ -34,6 +43,7 @@ public final class DirectMessageForwarding implements MessageForwardingStrategy
 		// connections
 		for (final Port src : sources) destinations.addAll(src.forwardMessages());
 		// Only one copy cycle because there should be only direct connections
+		return destinations;
 	}
 
 }
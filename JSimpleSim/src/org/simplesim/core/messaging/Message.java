@@ -29,6 +29,8 @@ import org.simplesim.model.Agent;
  * 
  */
 public final class Message extends AbstractMessage<Agent> {
+
+	private static final long serialVersionUID=1L;
 	
 	public Message(Agent s, Agent d, Object  c) {
 		super(s,d,c);
@@ -37,6 +37,36 @@ public interface MessageForwardingStrategy {
 	 */
 	void forwardMessages(Collection<Agent> sender);
 
+	/**
+	 * Does the message forwarding and collects the agents to wake.
+	 * <p>
+	 * All receiving agents that wake on messages or are idle are added to the
+	 * given collection, so the simulator can activate them. The default implementation
+	 * just forwards the messages without collecting any receivers.
+	 *
+	 * @param senders   collection of senders where the messages originate
+	 * @param receivers collection to add the receiving agents to wake
+	 * @see Agent#isWakeOnMessage()
+	 * @see Agent#isIdle()
+	 */
+	default void forwardMessages(Collection<Agent> senders, Collection<Agent> receivers) {
+		forwardMessages(senders);
+	}
+
+	/**
+	 * Adds the agents owning the given destination ports to the receivers if they
+	 * wake on messages or are idle.
+	 *
+	 * @param ports     destination ports of the last forwarding step
+	 * @param receivers collection to add the receiving agents to wake
+	 */
+	default void addReceivers(Collection<Port> ports, Collection<Agent> receivers) {
+		for (final Port port : ports) if (port.isEndPoint()&&(port.getParent() instanceof Agent)) {
+			final Agent agent=(Agent) port.getParent();
+			if (agent.isWakeOnMessage()||agent.isIdle()) receivers.add(agent);
+		}
+	}
+
 	/**
 	 * Build a collection of all ports with outgoing messages based on the
 	 * collection of sending agents.
@@ -11,10 +11,11 @@
  */
 package org.simplesim.core.messaging;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 
 import org.simplesim.model.ModelEntity;
 
@@ -34,7 +35,10 @@ import static org.simplesim.model.BasicModelEntity.UniqueConstraintViolationExce
  */
 public final class MultiPort extends AbstractPort {
 
-	private final List<Port> destinations=new ArrayList<>();
+	private static final long serialVersionUID=1L;
+
+	/** not serialized, the connections are written to the connection table of the model */
+	private transient ArrayList<Port> destinations=new ArrayList<>();
 
 	public MultiPort(ModelEntity model) {
 		super(model);
@@ -71,4 +75,14 @@ public final class MultiPort extends AbstractPort {
 		return destinations.contains(port);
 	}
 
+	@Override
+	public Collection<Port> listConnections() {
+		return Collections.unmodifiableList(destinations);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		destinations=new ArrayList<>();
+	}
+
 }
@@ -6,6 +6,7 @@
  */
 package org.simplesim.core.messaging;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import org.simplesim.model.ModelEntity;
@@ -22,13 +23,16 @@ import org.simplesim.model.ModelEntity;
  * <p>
  * Each port must also implement its own {@code copyMessages} strategy to
  * support message forwarding during the simulation run.
+ * <p>
+ * Ports are serializable together with their connections and pending messages,
+ * so the content of messages should be serializable, too.
  *
  * @see SinglePort
  * @see MultiPort
  * @see SwitchPort
  * @see org.simplesim.model.RoutingDomain.RoutingPort RoutingPort
  */
-public interface Port {
+public interface Port extends Serializable {
 
 	/**
 	 * Connects this port to another one.
@@ -64,6 +68,14 @@ public interface Port {
 	 */
 	boolean isConnectedTo(Port port);
 
+	/**
+	 * Lists all ports this port is connected to.
+	 *
+	 * @return unmodifiable collection of the destination ports, empty if this
+	 *         port is an end point
+	 */
+	Collection<Port> listConnections();
+
 	/**
 	 * Implements a message forwarding strategy specific for the port class.
 	 * <p>
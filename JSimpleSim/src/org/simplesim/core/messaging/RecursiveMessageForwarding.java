@@ -33,6 +33,18 @@ public final class RecursiveMessageForwarding implements MessageForwardingStrate
 
 	@Override
 	public void forwardMessages(Collection<Agent> agentList) {
+		forward(agentList,null);
+	}
+
+	@Override
+	public void forwardMessages(Collection<Agent> senders, Collection<Agent> receivers) {
+		forward(senders,receivers);
+	}
+
+	/**
+	 * Does the forwarding, receivers are only collected if a collection is given.
+	 */
+	private void forward(Collection<Agent> agentList, Collection<Agent> receivers) {
 		// part I: get list of all ports carrying an outgoing message
 		Collection<Port> sources=listPortsWithOutgoingMsg(agentList);
 		Collection<Port> destinations=new ArrayList<>();
@@ -45,6 +57,7 @@ public final class RecursiveMessageForwarding implements MessageForwardingStrate
 				destinations.addAll(src.forwardMessages());
 			}
 			if (destinations.isEmpty()) return; // no more messages to forward
+			if (receivers!=null) addReceivers(destinations,receivers);
 			final Collection<Port> temp=sources;
 			sources=destinations;
 			destinations=temp;
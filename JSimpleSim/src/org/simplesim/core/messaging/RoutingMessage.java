@@ -26,6 +26,8 @@ package org.simplesim.core.messaging;
 
 public final class RoutingMessage extends AbstractMessage<int[]> {
 
+	private static final long serialVersionUID=1L;
+
 	public RoutingMessage(int[] source, int[] destination, Object content) {
 		super(source,destination,content);
 	}
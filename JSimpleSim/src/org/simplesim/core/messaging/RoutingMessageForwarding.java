@@ -46,6 +46,18 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 
 	@Override
 	public void forwardMessages(Collection<Agent> agentList) {
+		forward(agentList,null);
+	}
+
+	@Override
+	public void forwardMessages(Collection<Agent> senders, Collection<Agent> receivers) {
+		forward(senders,receivers);
+	}
+
+	/**
+	 * Does the forwarding, receivers are only collected if a collection is given.
+	 */
+	private void forward(Collection<Agent> agentList, Collection<Agent> receivers) {
 		// part I: build a list of sets, each set representing a level of the overall
 		// model and containing all respective ports with outgoing messages
 		final Collection<Port> sources=listPortsWithOutgoingMsg(agentList);
@@ -56,13 +68,13 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 			layers.get(level).add(port);
 		}
 		// part II: copy all message from bottom most level upwards to the root layer
-		doHierarchicalCopyingUp();
+		doHierarchicalCopyingUp(receivers);
 		// part III: copy messages from outport to inport of root layer
 		root.getOutport().forwardMessages();
 		layers.get(ModelEntity.ROOT_LEVEL).clear();
 		layers.get(ModelEntity.ROOT_LEVEL).add(root.getInport());
 		// part IV: copy messages from root layer down to their destination
-		doHierarchicalCopyingDown();
+		doHierarchicalCopyingDown(receivers);
 		// part V: recycling - empty sets for next usage to save memory and time
 		for (final Set<Port> set : layers) set.clear();
 	}
@@ -70,7 +82,7 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 	/**
 	 * Copy messages from bottom most model to the top of the model tree.
 	 */
-	private void doHierarchicalCopyingUp() {
+	private void doHierarchicalCopyingUp(Collection<Agent> receivers) {
 		for (int level=layers.size()-1; level>ModelEntity.ROOT_LEVEL; level--) {
 			final Set<Port> sources=layers.get(level);
 			final Set<Port> destinations=layers.get(level-1);
@@ -78,7 +90,9 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 				// make sure there is another connection
 				if (src.isEndPoint()) continue;
 				// copy messages and add new destinations to list
-				destinations.addAll(src.forwardMessages());
+				final Collection<Port> ports=src.forwardMessages();
+				destinations.addAll(ports);
+				if (receivers!=null) addReceivers(ports,receivers);
 			}
 			sources.clear(); // all ports processed in this level, important for re-use next time!
 		}
@@ -87,7 +101,7 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 	/**
 	 * Copy messages from top of the model tree to the bottom most level.
 	 */
-	private void doHierarchicalCopyingDown() {
+	private void doHierarchicalCopyingDown(Collection<Agent> receivers) {
 		for (int level=ModelEntity.ROOT_LEVEL+1; level<layers.size(); level++) {
 			final Set<Port> sources=layers.get(level-1);
 			final Set<Port> destinations=layers.get(level);
@@ -95,7 +109,9 @@ public final class RoutingMessageForwarding implements MessageForwardingStrategy
 				// make sure there is another connection
 				if (src.isEndPoint()) continue;
 				// copy messages and add new destinations to list
-				destinations.addAll(src.forwardMessages());
+				final Collection<Port> ports=src.forwardMessages();
+				destinations.addAll(ports);
+				if (receivers!=null) addReceivers(ports,receivers);
 			}
 			sources.clear(); // all ports processed in this level, important for re-use next time!
 			if (destinations.isEmpty()) return; // no more ports to process
@@ -11,6 +11,8 @@
  */
 package org.simplesim.core.messaging;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -26,10 +28,13 @@ import org.simplesim.model.ModelEntity;
  */
 public final class SinglePort extends AbstractPort {
 
+	private static final long serialVersionUID=1L;
+
 	/**
 	 * Save single destination port in a list with fixed size of one. This facilitates message forwarding.
+	 * Not serialized, the connection is written to the connection table of the model.
 	 */
-	private List<Port> destination=Collections.emptyList();
+	private transient List<Port> destination=Collections.emptyList();
 
 	public SinglePort(ModelEntity model) {
 		super(model);
@@ -67,6 +72,11 @@ public final class SinglePort extends AbstractPort {
 		return destination;
 	}
 
+	@Override
+	public Collection<Port> listConnections() {
+		return destination;
+	}
+
 	/**
 	 * Returns the destination of this port.
 	 *
@@ -76,4 +86,9 @@ public final class SinglePort extends AbstractPort {
 		return destination.get(0);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		destination=Collections.emptyList();
+	}
+
 }
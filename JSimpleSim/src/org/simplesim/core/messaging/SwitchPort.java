@@ -11,11 +11,12 @@
  */
 package org.simplesim.core.messaging;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.Map;
 
 import org.simplesim.model.ModelEntity;
 import org.simplesim.model.ModelEntity.UniqueConstraintViolationException;
@@ -35,7 +36,10 @@ import org.simplesim.model.ModelEntity.UniqueConstraintViolationException;
  */
 public final class SwitchPort extends AbstractPort {
 
-	private final Map<ModelEntity, Port> destinations=new IdentityHashMap<>();
+	private static final long serialVersionUID=1L;
+
+	/** not serialized, the connections are written to the connection table of the model */
+	private transient IdentityHashMap<ModelEntity, Port> destinations=new IdentityHashMap<>();
 
 	public SwitchPort(ModelEntity model) {
 		super(model);
@@ -79,4 +83,14 @@ public final class SwitchPort extends AbstractPort {
 		return destinations.containsValue(port);
 	}
 
+	@Override
+	public Collection<Port> listConnections() {
+		return Collections.unmodifiableCollection(destinations.values());
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		destinations=new IdentityHashMap<>();
+	}
+
 }
@@ -10,10 +10,13 @@
  */
 package org.simplesim.core.scheduling;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * This abstract class implements basic functionality of a bucket queue to be
@@ -32,12 +35,21 @@ import java.util.Map;
  */
 abstract class AbstractBucketQueue<E, M extends Map<Time, List<E>>> implements EventQueue<E> {
 
+	private static final long serialVersionUID=1L;
+
 	/** the collection of buckets organized as a map: time --> bucket */
+	@SuppressWarnings("serial") // Conditionally serializable
 	private final M map;
 
 	/** number of total events, accessible for subclasses */
 	private int size=0;
 
+	/** maximum number of empty buckets kept for reuse */
+	private static final int MAX_POOL_SIZE=64;
+
+	/** empty buckets to be reused, avoids creating a new list for each new time stamp */
+	private final ArrayDeque<List<E>> pool=new ArrayDeque<>(MAX_POOL_SIZE);
+
 	@SuppressWarnings("serial")
 	static class UnexpectedEmptyBucketException extends RuntimeException {
 
@@ -66,9 +78,45 @@ abstract class AbstractBucketQueue<E, M extends Map<Time, List<E>>> implements E
 		}
 		return null;
 	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (Map.Entry<Time, List<E>> entry : getMap().entrySet()) {
+			events.addAll(entry.getValue());
+			times.addAll(Collections.nCopies(entry.getValue().size(),entry.getKey()));
+		}
+	}
 	
 	void removeEmptyBucket(Time time) {
-		getMap().remove(time);		
+		final List<E> bucket=getMap().remove(time);
+		if (bucket!=null) recycleBucket(bucket);
+	}
+
+	/**
+	 * Puts a bucket that is no longer used into the pool of reusable buckets.
+	 *
+	 * @param bucket the bucket, must not be referenced elsewhere
+	 */
+	void recycleBucket(List<E> bucket) {
+		if (pool.size()<MAX_POOL_SIZE) {
+			bucket.clear();
+			pool.push(bucket);
+		}
+	}
+
+	/**
+	 * Creates a new bucket and maps it to the given time stamp.
+	 * <p>
+	 * Subclasses may override this hook to keep track of new time stamps.
+	 *
+	 * @param time the time stamp of the new bucket
+	 * @return the new bucket
+	 */
+	List<E> createBucket(Time time) {
+		List<E> bucket=pool.poll();
+		if (bucket==null) bucket=new ArrayList<>();
+		getMap().put(time,bucket);
+		return bucket;
 	}
 
 	/*
@@ -119,14 +167,35 @@ abstract class AbstractBucketQueue<E, M extends Map<Time, List<E>>> implements E
 	@Override
 	public void enqueue(E event, Time time) {
 		List<E> bucket=getMap().get(time);
-		if (bucket==null) {
-			bucket=new ArrayList<>();
-			getMap().put(time,bucket);
-		}
+		if (bucket==null) bucket=createBucket(time);
 		bucket.add(event);
 		size++;
 	}
 
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * The events are sorted by their time stamps first, so each bucket only has to
+	 * be looked up once for all events with the same time stamp.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		final List<EventQueueEntry<E>> entries=new ArrayList<>(events.size());
+		for (final E event : events) entries.add(new EventQueueEntry<>(times.apply(event),event));
+		Collections.sort(entries);
+		Time time=null;
+		List<E> bucket=null;
+		for (final EventQueueEntry<E> entry : entries) {
+			if (!entry.getTime().equals(time)) {
+				time=entry.getTime();
+				bucket=getMap().get(time);
+				if (bucket==null) bucket=createBucket(time);
+			}
+			bucket.add(entry.getEvent());
+		}
+		size+=entries.size();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -168,6 +237,23 @@ abstract class AbstractBucketQueue<E, M extends Map<Time, List<E>>> implements E
 		return dequeueAll(getMin());
 	}
 
+	/**
+	 * Dequeues all elements with the smallest time stamp and adds them to the
+	 * given list.
+	 * <p>
+	 * The emptied bucket is kept for reuse, so in a steady state no new bucket
+	 * lists have to be created.
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final List<E> bucket=dequeueAll(); // subclasses keep track of the minimal time stamp
+		final int count=bucket.size();
+		sink.addAll(bucket);
+		if (count>0) recycleBucket(bucket);
+		return count;
+	}
+
 	@Override
 	public String toString() {
 		final StringBuffer sb=new StringBuffer();
@@ -13,8 +13,10 @@ package org.simplesim.core.scheduling;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Provides basic functionality of an event queue to be extended by concrete
@@ -31,7 +33,10 @@ import java.util.List;
  */
 abstract class AbstractEventQueue<E, Q extends Collection<EventQueueEntry<E>>> implements EventQueue<E> {
 
-	private final Q queue; // the queue as subclass of a Collection
+	private static final long serialVersionUID=1L;
+
+	@SuppressWarnings("serial") // Conditionally serializable
+	private Q queue; // the queue as subclass of a Collection
 	
 	/**
 	 * Class constructor taking the event queue and the cache size as parameters
@@ -47,12 +52,29 @@ abstract class AbstractEventQueue<E, Q extends Collection<EventQueueEntry<E>>> i
 		return queue;
 	}
 
+	/**
+	 * Replaces the underlying collection, e.g. by a collection built in bulk.
+	 *
+	 * @param q the new collection
+	 */
+	void setQueue(Q q) {
+		queue=q;
+	}
+
 	@Override
 	public Time getTime(E event) {
 		for (final EventQueueEntry<E> entry : getQueue()) if (entry.getEvent().equals(event)) return entry.getTime();
 		return null;
 	}
 
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (final EventQueueEntry<E> entry : getQueue()) {
+			events.add(entry.getEvent());
+			times.add(entry.getTime());
+		}
+	}
+
 	@Override
 	public boolean isEmpty() {
 		return getQueue().isEmpty();
@@ -76,6 +98,18 @@ abstract class AbstractEventQueue<E, Q extends Collection<EventQueueEntry<E>>> i
 		return null;
 	}
 
+	/**
+	 * Removes all given events in a single pass over the queue.
+	 */
+	@Override
+	public int dequeueEvents(Collection<E> events) {
+		if (events.size()<2) return EventQueue.super.dequeueEvents(events);
+		final Set<E> set=new HashSet<>(events);
+		final int before=size();
+		getQueue().removeIf(entry -> set.contains(entry.getEvent()));
+		return before-size();
+	}
+
 	@Override
 	public void enqueue(E event, Time time) {
 		getQueue().add(new EventQueueEntry<E>(time,event));
@@ -105,6 +139,18 @@ abstract class AbstractEventQueue<E, Q extends Collection<EventQueueEntry<E>>> i
 		return result;
 	}
 
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final Time time=getMin(); // remember current time stamp
+		int count=0;
+		while (!isEmpty()&&time.equals(getMin())) {
+			sink.add(dequeue());
+			count++;
+		}
+		return count;
+	}
+
 	@Override
 	public String toString() {
 		final StringBuffer sb=new StringBuffer();
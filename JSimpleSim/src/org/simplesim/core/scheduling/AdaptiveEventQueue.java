@@ -0,0 +1,363 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Event queue decorator choosing the best suited queue implementation at
+ * runtime.
+ * <p>
+ * Which queue performs best depends on the workload: the number of events per
+ * time stamp, the number of events in the queue, the distribution of time
+ * stamps and the share of searches like {@code dequeue(E)} and
+ * {@code getTime(E)}. This queue delegates all operations to a backend queue
+ * and samples these parameters over windows of {@value #WINDOW_SIZE}
+ * operations. At the end of each window, the best suited backend is
+ * determined as follows:
+ * <ol>
+ * <li>{@link IndexedHeapEventQueue} if searches are frequent
+ * <li>{@link HeapBucketQueue} if there are many events per time stamp
+ * <li>{@link HeapEventQueue} if the queue contains only a few events
+ * <li>{@link CalendarEventQueue} if time stamps are spread evenly
+ * <li>{@link LadderEventQueue} if time stamps are skewed
+ * </ol>
+ * To avoid thrashing, the content of the queue is only migrated to a new
+ * backend if it has been the best choice for {@value #HYSTERESIS} consecutive
+ * windows. Migration copies all events and enqueues them into the new backend
+ * by its bulk operation, which takes O(n log n) in the worst case. Bulk
+ * operations are sampled like the corresponding number of single operations.
+ * <p>
+ * Note: This queue spares choosing the queue type by benchmarking each model.
+ * It can be used as global event queue as well as local event queue. If the
+ * workload is known and stable, using the best suited queue directly saves the
+ * sampling overhead. Each event may only be enqueued once at a time, since
+ * the {@code IndexedHeapEventQueue} treats enqueuing an event again as
+ * rescheduling.
+ *
+ * @param <E> event type
+ *
+ * @see HeapEventQueue
+ * @see LadderEventQueue
+ */
+public class AdaptiveEventQueue<E> implements EventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	/** available queue implementations to delegate to */
+	public enum Backend {
+
+		HEAP, HEAP_BUCKET, INDEXED_HEAP, CALENDAR, LADDER;
+
+		<E> EventQueue<E> createQueue() {
+			switch (this) {
+			case HEAP_BUCKET:
+				return new HeapBucketQueue<>();
+			case INDEXED_HEAP:
+				return new IndexedHeapEventQueue<>();
+			case CALENDAR:
+				return new CalendarEventQueue<>();
+			case LADDER:
+				return new LadderEventQueue<>();
+			default:
+				return new HeapEventQueue<>();
+			}
+		}
+
+	}
+
+	/** number of operations sampled before the backend is evaluated */
+	public static final int WINDOW_SIZE=4096;
+
+	/** number of consecutive windows a new backend must be the best choice */
+	public static final int HYSTERESIS=3;
+
+	/** share of searches above which an indexed heap is used */
+	private static final double MAX_SEARCH_SHARE=0.05d;
+
+	/** average number of events per time stamp above which a bucket queue is used */
+	private static final double MIN_EVENTS_PER_STAMP=4d;
+
+	/** average queue size below which a plain heap is used */
+	private static final int SMALL_SIZE=256;
+
+	/** coefficient of variation of time stamp offsets up to which a calendar queue is used */
+	private static final double MAX_VARIATION=1.5d;
+
+	private EventQueue<E> queue;
+	private Backend backend;
+
+	private Backend candidate; // best backend of the last window
+	private int votes=0; // number of consecutive windows the candidate won
+
+	// statistics of the current window
+	private int operations=0;
+	private int searches=0;
+	private int drains=0;
+	private long drainedEvents=0;
+	private long population=0;
+	private int offsets=0;
+	private double offsetSum=0;
+	private double offsetSquareSum=0;
+
+	private long current=0; // time stamp of the last dequeued events as base for offsets
+
+	/**
+	 * Default constructor starting with a {@link HeapEventQueue} as backend.
+	 */
+	public AdaptiveEventQueue() {
+		this(Backend.HEAP);
+	}
+
+	/**
+	 * Constructor to set the initial backend.
+	 *
+	 * @param initial the backend to start with
+	 */
+	public AdaptiveEventQueue(Backend initial) {
+		backend=initial;
+		candidate=initial;
+		queue=initial.createQueue();
+	}
+
+	/**
+	 * Returns the backend currently used.
+	 *
+	 * @return the current backend
+	 */
+	public Backend getBackend() {
+		return backend;
+	}
+
+	@Override
+	public Time getMin() {
+		return queue.getMin();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public Time getTime(E event) {
+		searches++;
+		final Time result=queue.getTime(event);
+		sample();
+		return result;
+	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		queue.copyTo(events,times);
+	}
+
+	@Override
+	public void enqueue(E event, Time time) {
+		queue.enqueue(event,time);
+		sampleOffset(time);
+		sample();
+	}
+
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		if (events.isEmpty()) return;
+		final int before=queue.size();
+		queue.enqueueAll(events,(E event) -> {
+			final Time time=times.apply(event);
+			sampleOffset(time);
+			return time;
+		});
+		sample(events.size(),before);
+	}
+
+	@Override
+	public Time reschedule(E event, Time time) {
+		searches++;
+		final Time result=queue.reschedule(event,time);
+		sample();
+		return result;
+	}
+
+	@Override
+	public Time dequeue(E event) {
+		searches++;
+		final Time result=queue.dequeue(event);
+		sample();
+		return result;
+	}
+
+	@Override
+	public int dequeueEvents(Collection<E> events) {
+		if (events.isEmpty()) return 0;
+		searches+=events.size();
+		final int before=queue.size();
+		final int result=queue.dequeueEvents(events);
+		sample(events.size(),before);
+		return result;
+	}
+
+	@Override
+	public E dequeue() {
+		if (queue.isEmpty()) return null;
+		current=queue.getMin().getTicks();
+		final E result=queue.dequeue();
+		sample();
+		return result;
+	}
+
+	@Override
+	public List<E> dequeueAll() {
+		if (queue.isEmpty()) return Collections.emptyList();
+		final List<E> result=new ArrayList<>();
+		drainMin(result);
+		return result;
+	}
+
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (queue.isEmpty()) return 0;
+		current=queue.getMin().getTicks();
+		final int result=queue.drainMin(sink);
+		drains++;
+		drainedEvents+=result;
+		sample();
+		return result;
+	}
+
+	@Override
+	public List<E> dequeueAll(Time time) {
+		final List<E> result=queue.dequeueAll(time);
+		drains++;
+		drainedEvents+=result.size();
+		sample();
+		return result;
+	}
+
+	/**
+	 * Records the offset of a time stamp to the last dequeued one.
+	 */
+	private void sampleOffset(Time time) {
+		final double offset=time.getTicks()-current;
+		if (offset>=0) {
+			offsets++;
+			offsetSum+=offset;
+			offsetSquareSum+=offset*offset;
+		}
+	}
+
+	/**
+	 * Records a single operation.
+	 */
+	private void sample() {
+		population+=queue.size();
+		operations++;
+		evaluateWindow();
+	}
+
+	/**
+	 * Records a bulk operation as the given number of single operations.
+	 * <p>
+	 * The queue size of each of these operations is interpolated between the
+	 * size before and after the bulk operation.
+	 *
+	 * @param count  number of events of the bulk operation
+	 * @param before size of the queue before the bulk operation
+	 */
+	private void sample(int count, int before) {
+		population+=(((long) before+queue.size())*count)/2;
+		operations+=count;
+		evaluateWindow();
+	}
+
+	/**
+	 * Evaluates the statistics at the end of a window.
+	 */
+	private void evaluateWindow() {
+		if (operations<WINDOW_SIZE) return;
+		final Backend best=evaluate();
+		if (best==candidate) votes++;
+		else {
+			candidate=best;
+			votes=1;
+		}
+		if ((candidate!=backend)&&(votes>=HYSTERESIS)) migrate(candidate);
+		operations=0;
+		searches=0;
+		drains=0;
+		drainedEvents=0;
+		population=0;
+		offsets=0;
+		offsetSum=0;
+		offsetSquareSum=0;
+	}
+
+	/**
+	 * Determines the best suited backend for the statistics of the current
+	 * window.
+	 *
+	 * @return the best suited backend
+	 */
+	private Backend evaluate() {
+		if (searches>(MAX_SEARCH_SHARE*operations)) return Backend.INDEXED_HEAP;
+		if ((drains>0)&&(drainedEvents>(MIN_EVENTS_PER_STAMP*drains))) return Backend.HEAP_BUCKET;
+		if (population<((long) SMALL_SIZE*operations)) return Backend.HEAP;
+		if (offsets<2) return backend; // no information about the time stamps
+		final double mean=offsetSum/offsets;
+		final double variance=(offsetSquareSum/offsets)-(mean*mean);
+		if ((mean>0)&&(Math.sqrt(Math.max(variance,0))<=(MAX_VARIATION*mean))) return Backend.CALENDAR;
+		return Backend.LADDER;
+	}
+
+	/**
+	 * Moves all events to a new backend.
+	 * <p>
+	 * All events are enqueued by one bulk operation. An event enqueued several
+	 * times, although not supported by all backends, is enqueued singly again.
+	 *
+	 * @param target the new backend
+	 */
+	private void migrate(Backend target) {
+		final EventQueue<E> result=target.createQueue();
+		final List<E> events=new ArrayList<>(queue.size());
+		final List<Time> times=new ArrayList<>(queue.size());
+		queue.copyTo(events,times);
+		final Map<E, Time> stamps=new IdentityHashMap<>(events.size());
+		final List<E> unique=new ArrayList<>(events.size());
+		final List<Integer> duplicates=new ArrayList<>();
+		for (int index=0; index<events.size(); index++) {
+			if (stamps.putIfAbsent(events.get(index),times.get(index))==null) unique.add(events.get(index));
+			else duplicates.add(index);
+		}
+		result.enqueueAll(unique,stamps::get);
+		for (final int index : duplicates) result.enqueue(events.get(index),times.get(index));
+		queue=result;
+		backend=target;
+	}
+
+	@Override
+	public String toString() {
+		return queue.toString();
+	}
+
+}
@@ -0,0 +1,483 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Calendar queue implementation of the {@code EventQueue} interface.
+ * <p>
+ * The queue follows the calendar queue proposed by R. Brown (1988): Time is
+ * divided into "days" of equal width, which are mapped cyclically onto an
+ * array of buckets (the "year"). Each bucket is kept as a <i>descending</i>
+ * sorted list, so the event with the least time stamp of a bucket is always at
+ * its end. A cursor marks the day of the current minimum. Finding the next
+ * minimum means advancing the cursor until a bucket holds an event of the
+ * current day. If a whole year passes without a hit, a direct search over all
+ * buckets is done instead.
+ * <p>
+ * The number of buckets is doubled whenever the queue holds more than two
+ * events per bucket and halved if it holds less than one event per two
+ * buckets. On each resize, the day width is re-estimated from the average
+ * separation of the most imminent time stamps. Separations are sampled over
+ * <i>distinct</i> time stamps, so that large groups of simultaneous events do
+ * not collapse the width. The width is also re-estimated if direct searches
+ * become frequent, e.g. because the spacing of events changed during
+ * simulation.
+ * <p>
+ * This leads to an amortized complexity of O(1) for {@code enqueue()},
+ * {@code dequeue()}, {@code getMin()} and {@code dequeueAll()} (O(k) for k
+ * events with minimal time stamp). {@code dequeueAll(Time)} only has to search
+ * one bucket. {@code getTime(E)} and {@code dequeue(E)} need a linear search
+ * with a complexity of O(n).
+ * <p>
+ * Note: This queue type is suitable as global event queue for large models
+ * with many agents, since its hold time does not depend on the queue size.
+ *
+ * @param <E> event type
+ *
+ * @see HeapEventQueue
+ * @see HeapBucketQueue
+ */
+public class CalendarEventQueue<E> implements EventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	/** minimal number of buckets, must be a power of two */
+	private static final int MIN_BUCKETS=2;
+
+	/** number of distinct time stamps sampled to estimate the bucket width */
+	private static final int SAMPLE_SIZE=25;
+
+	/** number of direct searches triggering a re-estimation of the bucket width */
+	private static final int MAX_DIRECT_SEARCHES=8;
+
+	/** upper limit of the bucket width to avoid overflows */
+	private static final long MAX_WIDTH=Long.MAX_VALUE>>2;
+
+	private static final int DEFAULT_BUCKET_SIZE=4;
+
+	private ArrayList<EventQueueEntry<E>>[] buckets;
+	private int mask; // number of buckets minus one
+	private long width=1; // width of a bucket ("day") in ticks
+
+	private int current=0; // bucket index of the cursor
+	private long currentStart=0; // first tick of the day the cursor points to
+
+	private int size=0;
+	private int directSearches=0;
+
+	public CalendarEventQueue() {
+		buckets=createBuckets(MIN_BUCKETS);
+		mask=MIN_BUCKETS-1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getMin()
+	 */
+	@Override
+	public Time getMin() {
+		final int index=locateMin(); // may resize, so evaluate first
+		final List<EventQueueEntry<E>> bucket=buckets[index];
+		return bucket.get(bucket.size()-1).getTime();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getTime(java.lang.Object)
+	 */
+	@Override
+	public Time getTime(E event) {
+		for (final List<EventQueueEntry<E>> bucket : buckets) {
+			for (final EventQueueEntry<E> entry : bucket) if (entry.getEvent().equals(event)) return entry.getTime();
+		}
+		return null;
+	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (final List<EventQueueEntry<E>> bucket : buckets) for (final EventQueueEntry<E> entry : bucket) {
+			events.add(entry.getEvent());
+			times.add(entry.getTime());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#enqueue(java.lang.Object,
+	 * org.simplesim.core.scheduling.Time)
+	 */
+	@Override
+	public void enqueue(E event, Time time) {
+		final long ticks=time.getTicks();
+		// move cursor back if the new event precedes the current day
+		if ((size==0)||(ticks<currentStart)) setCursor(ticks);
+		insert(new EventQueueEntry<>(time,event));
+		size++;
+		if (size>(buckets.length<<1)) resize(buckets.length<<1);
+	}
+
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * If the collection is at least as large as the queue, all entries are sorted
+	 * and the calendar is rebuilt only once. The number of buckets and the bucket
+	 * width are chosen according to the whole population instead of resizing the
+	 * calendar repeatedly.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		if (events.size()<size) {
+			EventQueue.super.enqueueAll(events,times);
+			return;
+		}
+		final List<EventQueueEntry<E>> entries=new ArrayList<>(size+events.size());
+		for (final List<EventQueueEntry<E>> bucket : buckets) entries.addAll(bucket);
+		for (final E event : events) entries.add(new EventQueueEntry<>(times.apply(event),event));
+		Collections.sort(entries);
+		final long[] sample=new long[SAMPLE_SIZE];
+		int samples=0;
+		for (final EventQueueEntry<E> entry : entries) {
+			final long ticks=entry.getTime().getTicks();
+			if ((samples>0)&&(ticks==sample[samples-1])) continue;
+			if (samples==SAMPLE_SIZE) break;
+			sample[samples++]=ticks;
+		}
+		final long newWidth=estimateWidth(sample,samples);
+		if (newWidth>0) width=newWidth;
+		int count=MIN_BUCKETS;
+		while (entries.size()>(count<<1)) count<<=1;
+		buckets=createBuckets(count);
+		mask=count-1;
+		size=entries.size();
+		directSearches=0;
+		// add in descending order, so appending keeps the buckets sorted
+		for (int index=entries.size()-1; index>=0; index--) {
+			final EventQueueEntry<E> entry=entries.get(index);
+			buckets[getIndex(entry.getTime().getTicks())].add(entry);
+		}
+		if (!entries.isEmpty()) setCursor(entries.get(0).getTime().getTicks());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue(java.lang.Object)
+	 */
+	@Override
+	public Time dequeue(E event) {
+		for (final List<EventQueueEntry<E>> bucket : buckets) {
+			final Iterator<EventQueueEntry<E>> iterator=bucket.iterator();
+			while (iterator.hasNext()) {
+				final EventQueueEntry<E> entry=iterator.next();
+				if (entry.getEvent().equals(event)) {
+					iterator.remove();
+					size--;
+					shrinkIfNecessary();
+					return entry.getTime();
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue()
+	 */
+	@Override
+	public E dequeue() {
+		if (isEmpty()) return null;
+		final E result=pollMin().getEvent();
+		shrinkIfNecessary();
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll()
+	 */
+	@Override
+	public List<E> dequeueAll() {
+		if (isEmpty()) return Collections.emptyList();
+		final int index=locateMin();
+		final List<EventQueueEntry<E>> bucket=buckets[index];
+		final List<E> result=new ArrayList<>();
+		drain(bucket,bucket.size()-1,bucket.get(bucket.size()-1).getTime().getTicks(),result);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#drainMin(java.util.List)
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final int index=locateMin();
+		final List<EventQueueEntry<E>> bucket=buckets[index];
+		return drain(bucket,bucket.size()-1,bucket.get(bucket.size()-1).getTime().getTicks(),sink);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll(org.simplesim.core.
+	 * scheduling.Time)
+	 */
+	@Override
+	public List<E> dequeueAll(Time time) {
+		if (isEmpty()) return Collections.emptyList();
+		final List<EventQueueEntry<E>> bucket=buckets[getIndex(time.getTicks())];
+		final List<E> result=new ArrayList<>();
+		drain(bucket,getPosition(bucket,time.getTicks())-1,time.getTicks(),result);
+		return result;
+	}
+
+	/**
+	 * Moves all entries of a bucket with the given time stamp to the sink,
+	 * starting at position {@code pos} and moving to the front of the bucket.
+	 *
+	 * @param bucket the bucket containing the events
+	 * @param pos    right-most position to start dequeuing of elements
+	 * @param ticks  time stamp of elements to be dequeued
+	 * @param sink   the list to add the events to
+	 *
+	 * @return number of events with the given time stamp moved to the sink
+	 */
+	private int drain(List<EventQueueEntry<E>> bucket, int pos, long ticks, List<? super E> sink) {
+		int first=pos+1;
+		while ((first>0)&&(bucket.get(first-1).getTime().getTicks()==ticks)) first--;
+		if (first>pos) return 0;
+		final List<EventQueueEntry<E>> range=bucket.subList(first,pos+1);
+		final int count=range.size();
+		for (int index=count-1; index>=0; index--) sink.add(range.get(index).getEvent());
+		range.clear();
+		size-=count;
+		shrinkIfNecessary();
+		return count;
+	}
+
+	/**
+	 * Removes the entry with the minimal time stamp without resizing the queue.
+	 *
+	 * @return entry with minimal time stamp
+	 */
+	private EventQueueEntry<E> pollMin() {
+		final int index=locateMin();
+		final List<EventQueueEntry<E>> bucket=buckets[index];
+		size--;
+		return bucket.remove(bucket.size()-1);
+	}
+
+	/**
+	 * Advances the cursor to the bucket holding the minimal time stamp.
+	 * <p>
+	 * The queue must not be empty.
+	 *
+	 * @return index of the bucket containing the minimal time stamp
+	 */
+	private int locateMin() {
+		int index=current;
+		long start=currentStart;
+		for (int count=0; count<buckets.length; count++) {
+			final List<EventQueueEntry<E>> bucket=buckets[index];
+			if (!bucket.isEmpty()&&(bucket.get(bucket.size()-1).getTime().getTicks()<=getDayEnd(start))) {
+				current=index;
+				currentStart=start;
+				return index;
+			}
+			if (start>Long.MAX_VALUE-width) break; // last day of time reached
+			start+=width;
+			index=(index+1)&mask;
+		}
+		// no event within a whole year, so do a direct search
+		long min=Long.MAX_VALUE;
+		index=-1;
+		for (int bucket=0; bucket<buckets.length; bucket++) {
+			if (buckets[bucket].isEmpty()) continue;
+			final long ticks=buckets[bucket].get(buckets[bucket].size()-1).getTime().getTicks();
+			if ((index<0)||(ticks<min)) {
+				min=ticks;
+				index=bucket;
+			}
+		}
+		setCursor(min);
+		if (++directSearches>MAX_DIRECT_SEARCHES) {
+			resize(buckets.length); // event spacing has changed, so re-estimate bucket width
+			return current;
+		}
+		return index;
+	}
+
+	/**
+	 * Sets the cursor to the day containing the given tick.
+	 *
+	 * @param ticks the tick to point to
+	 */
+	private void setCursor(long ticks) {
+		current=getIndex(ticks);
+		currentStart=Math.floorDiv(ticks,width)*width;
+	}
+
+	private long getDayEnd(long start) {
+		return start>Long.MAX_VALUE-width+1 ? Long.MAX_VALUE : start+width-1;
+	}
+
+	private int getIndex(long ticks) {
+		return (int) (Math.floorDiv(ticks,width)&mask);
+	}
+
+	private void insert(EventQueueEntry<E> entry) {
+		final ArrayList<EventQueueEntry<E>> bucket=buckets[getIndex(entry.getTime().getTicks())];
+		bucket.add(getPosition(bucket,entry.getTime().getTicks()),entry);
+	}
+
+	/**
+	 * Binary search to find the right-most position in a descending sorted
+	 * bucket.
+	 *
+	 * @param bucket the bucket to search in
+	 * @param ticks  time stamp of the element to insert
+	 * @return insertion position of entry, right-most position in case of similar
+	 *         values
+	 */
+	private static int getPosition(List<? extends EventQueueEntry<?>> bucket, long ticks) {
+		int right=bucket.size(), left=0;
+		while (left<right) {
+			final int mid=(left+right)>>>1;
+			if (bucket.get(mid).getTime().getTicks()<ticks) right=mid;
+			else left=mid+1;
+		}
+		return left;
+	}
+
+	private void shrinkIfNecessary() {
+		if ((buckets.length>MIN_BUCKETS)&&(size<(buckets.length>>1))) resize(buckets.length>>1);
+	}
+
+	/**
+	 * Rebuilds the queue with a new number of buckets and a re-estimated bucket
+	 * width.
+	 * <p>
+	 * The most imminent entries are sampled in ascending order to estimate the
+	 * average separation of time stamps. Separations larger than twice the
+	 * average are discarded as outliers and the new width is set to three times
+	 * the average of the remaining separations (as suggested by Brown).
+	 *
+	 * @param count new number of buckets, must be a power of two
+	 */
+	private void resize(int count) {
+		final List<EventQueueEntry<E>> entries=new ArrayList<>(size);
+		directSearches=Integer.MIN_VALUE; // no nested resizing while sampling
+		// sample the most imminent distinct time stamps in ascending order
+		final long[] sample=new long[SAMPLE_SIZE];
+		int samples=0;
+		while (!isEmpty()) {
+			final EventQueueEntry<E> entry=pollMin();
+			final long ticks=entry.getTime().getTicks();
+			if ((samples==0)||(ticks!=sample[samples-1])) {
+				if (samples==SAMPLE_SIZE) {
+					size++; // put the entry back, it is collected below
+					insert(entry);
+					break;
+				}
+				sample[samples++]=ticks;
+			}
+			entries.add(entry);
+		}
+		for (final List<EventQueueEntry<E>> bucket : buckets) entries.addAll(bucket);
+		final long newWidth=estimateWidth(sample,samples);
+		if (newWidth>0) width=newWidth;
+		buckets=createBuckets(count);
+		mask=count-1;
+		size=entries.size();
+		directSearches=0;
+		for (final EventQueueEntry<E> entry : entries) insert(entry);
+		if (!entries.isEmpty()) setCursor(entries.get(0).getTime().getTicks());
+	}
+
+	/**
+	 * Estimates the bucket width from a sample of ascending distinct time stamps.
+	 *
+	 * @param sample  the sampled time stamps
+	 * @param samples number of valid time stamps in the sample
+	 * @return estimated width or zero if the sample is too small
+	 */
+	private static long estimateWidth(long[] sample, int samples) {
+		if (samples<2) return 0;
+		final double average=((double) sample[samples-1]-sample[0])/(samples-1);
+		double sum=0;
+		int count=0;
+		for (int index=1; index<samples; index++) {
+			final double separation=(double) sample[index]-sample[index-1];
+			if (separation<=2*average) {
+				sum+=separation;
+				count++;
+			}
+		}
+		final double result=count==0 ? average : (3*sum)/count;
+		return Math.max(1,(long) Math.min(result,MAX_WIDTH));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <E> ArrayList<EventQueueEntry<E>>[] createBuckets(int count) {
+		final ArrayList<EventQueueEntry<E>>[] result=new ArrayList[count];
+		for (int index=0; index<count; index++) result[index]=new ArrayList<>(DEFAULT_BUCKET_SIZE);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		for (final List<EventQueueEntry<E>> bucket : buckets) {
+			for (int index=bucket.size()-1; index>=0; index--) {
+				sb.append(bucket.get(index).toString());
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+}
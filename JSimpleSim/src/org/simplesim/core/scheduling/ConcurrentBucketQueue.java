@@ -0,0 +1,226 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bucket queue supporting concurrent enqueuing of events.
+ * <p>
+ * Time stamps are mapped to buckets by a lock-free
+ * {@code ConcurrentSkipListMap}, each bucket being a lock-free
+ * {@code ConcurrentLinkedQueue}. Thus, several threads may enqueue events at
+ * the same time without any locking. Finding the bucket with the minimal time
+ * stamp is done in O(1), adding a new bucket takes O(log n) for n distinct
+ * time stamps. {@code getTime(E)} and {@code dequeue(E)} need a linear search
+ * with a complexity of O(n).
+ * <p>
+ * Dequeue operations must not run concurrently with enqueue operations, see
+ * {@link ConcurrentEventQueue}.
+ * <p>
+ * Note: This queue is suitable as global event queue of a concurrent
+ * simulator, since agents can enqueue their next event directly from the
+ * worker threads.
+ *
+ * @param <E> event type
+ *
+ * @see SortedBucketQueue
+ */
+public final class ConcurrentBucketQueue<E> implements ConcurrentEventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	private final ConcurrentSkipListMap<Time, Queue<E>> map=new ConcurrentSkipListMap<>();
+
+	private final AtomicInteger size=new AtomicInteger();
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getMin()
+	 */
+	@Override
+	public Time getMin() {
+		return map.firstKey();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size.get()==0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#size()
+	 */
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getTime(java.lang.Object)
+	 */
+	@Override
+	public Time getTime(E event) {
+		for (final Map.Entry<Time, Queue<E>> entry : map.entrySet()) {
+			if (entry.getValue().contains(event)) return entry.getKey();
+		}
+		return null;
+	}
+
+	/**
+	 * Copies all events and their time stamps to the given lists.
+	 * <p>
+	 * This method is thread-safe, but events enqueued or dequeued concurrently may
+	 * or may not be copied.
+	 */
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (final Map.Entry<Time, Queue<E>> entry : map.entrySet()) {
+			for (final E event : entry.getValue()) {
+				events.add(event);
+				times.add(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Enqueues an event at the given time.
+	 * <p>
+	 * This method is thread-safe.
+	 *
+	 * @param event the event to be added to the queue
+	 * @param time  the time stamp of the event, must be a future time
+	 */
+	@Override
+	public void enqueue(E event, Time time) {
+		Queue<E> bucket=map.get(time);
+		if (bucket==null) {
+			final Queue<E> created=new ConcurrentLinkedQueue<>();
+			bucket=map.putIfAbsent(time,created);
+			if (bucket==null) bucket=created;
+		}
+		bucket.add(event);
+		size.incrementAndGet();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue(java.lang.Object)
+	 */
+	@Override
+	public Time dequeue(E event) {
+		for (final Map.Entry<Time, Queue<E>> entry : map.entrySet()) {
+			if (entry.getValue().remove(event)) {
+				size.decrementAndGet();
+				if (entry.getValue().isEmpty()) map.remove(entry.getKey());
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue()
+	 */
+	@Override
+	public E dequeue() {
+		final Map.Entry<Time, Queue<E>> entry=map.firstEntry();
+		if (entry==null) return null;
+		final E result=entry.getValue().poll();
+		size.decrementAndGet();
+		if (entry.getValue().isEmpty()) map.remove(entry.getKey());
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll()
+	 */
+	@Override
+	public List<E> dequeueAll() {
+		final Map.Entry<Time, Queue<E>> entry=map.pollFirstEntry();
+		if (entry==null) return Collections.emptyList();
+		return toList(entry.getValue());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll(org.simplesim.core.
+	 * scheduling.Time)
+	 */
+	@Override
+	public List<E> dequeueAll(Time time) {
+		final Queue<E> bucket=map.remove(time);
+		if (bucket==null) return Collections.emptyList();
+		return toList(bucket);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#drainMin(java.util.List)
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		final Map.Entry<Time, Queue<E>> entry=map.pollFirstEntry();
+		if (entry==null) return 0;
+		int count=0;
+		for (final E event : entry.getValue()) {
+			sink.add(event);
+			count++;
+		}
+		size.addAndGet(-count);
+		return count;
+	}
+
+	private List<E> toList(Queue<E> bucket) {
+		final List<E> result=new ArrayList<>(bucket);
+		size.addAndGet(-result.size());
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		for (final Map.Entry<Time, Queue<E>> entry : map.entrySet()) {
+			sb.append('[');
+			sb.append(entry.getKey().toString());
+			sb.append('|');
+			sb.append(entry.getValue().size());
+			sb.append(" items]\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+/**
+ * Event queue that can be filled concurrently.
+ * <p>
+ * Implementations of this interface guarantee that
+ * {@link #enqueue(Object, Time)} may be called by several threads at the same
+ * time. All other operations must not run concurrently with an enqueue
+ * operation. In a simulation cycle, this means that agents may enqueue their
+ * next events in parallel, whereas dequeuing is done at the barrier between two
+ * cycles.
+ * <p>
+ * Simulators use this interface to decide whether worker threads may access
+ * the global event queue directly.
+ *
+ * @param <E> type of events to be stored in the queue
+ *
+ * @see ConcurrentBucketQueue
+ */
+public interface ConcurrentEventQueue<E> extends EventQueue<E> {
+
+}
@@ -11,7 +11,11 @@
  */
 package org.simplesim.core.scheduling;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Basic event queue interface for all queue implementations of the scheduling
@@ -23,8 +27,9 @@ import java.util.List;
  * Thus, this interface is designed to cover all necessary functionality in a
  * minimalistic way. During simulation {@code #enqueue(E, Time)},
  * {@code #dequeueAll(Time)} and {@code #getMin()} are used most often,
- * presumably. A requeue operation can be done by dequeuing an event and then
- * enqueuing it again with a different time stamp.
+ * presumably. A requeue operation can be done by {@link #reschedule(Object, Time)},
+ * which dequeues an event and then enqueues it again with a different time
+ * stamp by default.
  * <p>
  * Event queues might not be synchronized. Accessing unsynchronized event queues
  * from different threads may result in non-deterministic behavior. Please check
@@ -34,11 +39,14 @@ import java.util.List;
  * Please note that event queues have (injective) one-to-one mapping: There may be 
  * several events with equal time stamps, but no two events that are equal.
  * In other words: There must be only one time stamp per event!
+ * <p>
+ * Event queues are serializable, so the pending events of a simulation can be
+ * saved as part of a checkpoint if the events themselves are serializable.
  *
  * @param <E> type of events to be stored in the queue
  *
  */
-public interface EventQueue<E> {
+public interface EventQueue<E> extends Serializable {
 
 	/**
 	 * Gets the minimal time stamp.
@@ -117,6 +125,26 @@ public interface EventQueue<E> {
 	 */
 	List<E> dequeueAll();
 
+	/**
+	 * Dequeues all elements with the smallest time stamp and adds them to the
+	 * given list.
+	 * <p>
+	 * Other than {@link #dequeueAll()}, no new list is created. So the caller can
+	 * reuse the same list in each simulation cycle. The default implementation
+	 * adds the result of {@code dequeueAll()}, implementations should avoid this
+	 * allocation.
+	 *
+	 * @param sink the list to add the dequeued events to
+	 * @return number of events added to the list, zero if the queue is empty
+	 * @see #dequeueAll()
+	 */
+	default int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final List<E> events=dequeueAll();
+		sink.addAll(events);
+		return events.size();
+	}
+
 	/**
 	 * Dequeues all elements with the given time stamp.
 	 * <p>
@@ -129,4 +157,80 @@ public interface EventQueue<E> {
 	 */
 	List<E> dequeueAll(Time time);
 
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * The time stamp of each event is given by a mapping function. The default
+	 * implementation enqueues the events one by one. Implementations may use more
+	 * efficient bulk operations, e.g. to build a heap in O(n).
+	 *
+	 * @param events the events to be added to the queue
+	 * @param times  function mapping each event to its time stamp
+	 */
+	default void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		for (final E event : events) enqueue(event,times.apply(event));
+	}
+
+	/**
+	 * Changes the time stamp of an event.
+	 * <p>
+	 * If the event is not part of the queue yet, it is enqueued. The default
+	 * implementation dequeues the event and enqueues it again, so its complexity
+	 * depends on {@link #dequeue(Object)}. Implementations may do this more
+	 * efficiently.
+	 *
+	 * @param event the event to reschedule
+	 * @param time  the new time stamp of the event
+	 * @return the previous time stamp or null if the event was not part of the
+	 *         queue
+	 * @see IndexedHeapEventQueue
+	 */
+	default Time reschedule(E event, Time time) {
+		final Time result=dequeue(event);
+		enqueue(event,time);
+		return result;
+	}
+
+	/**
+	 * Removes the entries of several events at once.
+	 * <p>
+	 * The default implementation dequeues the events one by one, so its
+	 * complexity depends on {@link #dequeue(Object)}. Implementations with a
+	 * linear search in {@code dequeue(E)} should remove all events in a single
+	 * pass instead.
+	 *
+	 * @param events the events to be removed from the queue
+	 * @return number of events that were part of the queue and have been removed
+	 */
+	default int dequeueEvents(Collection<E> events) {
+		int result=0;
+		for (final E event : events) if (dequeue(event)!=null) result++;
+		return result;
+	}
+
+	/**
+	 * Copies all events and their time stamps to the given lists without changing
+	 * the queue.
+	 * <p>
+	 * The event added to {@code events} at a given index has the time stamp added
+	 * to {@code times} at the same index, the order of the events is not
+	 * specified. The default implementation dequeues all events and enqueues them
+	 * again, implementations should traverse their data structure instead.
+	 *
+	 * @param events list to add the events to
+	 * @param times  list to add the time stamps of the events to
+	 */
+	default void copyTo(List<? super E> events, List<? super Time> times) {
+		final List<E> all=new ArrayList<>();
+		final List<Time> stamps=new ArrayList<>();
+		while (!isEmpty()) {
+			final Time time=getMin();
+			final int count=drainMin(all);
+			for (int index=0; index<count; index++) stamps.add(time);
+		}
+		for (int index=0; index<all.size(); index++) enqueue(all.get(index),stamps.get(index));
+		events.addAll(all);
+		times.addAll(stamps);
+	}
+
 }
@@ -11,6 +11,8 @@
  */
 package org.simplesim.core.scheduling;
 
+import java.io.Serializable;
+
 /**
  * Provides a coupling between a time stamp and a corresponding event.
  * <p>
@@ -19,9 +21,12 @@ package org.simplesim.core.scheduling;
  * @see Time
  *
  */
-final class EventQueueEntry<E> implements Comparable<EventQueueEntry<E>> {
+final class EventQueueEntry<E> implements Comparable<EventQueueEntry<E>>, Serializable {
+
+	private static final long serialVersionUID=1L;
 
 	private final Time time; // time stamp of the event.
+	@SuppressWarnings("serial") // Conditionally serializable
 	private final E event; // the event as such
 	
 	public EventQueueEntry(Time t, E e) {
@@ -32,22 +32,18 @@ import java.util.List;
  */
 public final class HashedBucketQueue<E> extends AbstractBucketQueue<E, HashMap<Time, List<E>>> {
 
+	private static final long serialVersionUID=1L;
+
 	private Time minTime=Time.INFINITY;
 
 	public HashedBucketQueue() {
 		super(new HashMap<>());
 	}
 
-	/*
-	 * (non-Javadoc)
-	 *
-	 * @see org.simplesim.core.scheduling.EventQueue#enqueue(java.lang.Object,
-	 * org.simplesim.core.scheduling.Time)
-	 */
 	@Override
-	public void enqueue(E event, Time time) {
+	List<E> createBucket(Time time) {
 		if (time.getTicks()<minTime.getTicks()) minTime=time;
-		super.enqueue(event,time);
+		return super.createBucket(time);
 	}
 
 	@Override
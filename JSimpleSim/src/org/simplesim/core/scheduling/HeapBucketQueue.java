@@ -36,8 +36,10 @@ import java.util.Queue;
  */
 public final class HeapBucketQueue<E> extends AbstractBucketQueue<E, HashMap<Time, List<E>>> {
 
+	private static final long serialVersionUID=1L;
+
 	// additional heap structure to facilitate getMin()
-	private final Queue<Time> queue=new PriorityQueue<>();
+	private final PriorityQueue<Time> queue=new PriorityQueue<>();
 
 	public HeapBucketQueue() {
 		super(new HashMap<>());
@@ -52,9 +54,9 @@ public final class HeapBucketQueue<E> extends AbstractBucketQueue<E, HashMap<Tim
 	}
 
 	@Override
-	public void enqueue(E event, Time time) {
-		if (!getMap().containsKey(time)) getQueue().add(time);
-		super.enqueue(event,time);
+	List<E> createBucket(Time time) {
+		getQueue().add(time);
+		return super.createBucket(time);
 	}
 
 	@Override
@@ -10,7 +10,11 @@
  */
 package org.simplesim.core.scheduling;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.function.Function;
 
 /**
  * Priority queue implementation of the {@code EventQueue} interface.
@@ -31,6 +35,8 @@ import java.util.PriorityQueue;
  */
 public class HeapEventQueue<E> extends AbstractEventQueue<E, PriorityQueue<EventQueueEntry<E>>> {
 
+	private static final long serialVersionUID=1L;
+
 	/**
 	 * Default constructor initializing the queue
 	 */
@@ -49,4 +55,22 @@ public class HeapEventQueue<E> extends AbstractEventQueue<E, PriorityQueue<Event
 		return getQueue().poll().getEvent();
 	}
 
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * If the collection is at least as large as the queue, the heap is rebuilt
+	 * from scratch in O(n). Otherwise, the events are enqueued one by one.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		if (events.size()<size()) {
+			super.enqueueAll(events,times);
+			return;
+		}
+		final List<EventQueueEntry<E>> entries=new ArrayList<>(size()+events.size());
+		entries.addAll(getQueue());
+		for (final E event : events) entries.add(new EventQueueEntry<>(times.apply(event),event));
+		setQueue(new PriorityQueue<>(entries)); // heapify in O(n)
+	}
+
 }
@@ -0,0 +1,301 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Indexed binary heap implementation of the {@code EventQueue} interface.
+ * <p>
+ * Each event is wrapped in a node that knows its current position within the
+ * heap array. An additional hash map links events to their nodes. Thus, an
+ * event can be found in O(1) and removed or moved within the heap in O(log n).
+ * This makes {@code getTime(E)} an O(1) operation and {@code dequeue(E)} and
+ * {@link #reschedule(Object, Time)} O(log n) operations. {@code getMin()} is
+ * done in O(1), {@code enqueue()} and {@code dequeue()} in O(log n).
+ * <p>
+ * Enqueuing an event that is already part of the queue changes its time stamp.
+ * <p>
+ * Note: This queue type is suitable for event queues with frequent
+ * cancellations and rescheduling of events, e.g. timers or agents that change
+ * their time of next event before it is due. It needs more memory than the
+ * {@link HeapEventQueue}.
+ *
+ * @param <E> event type
+ *
+ * @see HeapEventQueue
+ */
+public class IndexedHeapEventQueue<E> implements EventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	private static final int DEFAULT_CAPACITY=16;
+
+	/** heap node coupling an event with its time stamp and heap position */
+	private static final class Node<E> implements Serializable {
+
+		private static final long serialVersionUID=1L;
+
+		@SuppressWarnings("serial") // Conditionally serializable
+		private final E event;
+		private Time time;
+		private int index;
+
+		Node(E e, Time t) {
+			event=e;
+			time=t;
+		}
+
+		long getTicks() {
+			return time.getTicks();
+		}
+
+	}
+
+	private final HashMap<E, Node<E>> nodes=new HashMap<>();
+	private Node<E>[] heap;
+	private int size=0;
+
+	public IndexedHeapEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor to set the initial capacity of the queue.
+	 *
+	 * @param capacity the initial capacity
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public IndexedHeapEventQueue(int capacity) {
+		heap=new Node[Math.max(1,capacity)];
+	}
+
+	@Override
+	public Time getMin() {
+		if (isEmpty()) return null;
+		return heap[0].time;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Time getTime(E event) {
+		final Node<E> node=nodes.get(event);
+		if (node==null) return null;
+		return node.time;
+	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (int index=0; index<size; index++) {
+			events.add(heap[index].event);
+			times.add(heap[index].time);
+		}
+	}
+
+	@Override
+	public void enqueue(E event, Time time) {
+		reschedule(event,time);
+	}
+
+	/**
+	 * Changes the time stamp of an event in place.
+	 * <p>
+	 * The event is moved up or down the heap with a complexity of O(log n). If the
+	 * event is not part of the queue yet, it is enqueued.
+	 *
+	 * @param event the event to reschedule
+	 * @param time  the new time stamp of the event
+	 * @return the previous time stamp or null if the event was not part of the
+	 *         queue
+	 */
+	@Override
+	public Time reschedule(E event, Time time) {
+		Node<E> node=nodes.get(event);
+		if (node==null) {
+			node=new Node<>(event,time);
+			nodes.put(event,node);
+			if (size==heap.length) heap=Arrays.copyOf(heap,size+(size>>1)+1);
+			node.index=size++;
+			siftUp(node);
+			return null;
+		}
+		final Time result=node.time;
+		node.time=time;
+		if (time.getTicks()<result.getTicks()) siftUp(node);
+		else siftDown(node);
+		return result;
+	}
+
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * If the collection is at least as large as the queue, all events are appended
+	 * and the heap is rebuilt in O(n). Otherwise, the events are enqueued one by
+	 * one.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		if (events.size()<size) {
+			EventQueue.super.enqueueAll(events,times);
+			return;
+		}
+		if ((size+events.size())>heap.length) heap=Arrays.copyOf(heap,size+events.size());
+		for (final E event : events) {
+			final Time time=times.apply(event);
+			Node<E> node=nodes.get(event);
+			if (node!=null) node.time=time; // heap order is restored below
+			else {
+				node=new Node<>(event,time);
+				nodes.put(event,node);
+				node.index=size;
+				heap[size++]=node;
+			}
+		}
+		for (int index=(size>>>1)-1; index>=0; index--) siftDown(heap[index]);
+	}
+
+	@Override
+	public Time dequeue(E event) {
+		final Node<E> node=nodes.get(event);
+		if (node==null) return null;
+		remove(node);
+		return node.time;
+	}
+
+	@Override
+	public E dequeue() {
+		if (isEmpty()) return null;
+		final Node<E> node=heap[0];
+		remove(node);
+		return node.event;
+	}
+
+	@Override
+	public List<E> dequeueAll() {
+		if (isEmpty()) return Collections.emptyList();
+		final List<E> result=new ArrayList<>();
+		final long min=heap[0].getTicks();
+		while ((size>0)&&(heap[0].getTicks()==min)) result.add(dequeue());
+		return result;
+	}
+
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final long min=heap[0].getTicks();
+		int count=0;
+		while ((size>0)&&(heap[0].getTicks()==min)) {
+			sink.add(dequeue());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public List<E> dequeueAll(Time time) {
+		if (isEmpty()) return Collections.emptyList();
+		if (time.getTicks()==heap[0].getTicks()) return dequeueAll();
+		// search only the part of the heap with time stamps not after the given time
+		final List<Node<E>> found=new ArrayList<>();
+		collect(0,time.getTicks(),found);
+		final List<E> result=new ArrayList<>(found.size());
+		for (final Node<E> node : found) {
+			remove(node);
+			result.add(node.event);
+		}
+		return result;
+	}
+
+	/**
+	 * Collects all nodes of a subtree with the given time stamp, skipping
+	 * subtrees with later time stamps.
+	 */
+	private void collect(int index, long ticks, List<Node<E>> found) {
+		if ((index>=size)||(heap[index].getTicks()>ticks)) return;
+		if (heap[index].getTicks()==ticks) found.add(heap[index]);
+		collect((index<<1)+1,ticks,found);
+		collect((index<<1)+2,ticks,found);
+	}
+
+	private void remove(Node<E> node) {
+		nodes.remove(node.event);
+		final int last=--size;
+		final Node<E> moved=heap[last];
+		heap[last]=null;
+		if (moved!=node) {
+			moved.index=node.index;
+			heap[moved.index]=moved;
+			siftDown(moved);
+			if (heap[node.index]==moved) siftUp(moved);
+		}
+	}
+
+	private void siftUp(Node<E> node) {
+		int index=node.index;
+		final long ticks=node.getTicks();
+		while (index>0) {
+			final int parent=(index-1)>>>1;
+			if (heap[parent].getTicks()<=ticks) break;
+			heap[index]=heap[parent];
+			heap[index].index=index;
+			index=parent;
+		}
+		heap[index]=node;
+		node.index=index;
+	}
+
+	private void siftDown(Node<E> node) {
+		int index=node.index;
+		final long ticks=node.getTicks();
+		final int half=size>>>1;
+		while (index<half) {
+			int child=(index<<1)+1;
+			if (((child+1)<size)&&(heap[child+1].getTicks()<heap[child].getTicks())) child++;
+			if (ticks<=heap[child].getTicks()) break;
+			heap[index]=heap[child];
+			heap[index].index=index;
+			index=child;
+		}
+		heap[index]=node;
+		node.index=index;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		for (int index=0; index<size; index++) {
+			sb.append('[');
+			sb.append(heap[index].time.toString());
+			sb.append('|');
+			sb.append(heap[index].event.toString());
+			sb.append("]\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,505 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ladder queue implementation of the {@code EventQueue} interface.
+ * <p>
+ * The implementation is based on the article "Ladder queue: An O(1) priority
+ * queue structure for large-scale discrete event simulation" by Wai Teng Tang,
+ * Rick Siow Mong Goh and Ian Li-Jin Thng. It is the successor of the MList
+ * structure used by {@link MultiLevelEventQueue} and consists of three tiers:
+ * <ol>
+ * <li><i>top</i>: an unsorted list of far future events with time stamps beyond
+ * the range of the ladder
+ * <li><i>ladder</i>: a hierarchy of rungs, each rung being an array of unsorted
+ * buckets. If a bucket holds too many events, a new rung with finer buckets is
+ * spawned from it instead of sorting it. Thus, the ladder adapts to skewed time
+ * stamp distributions.
+ * <li><i>bottom</i>: a <i>descending</i> sorted list with the most imminent
+ * events, so the minimum is always at its end.
+ * </ol>
+ * Events are only sorted when they reach the bottom tier in small chunks,
+ * resulting in an amortized complexity of O(1) for {@code enqueue()},
+ * {@code dequeue()}, {@code getMin()} and {@code dequeueAll()} (O(k) for k
+ * events with minimal time stamp). All events with the same time stamp are
+ * always kept in the same container, so {@code dequeueAll(Time)} only has to
+ * search one bucket. {@code getTime(E)} and {@code dequeue(E)} need a linear
+ * search with a complexity of O(n), so several events should be removed by
+ * {@code dequeueEvents(Collection)} in a single pass.
+ * <p>
+ * Note: This queue type is suitable as global event queue, especially for large
+ * models.
+ *
+ * @param <E> event type
+ *
+ * @see MultiLevelEventQueue
+ * @see CalendarEventQueue
+ */
+public class LadderEventQueue<E> implements EventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	/** maximum number of events in a bucket or in bottom before spawning a new rung */
+	private static final int THRESHOLD=50;
+
+	/** maximum number of rungs of the ladder */
+	private static final int MAX_RUNGS=8;
+
+	/** minimal number of buckets of a rung */
+	private static final int MIN_BUCKETS=4;
+
+	private static final int DEFAULT_BUCKET_SIZE=4;
+
+	/**
+	 * A rung of the ladder, covering the time interval from {@code start} to
+	 * {@code last} in buckets of equal width.
+	 */
+	private static final class Rung<E> implements Serializable {
+
+		private static final long serialVersionUID=1L;
+
+		private final ArrayList<EventQueueEntry<E>>[] buckets;
+		private final long start; // first tick of the first bucket
+		private final long last; // last tick covered by this rung
+		private final long width; // number of ticks per bucket
+		private int current=0; // index of the first bucket not yet moved to bottom or to a child rung
+		private int count=0; // number of events in this rung
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Rung(long min, long max, int size) {
+			start=min;
+			last=max;
+			final long span=max-min; // treated as unsigned
+			int nb=Math.max(size,MIN_BUCKETS);
+			if ((span>=0)&&(span<nb)) nb=(int) span+1; // no more buckets than ticks
+			width=Long.divideUnsigned(span,nb)+1;
+			buckets=new ArrayList[nb];
+			for (int index=0; index<nb; index++) buckets[index]=new ArrayList<>(DEFAULT_BUCKET_SIZE);
+		}
+
+		/**
+		 * Checks if the time stamp lies within the part of this rung that has not
+		 * been moved on yet.
+		 */
+		boolean accepts(long ticks) {
+			return (ticks>=start)&&(Long.compareUnsigned(ticks-start,current*width)>=0);
+		}
+
+		ArrayList<EventQueueEntry<E>> getBucket(long ticks) {
+			return buckets[(int) Long.divideUnsigned(ticks-start,width)];
+		}
+
+		void add(EventQueueEntry<E> entry) {
+			getBucket(entry.getTime().getTicks()).add(entry);
+			count++;
+		}
+
+		/** @return first tick of the current bucket */
+		long getCurrentStart() {
+			return start+(current*width);
+		}
+
+		/** @return last tick of the current bucket */
+		long getCurrentEnd() {
+			final long end=getCurrentStart()+(width-1);
+			return Long.compareUnsigned(end-start,last-start)>0 ? last : end;
+		}
+
+	}
+
+	private final ArrayList<EventQueueEntry<E>> top=new ArrayList<>();
+	private final ArrayList<Rung<E>> ladder=new ArrayList<>(MAX_RUNGS); // index 0 is the top-most rung
+	private final ArrayList<EventQueueEntry<E>> bottom=new ArrayList<>();
+
+	private long topMin=Long.MAX_VALUE; // minimal time stamp in top
+	private long topMax=Long.MIN_VALUE; // maximal time stamp in top
+	private long topThreshold=Long.MIN_VALUE; // events with a time stamp above are put to top
+	private int size=0;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getMin()
+	 */
+	@Override
+	public Time getMin() {
+		prepareBottom();
+		return bottom.get(bottom.size()-1).getTime();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getTime(java.lang.Object)
+	 */
+	@Override
+	public Time getTime(E event) {
+		EventQueueEntry<E> entry=find(bottom,event);
+		if (entry!=null) return entry.getTime();
+		for (final Rung<E> rung : ladder) for (int index=rung.current; index<rung.buckets.length; index++) {
+			entry=find(rung.buckets[index],event);
+			if (entry!=null) return entry.getTime();
+		}
+		entry=find(top,event);
+		if (entry!=null) return entry.getTime();
+		return null;
+	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		copy(bottom,events,times);
+		for (final Rung<E> rung : ladder) for (int index=rung.current; index<rung.buckets.length; index++)
+			copy(rung.buckets[index],events,times);
+		copy(top,events,times);
+	}
+
+	private static <E> void copy(List<EventQueueEntry<E>> entries, List<? super E> events, List<? super Time> times) {
+		for (final EventQueueEntry<E> entry : entries) {
+			events.add(entry.getEvent());
+			times.add(entry.getTime());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#enqueue(java.lang.Object,
+	 * org.simplesim.core.scheduling.Time)
+	 */
+	@Override
+	public void enqueue(E event, Time time) {
+		final long ticks=time.getTicks();
+		final EventQueueEntry<E> entry=new EventQueueEntry<>(time,event);
+		size++;
+		if ((ticks>topThreshold)||(ladder.isEmpty()&&bottom.isEmpty())) {
+			top.add(entry);
+			if (ticks<topMin) topMin=ticks;
+			if (ticks>topMax) topMax=ticks;
+			return;
+		}
+		for (final Rung<E> rung : ladder) if (rung.accepts(ticks)) {
+			rung.add(entry);
+			return;
+		}
+		bottom.add(getPosition(bottom,ticks),entry);
+		if ((bottom.size()>THRESHOLD)&&(ladder.size()<MAX_RUNGS)) spawnRungFromBottom();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue(java.lang.Object)
+	 */
+	@Override
+	public Time dequeue(E event) {
+		Time result=remove(bottom,event);
+		if (result!=null) return result;
+		for (final Rung<E> rung : ladder) for (int index=rung.current; index<rung.buckets.length; index++) {
+			result=remove(rung.buckets[index],event);
+			if (result!=null) {
+				rung.count--;
+				return result;
+			}
+		}
+		return remove(top,event); // top bounds are kept as they are, they only need to be a convex hull
+	}
+
+	/**
+	 * Removes all given events in a single pass over all tiers in O(n+k) instead
+	 * of searching each event separately.
+	 */
+	@Override
+	public int dequeueEvents(Collection<E> events) {
+		if (events.size()<2) return EventQueue.super.dequeueEvents(events);
+		final Set<E> set=new HashSet<>(events);
+		final int before=size;
+		removeAll(bottom,set); // keeps the order of bottom
+		for (final Rung<E> rung : ladder) for (int index=rung.current; index<rung.buckets.length; index++)
+			rung.count-=removeAll(rung.buckets[index],set);
+		removeAll(top,set);
+		return before-size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue()
+	 */
+	@Override
+	public E dequeue() {
+		if (isEmpty()) return null;
+		prepareBottom();
+		size--;
+		return bottom.remove(bottom.size()-1).getEvent();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll()
+	 */
+	@Override
+	public List<E> dequeueAll() {
+		if (isEmpty()) return Collections.emptyList();
+		final List<E> result=new ArrayList<>();
+		drainMin(result);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#drainMin(java.util.List)
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		prepareBottom();
+		return drainFromBottom(bottom.get(bottom.size()-1).getTime().getTicks(),sink);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll(org.simplesim.core.
+	 * scheduling.Time)
+	 */
+	@Override
+	public List<E> dequeueAll(Time time) {
+		if (isEmpty()) return Collections.emptyList();
+		final long ticks=time.getTicks();
+		if ((ticks>topThreshold)||(ladder.isEmpty()&&bottom.isEmpty())) return dequeueAll(top,ticks);
+		for (final Rung<E> rung : ladder) if (rung.accepts(ticks)) {
+			final List<E> result=dequeueAll(rung.getBucket(ticks),ticks);
+			rung.count-=result.size();
+			return result;
+		}
+		final List<E> result=new ArrayList<>();
+		drainFromBottom(ticks,result);
+		return result;
+	}
+
+	/**
+	 * Makes sure that the bottom tier contains the events with the minimal time
+	 * stamp, if the queue is not empty.
+	 * <p>
+	 * Buckets are taken from the lowest rung of the ladder. A bucket is sorted
+	 * and moved to bottom if it is small enough or if all its events have the
+	 * same time stamp. Otherwise, a new rung is spawned from the bucket. If the
+	 * ladder is exhausted, the events of top are transferred to a new ladder.
+	 */
+	private void prepareBottom() {
+		while (bottom.isEmpty()) {
+			if (ladder.isEmpty()) {
+				if (top.isEmpty()) return;
+				transferTop();
+				continue;
+			}
+			final Rung<E> rung=ladder.get(ladder.size()-1);
+			while ((rung.current<rung.buckets.length)&&rung.buckets[rung.current].isEmpty()) rung.current++;
+			if ((rung.count==0)||(rung.current==rung.buckets.length)) {
+				ladder.remove(ladder.size()-1);
+				continue;
+			}
+			final ArrayList<EventQueueEntry<E>> bucket=rung.buckets[rung.current];
+			final long end=rung.getCurrentEnd();
+			rung.current++;
+			rung.count-=bucket.size();
+			long min=Long.MAX_VALUE, max=Long.MIN_VALUE;
+			for (final EventQueueEntry<E> entry : bucket) {
+				final long ticks=entry.getTime().getTicks();
+				if (ticks<min) min=ticks;
+				if (ticks>max) max=ticks;
+			}
+			if ((bucket.size()>THRESHOLD)&&(min!=max)&&(ladder.size()<MAX_RUNGS)) {
+				final Rung<E> child=new Rung<>(min,end,bucket.size());
+				for (final EventQueueEntry<E> entry : bucket) child.add(entry);
+				ladder.add(child);
+			} else {
+				bottom.addAll(bucket);
+				bottom.sort(Collections.reverseOrder());
+			}
+			rung.buckets[rung.current-1]=new ArrayList<>(DEFAULT_BUCKET_SIZE); // release memory of the moved bucket
+		}
+	}
+
+	/**
+	 * Transfers all events of top to a new rung or directly to bottom if all
+	 * events have the same time stamp.
+	 */
+	private void transferTop() {
+		if (topMin==topMax) {
+			bottom.addAll(top);
+		} else {
+			final Rung<E> rung=new Rung<>(topMin,topMax,top.size());
+			for (final EventQueueEntry<E> entry : top) rung.add(entry);
+			ladder.add(rung);
+		}
+		topThreshold=topMax;
+		top.clear();
+		topMin=Long.MAX_VALUE;
+		topMax=Long.MIN_VALUE;
+	}
+
+	/**
+	 * Moves the events of bottom to a new lowest rung if bottom has grown too
+	 * large.
+	 * <p>
+	 * Events with the minimal time stamp are not counted, since they cannot be
+	 * separated by a rung anyway.
+	 */
+	private void spawnRungFromBottom() {
+		final long min=bottom.get(bottom.size()-1).getTime().getTicks();
+		if ((getPosition(bottom,min)-countTicks(bottom,min))<=THRESHOLD) return;
+		final long last=ladder.isEmpty() ? topThreshold : ladder.get(ladder.size()-1).getCurrentStart()-1;
+		final Rung<E> rung=new Rung<>(min,last,bottom.size());
+		for (final EventQueueEntry<E> entry : bottom) rung.add(entry);
+		ladder.add(rung);
+		bottom.clear();
+	}
+
+	/**
+	 * Moves all events of bottom with the given time stamp to the sink.
+	 *
+	 * @return number of moved events
+	 */
+	private int drainFromBottom(long ticks, List<? super E> sink) {
+		final int pos=getPosition(bottom,ticks);
+		final int count=countTicks(bottom,ticks);
+		if (count==0) return 0;
+		final List<EventQueueEntry<E>> range=bottom.subList(pos-count,pos);
+		for (int index=count-1; index>=0; index--) sink.add(range.get(index).getEvent());
+		range.clear();
+		size-=count;
+		return count;
+	}
+
+	/**
+	 * Counts the entries with the given time stamp in a descending sorted list.
+	 */
+	private static int countTicks(List<? extends EventQueueEntry<?>> list, long ticks) {
+		final int pos=getPosition(list,ticks);
+		int index=pos;
+		while ((index>0)&&(list.get(index-1).getTime().getTicks()==ticks)) index--;
+		return pos-index;
+	}
+
+	private List<E> dequeueAll(List<EventQueueEntry<E>> list, long ticks) {
+		final List<E> result=new ArrayList<>();
+		final Iterator<EventQueueEntry<E>> iterator=list.iterator();
+		while (iterator.hasNext()) {
+			final EventQueueEntry<E> entry=iterator.next();
+			if (entry.getTime().getTicks()==ticks) {
+				result.add(entry.getEvent());
+				iterator.remove();
+			}
+		}
+		size-=result.size();
+		return result;
+	}
+
+	private Time remove(List<EventQueueEntry<E>> list, E event) {
+		final Iterator<EventQueueEntry<E>> iterator=list.iterator();
+		while (iterator.hasNext()) {
+			final EventQueueEntry<E> entry=iterator.next();
+			if (entry.getEvent().equals(event)) {
+				iterator.remove();
+				size--;
+				return entry.getTime();
+			}
+		}
+		return null;
+	}
+
+	private int removeAll(List<EventQueueEntry<E>> list, Set<E> events) {
+		final int before=list.size();
+		list.removeIf(entry -> events.contains(entry.getEvent()));
+		final int result=before-list.size();
+		size-=result;
+		return result;
+	}
+
+	private static <E> EventQueueEntry<E> find(List<EventQueueEntry<E>> list, E event) {
+		for (final EventQueueEntry<E> entry : list) if (entry.getEvent().equals(event)) return entry;
+		return null;
+	}
+
+	/**
+	 * Binary search to find the right-most position in a descending sorted list.
+	 *
+	 * @param list  the list to search in
+	 * @param ticks time stamp of the element to insert
+	 * @return insertion position of entry, right-most position in case of similar
+	 *         values
+	 */
+	private static int getPosition(List<? extends EventQueueEntry<?>> list, long ticks) {
+		int right=list.size(), left=0;
+		while (left<right) {
+			final int mid=(left+right)>>>1;
+			if (list.get(mid).getTime().getTicks()<ticks) right=mid;
+			else left=mid+1;
+		}
+		return left;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		for (int index=bottom.size()-1; index>=0; index--) {
+			sb.append(bottom.get(index).toString());
+			sb.append('\n');
+		}
+		for (int rung=ladder.size()-1; rung>=0; rung--) {
+			final Rung<E> r=ladder.get(rung);
+			for (int index=r.current; index<r.buckets.length; index++) for (final EventQueueEntry<E> entry : r.buckets[index]) {
+				sb.append(entry.toString());
+				sb.append('\n');
+			}
+		}
+		for (final EventQueueEntry<E> entry : top) {
+			sb.append(entry.toString());
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+}
@@ -11,12 +11,15 @@
 package org.simplesim.core.scheduling;
 
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Function;
 
 import org.simplesim.core.scheduling.AbstractBucketQueue.UnexpectedEmptyBucketException;
 
@@ -43,17 +46,24 @@ import org.simplesim.core.scheduling.AbstractBucketQueue.UnexpectedEmptyBucketEx
  *
  * @param <E> Event type
  * @see MultiLevelEventQueue
+ * @see LadderEventQueue
  * @see <a href=
  *      "http://citeseerx.ist.psu.edu/viewdoc/download?doi=10.1.1.95.4263&rep=rep1&type=pdf">Referring
  *      article</a>
  */
 public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 
+	private static final long serialVersionUID=1L;
+
 	private final static int TIER2_DEFAULT_CHUNK_SIZE=128;
+	private final static int MAX_POOL_SIZE=64; // maximum number of empty buckets kept for reuse
+
+	private final TreeMap<Time, List<E>> tier1=new TreeMap<>(); // current events, sorted
+	private final ArrayList<Map<Time, List<E>>> tier2=new ArrayList<>();// near future events, partly sorted
+	private final HashMap<Time, List<E>> tier3=new HashMap<>(); // far future events, unsorted
 
-	private final SortedMap<Time, List<E>> tier1=new TreeMap<>(); // current events, sorted
-	private final List<Map<Time, List<E>>> tier2=new ArrayList<>();// near future events, partly sorted
-	private final Map<Time, List<E>> tier3=new HashMap<>(); // far future events, unsorted
+	/** empty buckets to be reused, avoids creating a new list for each new time stamp */
+	private final ArrayDeque<List<E>> pool=new ArrayDeque<>(MAX_POOL_SIZE);
 
 	private int size=0;
 	private int chunkSizeTier2;  // estimated number of elements per bucket in tier2 
@@ -107,6 +117,26 @@ public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 		size++;
 	}
 
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * All events belonging to the far future tier are loaded into tier 3
+	 * directly, the others are enqueued one by one.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		long max=maxTimeTier3;
+		for (final E event : events) {
+			final Time time=times.apply(event);
+			if (time.getTicks()>=minTimeTier3) {
+				addEventToTier(tier3,event,time);
+				if (time.getTicks()>max) max=time.getTicks();
+				size++;
+			} else enqueue(event,time);
+		}
+		maxTimeTier3=max;
+	}
+
 	@Override
 	public E dequeue() {
 		if (isEmpty()) return null;
@@ -114,7 +144,7 @@ public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 		final List<E> bucket=tier1.get(getMin());
 		if (bucket.isEmpty()) throw new UnexpectedEmptyBucketException();
 		final E result=bucket.remove(bucket.size()-1);
-		if (bucket.isEmpty()) tier1.remove(getMin());
+		if (bucket.isEmpty()) recycleBucket(tier1.remove(tier1.firstKey()));
 		size--;
 		return result;
 	}
@@ -128,6 +158,23 @@ public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 		return bucket;
 	}
 
+	/**
+	 * Dequeues all elements with the smallest time stamp and adds them to the
+	 * given list.
+	 * <p>
+	 * The emptied bucket is kept for reuse, so in a steady state no new bucket
+	 * lists have to be created.
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final List<E> bucket=dequeueAll();
+		final int count=bucket.size();
+		sink.addAll(bucket);
+		recycleBucket(bucket);
+		return count;
+	}
+
 	@Override
 	public List<E> dequeueAll(Time time) { // not yet implemented
 		throw new UnsupportedOperationException();
@@ -162,6 +209,20 @@ public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 		return null;
 	}
 
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		copy(tier1,events,times);
+		for (Map<Time, List<E>> map : tier2) copy(map,events,times);
+		copy(tier3,events,times);
+	}
+
+	private static <E> void copy(Map<Time, List<E>> map, List<? super E> events, List<? super Time> times) {
+		for (Map.Entry<Time, List<E>> entry : map.entrySet()) {
+			events.addAll(entry.getValue());
+			times.addAll(Collections.nCopies(entry.getValue().size(),entry.getKey()));
+		}
+	}
+
 	private void refillTier1() {
 		if (indexTier2>=maxIndexTier2) refillTier2();
 		tier1.putAll(tier2.get(indexTier2));
@@ -205,19 +266,28 @@ public class MultiLevelBucketQueue<E> implements EventQueue<E> {
 	private void addEventToTier(Map<Time, List<E>> map, E event, Time time) {
 		List<E> bucket=map.get(time);
 		if (bucket==null) { // time stamp has not been added to queue, yet
-			bucket=new ArrayList<>();
+			bucket=pool.poll();
+			if (bucket==null) bucket=new ArrayList<>();
 			map.put(time,bucket);
 		} // now we definitely have a valid map entry
 		bucket.add(event);
 	}
 
+	private void recycleBucket(List<E> bucket) {
+		if (pool.size()<MAX_POOL_SIZE) {
+			bucket.clear();
+			pool.push(bucket);
+		}
+	}
+
 	private Time findAndRemoveEvent(Map<Time, List<E>> map, E event) {
 		for (Map.Entry<Time, List<E>> entry : map.entrySet()) {
 			if (entry.getValue().contains(event)) {
+				final Time time=entry.getKey();
 				entry.getValue().remove(event);
-				if (entry.getValue().isEmpty()) map.remove(entry.getKey());
+				if (entry.getValue().isEmpty()) recycleBucket(map.remove(time));
 				size--;
-				return entry.getKey();
+				return time;
 			}
 		}
 		return null;
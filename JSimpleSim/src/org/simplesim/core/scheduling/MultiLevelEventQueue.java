@@ -16,7 +16,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.function.Function;
 
 /**
  * A multi-level queue is a layered event queue with three tiers suitable for a
@@ -40,17 +40,20 @@ import java.util.Queue;
  *
  * @param <E> Event type
  * @see MultiLevelBucketQueue
+ * @see LadderEventQueue
  * @see <a href=
  *      "http://citeseerx.ist.psu.edu/viewdoc/download?doi=10.1.1.95.4263&rep=rep1&type=pdf">Referring
  *      article</a>
  */
 public class MultiLevelEventQueue<E> implements EventQueue<E> {
 
+	private static final long serialVersionUID=1L;
+
 	private final static int TIER2_DEFAULT_CHUNK_SIZE=128;
 
-	private final Queue<EventQueueEntry<E>> tier1=new PriorityQueue<>(TIER2_DEFAULT_CHUNK_SIZE); // current events, sorted
-	private final List<Collection<EventQueueEntry<E>>> tier2=new ArrayList<>();// near future events, partly sorted
-	private final Collection<EventQueueEntry<E>> tier3=new ArrayList<>(); // far future events, unsorted
+	private final PriorityQueue<EventQueueEntry<E>> tier1=new PriorityQueue<>(TIER2_DEFAULT_CHUNK_SIZE); // current events, sorted
+	private final ArrayList<Collection<EventQueueEntry<E>>> tier2=new ArrayList<>();// near future events, partly sorted
+	private final ArrayList<EventQueueEntry<E>> tier3=new ArrayList<>(); // far future events, unsorted
 
 	private int size=0;
 	private int chunkSizeTier2;  // estimated number of elements per bucket in tier2 
@@ -105,6 +108,26 @@ public class MultiLevelEventQueue<E> implements EventQueue<E> {
 		size++;
 	}
 
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * All events belonging to the far future tier are loaded into tier 3
+	 * directly, the others are enqueued one by one.
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		final List<EventQueueEntry<E>> entries=new ArrayList<>(events.size());
+		for (final E event : events) {
+			final Time time=times.apply(event);
+			if (time.getTicks()>=minTimeTier3) {
+				entries.add(new EventQueueEntry<>(time,event));
+				if (time.getTicks()>maxTimeTier3) maxTimeTier3=time.getTicks();
+			} else enqueue(event,time);
+		}
+		tier3.addAll(entries);
+		size+=entries.size();
+	}
+
 	@Override
 	public E dequeue() {
 		if (isEmpty()) return null;
@@ -125,6 +148,19 @@ public class MultiLevelEventQueue<E> implements EventQueue<E> {
 		return result;
 	}
 
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final Time time=getMin(); // remember current time stamp, also refills tier1
+		int count=0;
+		while (!tier1.isEmpty()&&tier1.peek().getTime().equals(time)) {
+			sink.add(tier1.poll().getEvent());
+			count++;
+		}
+		size-=count;
+		return count;
+	}
+
 	@Override
 	public List<E> dequeueAll(Time time) { // not yet implemented
 		throw new UnsupportedOperationException();
@@ -140,6 +176,20 @@ public class MultiLevelEventQueue<E> implements EventQueue<E> {
 		throw new UnsupportedOperationException(); // to be implemented later
 	}
 
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		copy(tier1,events,times);
+		for (Collection<EventQueueEntry<E>> bucket : tier2) copy(bucket,events,times);
+		copy(tier3,events,times);
+	}
+
+	private static <E> void copy(Collection<EventQueueEntry<E>> entries, List<? super E> events, List<? super Time> times) {
+		for (final EventQueueEntry<E> entry : entries) {
+			events.add(entry.getEvent());
+			times.add(entry.getTime());
+		}
+	}
+
 	private void refillTier1() {
 		if (indexTier2>=maxIndexTier2) refillTier2();
 		tier1.addAll(tier2.get(indexTier2)); 
@@ -32,6 +32,8 @@ import java.util.concurrent.ConcurrentSkipListMap;
  */
 public final class SortedBucketQueue<E> extends AbstractBucketQueue<E,SortedMap<Time, List<E>>> {
 
+	private static final long serialVersionUID=1L;
+
 	/**
 	 * Constructor allowing to parameterize your own variant of a {@code SortedMap}.
 	 * For example {@link TreeMap}, {@link ConcurrentSkipListMap} or any another
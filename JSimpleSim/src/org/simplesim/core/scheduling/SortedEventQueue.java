@@ -12,7 +12,10 @@
 package org.simplesim.core.scheduling;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Sorted list implementation of the {@code EventQueue} interface.
@@ -35,6 +38,8 @@ import java.util.List;
  */
 public class SortedEventQueue<E> extends AbstractEventQueue<E,ArrayList<EventQueueEntry<E>>> {
 
+	private static final long serialVersionUID=1L;
+
 	private static final int DEFAULT_LIST_SIZE=8;
 
 	public SortedEventQueue() {
@@ -74,6 +79,17 @@ public class SortedEventQueue<E> extends AbstractEventQueue<E,ArrayList<EventQue
 		getQueue().add(getPosition(time),new EventQueueEntry<E>(time,event));
 	}
 
+	/**
+	 * Enqueues a collection of events at once by appending them and sorting the
+	 * whole list afterwards with a complexity of O(n log n).
+	 */
+	@Override
+	public void enqueueAll(Collection<E> events, Function<E, Time> times) {
+		getQueue().ensureCapacity(size()+events.size());
+		for (final E event : events) getQueue().add(new EventQueueEntry<E>(times.apply(event),event));
+		getQueue().sort(Collections.reverseOrder());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -0,0 +1,101 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Event queue interface with primitive time stamps.
+ * <p>
+ * All methods of {@link EventQueue} are supported, but time stamps can also be
+ * passed as plain {@code long} ticks. Implementations store ticks as
+ * primitives, so the methods of this interface do not create any {@code Time}
+ * objects. This avoids the creation of many short-lived objects on the hot
+ * path of a simulation run. The methods inherited from {@code EventQueue} may
+ * have to create new {@code Time} objects when returning time stamps.
+ * <p>
+ * Since there is no {@code null} for primitives, {@link #UNDEFINED} is used to
+ * denote a missing time stamp.
+ *
+ * @param <E> type of events to be stored in the queue
+ *
+ * @see TickHeapEventQueue
+ */
+public interface TickEventQueue<E> extends EventQueue<E> {
+
+	/** marker for an undefined time stamp, e.g. if the queue is empty */
+	long UNDEFINED=Long.MIN_VALUE;
+
+	/**
+	 * Gets the minimal time stamp in ticks.
+	 *
+	 * @return current minimal time stamp or {@link #UNDEFINED} if the queue is
+	 *         empty
+	 */
+	long getMinTicks();
+
+	/**
+	 * Gets the time of the given event in ticks but does not dequeue it.
+	 *
+	 * @param event the event to retrieve the time for
+	 * @return time stamp of the event or {@link #UNDEFINED} if the event does not
+	 *         exist
+	 */
+	long getTicks(E event);
+
+	/**
+	 * Enqueues an event at the given time.
+	 *
+	 * @param event the event to be added to the queue
+	 * @param ticks the time stamp of the event in ticks, must be a future time
+	 * @see EventQueue#enqueue(Object, Time)
+	 */
+	void enqueue(E event, long ticks);
+
+	/**
+	 * Dequeues all elements with the given time stamp.
+	 *
+	 * @param ticks the time stamp of the events to dequeue
+	 * @return a list containing all events with this time stamp or an empty list if
+	 *         there are not events at the given time
+	 * @see EventQueue#dequeueAll(Time)
+	 */
+	List<E> dequeueAll(long ticks);
+
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * The time stamp of each event is given in ticks by a mapping function. The
+	 * default implementation enqueues the events one by one.
+	 *
+	 * @param events the events to be added to the queue
+	 * @param ticks  function mapping each event to its time stamp in ticks
+	 * @see EventQueue#enqueueAll(Collection, Function)
+	 */
+	default void enqueueAllTicks(Collection<E> events, ToLongFunction<E> ticks) {
+		for (final E event : events) enqueue(event,ticks.applyAsLong(event));
+	}
+
+	@Override
+	default void enqueue(E event, Time time) {
+		enqueue(event,time.getTicks());
+	}
+
+	@Override
+	default List<E> dequeueAll(Time time) {
+		return dequeueAll(time.getTicks());
+	}
+
+}
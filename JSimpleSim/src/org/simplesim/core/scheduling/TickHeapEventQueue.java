@@ -0,0 +1,273 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Binary heap implementation of the {@code TickEventQueue} interface.
+ * <p>
+ * Time stamps and events are stored in two parallel arrays, time stamps as
+ * primitive {@code long} ticks. Thus, no entry objects are needed and the
+ * tick-based operations do not create any objects at all (except for the
+ * result lists of {@code dequeueAll}, use {@code drainMin} to avoid them). Complexity is the same as for
+ * {@link HeapEventQueue}: {@code getMinTicks()} is done in O(1),
+ * {@code enqueue()} and {@code dequeue()} in O(log n). Searches like
+ * {@code dequeue(E)} and {@code getTicks(E)} take O(n).
+ * <p>
+ * Note: The {@code Time} based methods of {@code EventQueue} create a new
+ * {@code Time} object for each returned time stamp. Use the tick-based
+ * methods to avoid this.
+ *
+ * @param <E> event type
+ *
+ * @see HeapEventQueue
+ */
+public class TickHeapEventQueue<E> implements TickEventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	private static final int DEFAULT_CAPACITY=16;
+
+	private long[] ticks; // time stamps, organized as binary heap
+	@SuppressWarnings("serial") // Conditionally serializable
+	private Object[] events; // events at the same positions as their time stamps
+	private int size=0;
+
+	public TickHeapEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor to set the initial capacity of the queue.
+	 *
+	 * @param capacity the initial capacity
+	 */
+	public TickHeapEventQueue(int capacity) {
+		ticks=new long[Math.max(1,capacity)];
+		events=new Object[ticks.length];
+	}
+
+	@Override
+	public long getMinTicks() {
+		if (isEmpty()) return UNDEFINED;
+		return ticks[0];
+	}
+
+	@Override
+	public Time getMin() {
+		if (isEmpty()) return null;
+		return new Time(ticks[0]);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long getTicks(E event) {
+		final int index=indexOf(event);
+		if (index<0) return UNDEFINED;
+		return ticks[index];
+	}
+
+	@Override
+	public Time getTime(E event) {
+		final int index=indexOf(event);
+		if (index<0) return null;
+		return new Time(ticks[index]);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		for (int index=0; index<size; index++) {
+			events.add((E) this.events[index]);
+			times.add(new Time(ticks[index]));
+		}
+	}
+
+	@Override
+	public void enqueue(E event, long time) {
+		if (size==ticks.length) {
+			final int capacity=size+(size>>1)+1;
+			ticks=Arrays.copyOf(ticks,capacity);
+			events=Arrays.copyOf(events,capacity);
+		}
+		siftUp(size++,time,event);
+	}
+
+	/**
+	 * Enqueues a collection of events at once.
+	 * <p>
+	 * If the collection is at least as large as the queue, all events are appended
+	 * and the heap is rebuilt in O(n). Otherwise, the events are enqueued one by
+	 * one.
+	 */
+	@Override
+	public void enqueueAllTicks(Collection<E> batch, ToLongFunction<E> times) {
+		if (batch.size()<size) {
+			TickEventQueue.super.enqueueAllTicks(batch,times);
+			return;
+		}
+		if ((size+batch.size())>ticks.length) {
+			ticks=Arrays.copyOf(ticks,size+batch.size());
+			events=Arrays.copyOf(events,size+batch.size());
+		}
+		for (final E event : batch) {
+			ticks[size]=times.applyAsLong(event);
+			events[size++]=event;
+		}
+		for (int index=(size>>1)-1; index>=0; index--) siftDown(index,ticks[index],events[index]);
+	}
+
+	@Override
+	public void enqueueAll(Collection<E> batch, Function<E, Time> times) {
+		enqueueAllTicks(batch,(E event) -> times.apply(event).getTicks());
+	}
+
+	@Override
+	public Time dequeue(E event) {
+		final int index=indexOf(event);
+		if (index<0) return null;
+		final Time result=new Time(ticks[index]);
+		removeAt(index);
+		return result;
+	}
+
+	@Override
+	public E dequeue() {
+		if (isEmpty()) return null;
+		return removeAt(0);
+	}
+
+	@Override
+	public List<E> dequeueAll() {
+		if (isEmpty()) return Collections.emptyList();
+		final List<E> result=new ArrayList<>();
+		final long min=ticks[0];
+		while ((size>0)&&(ticks[0]==min)) result.add(removeAt(0));
+		return result;
+	}
+
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		final long min=ticks[0];
+		int count=0;
+		while ((size>0)&&(ticks[0]==min)) {
+			sink.add(removeAt(0));
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<E> dequeueAll(long time) {
+		if (isEmpty()) return Collections.emptyList();
+		if (time==ticks[0]) return dequeueAll();
+		// remove all matching entries by compaction and restore the heap afterwards
+		final List<E> result=new ArrayList<>();
+		int count=0;
+		for (int index=0; index<size; index++) {
+			if (ticks[index]==time) result.add((E) events[index]);
+			else {
+				ticks[count]=ticks[index];
+				events[count]=events[index];
+				count++;
+			}
+		}
+		if (result.isEmpty()) return result;
+		Arrays.fill(events,count,size,null);
+		size=count;
+		for (int index=(size>>1)-1; index>=0; index--) siftDown(index,ticks[index],events[index]);
+		return result;
+	}
+
+	private int indexOf(E event) {
+		for (int index=0; index<size; index++) if (events[index].equals(event)) return index;
+		return -1;
+	}
+
+	/**
+	 * Removes the entry at the given position of the heap.
+	 *
+	 * @param index position of the entry
+	 * @return the removed event
+	 */
+	@SuppressWarnings("unchecked")
+	private E removeAt(int index) {
+		final E result=(E) events[index];
+		final int last=--size;
+		if (index!=last) {
+			final long lastTicks=ticks[last];
+			final Object lastEvent=events[last];
+			siftDown(index,lastTicks,lastEvent);
+			if (events[index]==lastEvent) siftUp(index,lastTicks,lastEvent);
+		}
+		events[last]=null;
+		return result;
+	}
+
+	private void siftUp(int index, long time, Object event) {
+		while (index>0) {
+			final int parent=(index-1)>>>1;
+			if (ticks[parent]<=time) break;
+			ticks[index]=ticks[parent];
+			events[index]=events[parent];
+			index=parent;
+		}
+		ticks[index]=time;
+		events[index]=event;
+	}
+
+	private void siftDown(int index, long time, Object event) {
+		final int half=size>>>1;
+		while (index<half) {
+			int child=(index<<1)+1;
+			if (((child+1)<size)&&(ticks[child+1]<ticks[child])) child++;
+			if (time<=ticks[child]) break;
+			ticks[index]=ticks[child];
+			events[index]=events[child];
+			index=child;
+		}
+		ticks[index]=time;
+		events[index]=event;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		for (int index=0; index<size; index++) {
+			sb.append('[');
+			sb.append(new Time(ticks[index]).toString());
+			sb.append('|');
+			sb.append(events[index].toString());
+			sb.append("]\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -5,6 +5,8 @@
  */
 package org.simplesim.core.scheduling;
 
+import java.io.Serializable;
+
 /**
  * Provides time and calendar functionality to scale and navigate the
  * simulation's time axis.
@@ -15,7 +17,9 @@ package org.simplesim.core.scheduling;
  * <p>
  * This class is immutable and thus tread safe.
  */
-public final class Time implements Comparable<Time> {
+public final class Time implements Comparable<Time>, Serializable {
+
+	private static final long serialVersionUID=1L;
 
 	// basic coords of the time system
 	public static final int SECONDS_PER_MINUTE=60;
@@ -0,0 +1,376 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel implementation of the {@code EventQueue} interface.
+ * <p>
+ * The queue follows the hierarchical timing wheels of G. Varghese and A. Lauck
+ * (1987). There are four wheels aligned to the calendar units of {@link Time}:
+ * <ol>
+ * <li>a second wheel with one slot per tick, covering the current minute
+ * <li>a minute wheel with one slot per minute, covering the current hour
+ * <li>an hour wheel with one slot per hour, covering the current day
+ * <li>a day wheel with one slot per day, covering the current month
+ * </ol>
+ * A cursor marks the current minimum. An event is put into the finest wheel
+ * that covers its time stamp relative to the cursor. If the second wheel runs
+ * empty, the next non-empty slot of a coarser wheel is cascaded down to the
+ * finer wheels. Events beyond the current month (including
+ * {@link Time#INFINITY}) are kept in an overflow queue and moved to the wheels
+ * month by month. Events before the cursor, which only occur if an event is
+ * enqueued before the current minimum, are kept in a separate queue.
+ * <p>
+ * Each event is cascaded at most once per wheel and the next non-empty slot
+ * is found via a bit set. This leads to a complexity of O(1) for
+ * {@code enqueue()} and an amortized complexity of O(1) for
+ * {@code getMin()}, {@code dequeue()} and {@code dequeueAll()} (O(k) for k
+ * events with minimal time stamp). {@code dequeueAll(Time)} only has to search
+ * one slot. {@code getTime(E)} and {@code dequeue(E)} need a linear search
+ * with a complexity of O(n). Events in the overflow queue take O(log n).
+ * <p>
+ * Note: This queue type is suitable as global event queue if most events are
+ * scheduled within a horizon of seconds to days, with only a few events in the
+ * far future.
+ *
+ * @param <E> event type
+ *
+ * @see CalendarEventQueue
+ * @see LadderEventQueue
+ */
+public class TimingWheelEventQueue<E> implements EventQueue<E> {
+
+	private static final long serialVersionUID=1L;
+
+	/** number of ticks covered by a slot of each wheel, starting with the finest */
+	private static final long[] GRANULARITY= { 1,Time.TICKS_PER_MINUTE,Time.TICKS_PER_HOUR,Time.TICKS_PER_DAY };
+
+	/** number of ticks covered by each wheel as a whole */
+	private static final long[] SPAN= { Time.TICKS_PER_MINUTE,Time.TICKS_PER_HOUR,Time.TICKS_PER_DAY,
+			Time.TICKS_PER_MONTH };
+
+	private static final int WHEELS=GRANULARITY.length;
+
+	private final ArrayList<EventQueueEntry<E>>[][] wheels;
+	private final BitSet[] occupied; // marks the non-empty slots of each wheel
+
+	private final SortedBucketQueue<E> overflow=new SortedBucketQueue<>(); // events beyond the current month
+	private final SortedBucketQueue<E> early=new SortedBucketQueue<>(); // events before the cursor
+
+	private long now=0; // cursor, no event of the wheels is before this tick
+	private int size=0;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TimingWheelEventQueue() {
+		wheels=new ArrayList[WHEELS][];
+		occupied=new BitSet[WHEELS];
+		for (int wheel=0; wheel<WHEELS; wheel++) {
+			wheels[wheel]=new ArrayList[(int) (SPAN[wheel]/GRANULARITY[wheel])];
+			occupied[wheel]=new BitSet(wheels[wheel].length);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getMin()
+	 */
+	@Override
+	public Time getMin() {
+		if (isEmpty()) return null;
+		if (!early.isEmpty()) return early.getMin();
+		final List<EventQueueEntry<E>> slot=locateMin();
+		return slot.get(slot.size()-1).getTime();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#getTime(java.lang.Object)
+	 */
+	@Override
+	public Time getTime(E event) {
+		return search(event,false);
+	}
+
+	@Override
+	public void copyTo(List<? super E> events, List<? super Time> times) {
+		early.copyTo(events,times);
+		for (int wheel=0; wheel<WHEELS; wheel++) {
+			final BitSet bits=occupied[wheel];
+			for (int index=bits.nextSetBit(0); index>=0; index=bits.nextSetBit(index+1))
+				for (final EventQueueEntry<E> entry : wheels[wheel][index]) {
+					events.add(entry.getEvent());
+					times.add(entry.getTime());
+				}
+		}
+		overflow.copyTo(events,times);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#enqueue(java.lang.Object,
+	 * org.simplesim.core.scheduling.Time)
+	 */
+	@Override
+	public void enqueue(E event, Time time) {
+		if (isEmpty()) now=time.getTicks(); // align the wheels to the first event
+		place(new EventQueueEntry<>(time,event));
+		size++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue(java.lang.Object)
+	 */
+	@Override
+	public Time dequeue(E event) {
+		return search(event,true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeue()
+	 */
+	@Override
+	public E dequeue() {
+		if (isEmpty()) return null;
+		size--;
+		if (!early.isEmpty()) return early.dequeue();
+		final List<EventQueueEntry<E>> slot=locateMin();
+		final EventQueueEntry<E> entry=slot.remove(slot.size()-1);
+		if (slot.isEmpty()) occupied[0].clear(getSlot(now,0));
+		return entry.getEvent();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll()
+	 */
+	@Override
+	public List<E> dequeueAll() {
+		if (isEmpty()) return Collections.emptyList();
+		final List<E> result=new ArrayList<>();
+		drainMin(result);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#drainMin(java.util.List)
+	 */
+	@Override
+	public int drainMin(List<? super E> sink) {
+		if (isEmpty()) return 0;
+		int count=0;
+		if (!early.isEmpty()) count=early.drainMin(sink);
+		else {
+			final List<EventQueueEntry<E>> slot=locateMin(); // all events of a slot have the same time stamp
+			for (final EventQueueEntry<E> entry : slot) sink.add(entry.getEvent());
+			count=slot.size();
+			slot.clear();
+			occupied[0].clear(getSlot(now,0));
+		}
+		size-=count;
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.simplesim.core.scheduling.EventQueue#dequeueAll(org.simplesim.core.
+	 * scheduling.Time)
+	 */
+	@Override
+	public List<E> dequeueAll(Time time) {
+		if (isEmpty()) return Collections.emptyList();
+		final long ticks=time.getTicks();
+		final List<E> result;
+		if (ticks<now) result=early.dequeueAll(time);
+		else {
+			final int wheel=getWheel(ticks);
+			if (wheel<0) result=overflow.dequeueAll(time);
+			else {
+				result=new ArrayList<>();
+				final int index=getSlot(ticks,wheel);
+				final List<EventQueueEntry<E>> slot=wheels[wheel][index];
+				if (slot!=null) {
+					final Iterator<EventQueueEntry<E>> iterator=slot.iterator();
+					while (iterator.hasNext()) {
+						final EventQueueEntry<E> entry=iterator.next();
+						if (entry.getTime().getTicks()==ticks) {
+							result.add(entry.getEvent());
+							iterator.remove();
+						}
+					}
+					if (slot.isEmpty()) occupied[wheel].clear(index);
+				}
+			}
+		}
+		size-=result.size();
+		return result;
+	}
+
+	/**
+	 * Moves the cursor to the slot of the second wheel holding the minimal time
+	 * stamp.
+	 * <p>
+	 * The queue must not be empty and must not contain any events before the
+	 * cursor.
+	 *
+	 * @return the slot with the minimal time stamp
+	 */
+	private List<EventQueueEntry<E>> locateMin() {
+		int index=occupied[0].nextSetBit(getSlot(now,0));
+		while (index<0) {
+			cascade();
+			index=occupied[0].nextSetBit(getSlot(now,0));
+		}
+		now=getWindowStart(now,0)+index;
+		return wheels[0][index];
+	}
+
+	/**
+	 * Refills the second wheel, which must be empty.
+	 * <p>
+	 * The next non-empty slot of the finest coarser wheel is distributed to the
+	 * finer wheels. If all wheels are empty, the month of the minimal time stamp
+	 * of the overflow queue is moved to the wheels.
+	 */
+	private void cascade() {
+		for (int wheel=1; wheel<WHEELS; wheel++) {
+			final int index=occupied[wheel].nextSetBit(getSlot(now,wheel)+1);
+			if (index>=0) {
+				now=getWindowStart(now,wheel)+(index*GRANULARITY[wheel]);
+				final List<EventQueueEntry<E>> slot=wheels[wheel][index];
+				occupied[wheel].clear(index);
+				for (final EventQueueEntry<E> entry : slot) place(entry); // goes to finer wheels only
+				slot.clear();
+				return;
+			}
+		}
+		now=overflow.getMin().getTicks();
+		while (!overflow.isEmpty()&&(getWheel(overflow.getMin().getTicks())>=0)) {
+			final Time time=overflow.getMin();
+			for (final E event : overflow.dequeueAll()) place(new EventQueueEntry<>(time,event));
+		}
+	}
+
+	/**
+	 * Puts an entry into the finest wheel covering its time stamp, or into the
+	 * early or overflow queue.
+	 */
+	private void place(EventQueueEntry<E> entry) {
+		final long ticks=entry.getTime().getTicks();
+		if (ticks<now) {
+			early.enqueue(entry.getEvent(),entry.getTime());
+			return;
+		}
+		final int wheel=getWheel(ticks);
+		if (wheel<0) {
+			overflow.enqueue(entry.getEvent(),entry.getTime());
+			return;
+		}
+		final int index=getSlot(ticks,wheel);
+		if (wheels[wheel][index]==null) wheels[wheel][index]=new ArrayList<>();
+		wheels[wheel][index].add(entry);
+		occupied[wheel].set(index);
+	}
+
+	/**
+	 * Searches an event in all parts of the queue and removes it if requested.
+	 *
+	 * @return the time stamp of the event or null if it is not part of the queue
+	 */
+	private Time search(E event, boolean remove) {
+		Time result=remove ? early.dequeue(event) : early.getTime(event);
+		if (result==null) for (int wheel=0; (wheel<WHEELS)&&(result==null); wheel++) {
+			final BitSet bits=occupied[wheel];
+			for (int index=bits.nextSetBit(0); (index>=0)&&(result==null); index=bits.nextSetBit(index+1)) {
+				final Iterator<EventQueueEntry<E>> iterator=wheels[wheel][index].iterator();
+				while (iterator.hasNext()) {
+					final EventQueueEntry<E> entry=iterator.next();
+					if (entry.getEvent().equals(event)) {
+						result=entry.getTime();
+						if (remove) {
+							iterator.remove();
+							if (wheels[wheel][index].isEmpty()) bits.clear(index);
+						}
+						break;
+					}
+				}
+			}
+		}
+		if (result==null) result=remove ? overflow.dequeue(event) : overflow.getTime(event);
+		if (remove&&(result!=null)) size--;
+		return result;
+	}
+
+	/**
+	 * Returns the finest wheel covering the given time stamp relative to the
+	 * cursor.
+	 *
+	 * @return index of the wheel or -1 if the time stamp is beyond the current
+	 *         month
+	 */
+	private int getWheel(long ticks) {
+		for (int wheel=0; wheel<WHEELS; wheel++)
+			if (Math.floorDiv(ticks,SPAN[wheel])==Math.floorDiv(now,SPAN[wheel])) return wheel;
+		return -1;
+	}
+
+	private static int getSlot(long ticks, int wheel) {
+		return (int) (Math.floorMod(ticks,SPAN[wheel])/GRANULARITY[wheel]);
+	}
+
+	private static long getWindowStart(long ticks, int wheel) {
+		return ticks-Math.floorMod(ticks,SPAN[wheel]);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb=new StringBuffer();
+		sb.append(early.toString());
+		for (int wheel=0; wheel<WHEELS; wheel++) {
+			final BitSet bits=occupied[wheel];
+			for (int index=bits.nextSetBit(0); index>=0; index=bits.nextSetBit(index+1))
+				for (final EventQueueEntry<E> entry : wheels[wheel][index]) {
+					sb.append(entry.toString());
+					sb.append('\n');
+				}
+		}
+		sb.append(overflow.toString());
+		return sb.toString();
+	}
+
+}
@@ -15,7 +15,12 @@ import org.simplesim.model.State;
  */
 public class SimpleAgent extends RoutingAgent<SimpleAgent.SimpleAgentState, SimpleAgent.Event> {
 
+	private static final long serialVersionUID=1L;
+
 	static class SimpleAgentState implements State {
+
+		private static final long serialVersionUID=1L;
+
 		/*
 		 * Place state variables, getters and setters here.
 		 */
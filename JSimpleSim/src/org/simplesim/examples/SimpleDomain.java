@@ -19,6 +19,8 @@ import org.simplesim.simulator.Simulator;
  */
 public class SimpleDomain extends RoutingDomain {
 
+	private static final long serialVersionUID=1L;
+
 	public SimpleDomain() {
 	}
 
@@ -26,6 +26,8 @@ import org.simplesim.model.RoutingAgent;
  */
 public final class DynamicElevator extends RoutingAgent<ElevatorState, Elevator.Event> implements Elevator {
 
+	private static final long serialVersionUID=1L;
+
 	private final ElevatorStrategy strategy;
 
 	public DynamicElevator() {
@@ -16,6 +16,8 @@ import org.simplesim.model.RoutingDomain;
  */
 public class DynamicModel extends RoutingDomain {
 
+	private static final long serialVersionUID=1L;
+
 	private final DynamicElevator elevator=new DynamicElevator();
 
 	public DynamicModel() {
@@ -33,6 +33,8 @@ import org.simplesim.model.RoutingAgent;
  */
 public final class DynamicVisitor extends RoutingAgent<VisitorState, Visitor.Event> implements Visitor {
 
+	private static final long serialVersionUID=1L;
+
 	private static final Random random=new Random();
 
 
@@ -21,6 +21,8 @@ import org.simplesim.model.RoutingDomain;
  * 
  */
 public final class Floor extends RoutingDomain {
+
+	private static final long serialVersionUID=1L;
 	
 	private final int floor;
 	
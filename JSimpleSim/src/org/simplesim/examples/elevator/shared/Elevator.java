@@ -5,6 +5,8 @@
  */
 package org.simplesim.examples.elevator.shared;
 
+import java.io.Serializable;
+
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.Agent;
 
@@ -12,7 +14,7 @@ import org.simplesim.model.Agent;
  * Basic interface to encapsulate elevator functionality and events
  *
  */
-public interface Elevator {
+public interface Elevator extends Serializable {
 
 	enum Event {
 		IDLE, MOVED
@@ -17,11 +17,13 @@ import org.simplesim.model.State;
  */
 public final class ElevatorState implements State {
 
+	private static final long serialVersionUID=1L;
+
 	private int currentFloor;
 	private int destinationFloor;
 	private int direction; // moving direction
-	private final List<Request> cabin=new LinkedList<>(); // who is in the cabin?
-	private final List<Queue<Request>> queueList=new ArrayList<>(); // requests grouped by floor
+	private final LinkedList<Request> cabin=new LinkedList<>(); // who is in the cabin?
+	private final ArrayList<Queue<Request>> queueList=new ArrayList<>(); // requests grouped by floor
 	private final int arrivals[]=new int[Limits.MAX_FLOOR+1]; // number of recent arrival for graphic view
 	private final int button[]=new int[Limits.MAX_FLOOR+1]; // status of elevator button on each floor
 
@@ -12,6 +12,7 @@ import static org.simplesim.examples.elevator.shared.Limits.MAX_FLOOR;
 import static org.simplesim.examples.elevator.shared.Limits.UP;
 import static org.simplesim.examples.elevator.shared.Limits.UPDOWN;
 
+import java.io.Serializable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,7 +30,9 @@ import org.simplesim.examples.elevator.shared.Elevator.Event;
  * <p>This class only contains the steering logic, agent-specific functionality (messaging, event management,...) is part of the
  * elevator implementations. Thus, dynamic and static elevator both use the same strategy.
  */
-public final class ElevatorStrategy {
+public final class ElevatorStrategy implements Serializable {
+
+	private static final long serialVersionUID=1L;
 
 	// constant for elevators destination
 	private static final int NONE=Integer.MIN_VALUE;
@@ -6,13 +6,17 @@
  */
 package org.simplesim.examples.elevator.shared;
 
+import java.io.Serializable;
+
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.Agent;
 
 /**
  * Content of messages between elevator and visitor
  */
-public class Request implements Comparable<Request> {
+public class Request implements Comparable<Request>, Serializable {
+
+	private static final long serialVersionUID=1L;
 	
 	private final Agent visitor;
 	private final int startingFloor; // origin
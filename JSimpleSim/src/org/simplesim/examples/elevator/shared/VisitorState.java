@@ -14,6 +14,8 @@ import org.simplesim.model.State;
  * Class containing all relevant variables of the visitor state
  */
 public final class VisitorState implements State {
+
+	private static final long serialVersionUID=1L;
 	
 	public enum ACTIVITY {
 		waiting, working
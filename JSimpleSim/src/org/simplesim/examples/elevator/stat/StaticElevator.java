@@ -26,6 +26,8 @@ import org.simplesim.model.BasicAgent;
  */
 public final class StaticElevator extends BasicAgent<ElevatorState, Elevator.Event> implements Elevator {
 
+	private static final long serialVersionUID=1L;
+
 	private final ElevatorStrategy strategy;
 
 	public StaticElevator() {
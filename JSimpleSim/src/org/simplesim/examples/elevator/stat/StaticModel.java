@@ -16,6 +16,8 @@ import org.simplesim.model.BasicDomain;
  */
 public final class StaticModel extends BasicDomain {
 
+	private static final long serialVersionUID=1L;
+
 	/* init elevator, ensure only one elevator per model */
 	private final StaticElevator elevator=new StaticElevator();
 	
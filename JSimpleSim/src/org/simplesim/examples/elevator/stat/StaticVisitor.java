@@ -32,6 +32,8 @@ import org.simplesim.model.BasicAgent;
  */
 public final class StaticVisitor extends BasicAgent<VisitorState, Visitor.Event> implements Visitor {
 
+	private static final long serialVersionUID=1L;
+
 	private static final Random random=new Random();
 
 	public StaticVisitor() {
@@ -15,6 +15,8 @@ import org.simplesim.model.BasicAgent;
  */
 public final class Cell extends BasicAgent<CellState, Object> {
 
+	private static final long serialVersionUID=1L;
+
 	public Cell(int posX, int posY, boolean life) {
 		super(null,new CellState());
 		getState().setPosX(posX);
@@ -12,6 +12,8 @@ import org.simplesim.model.State;
  */
 public class CellState implements State {
 
+	private static final long serialVersionUID=1L;
+
 	private int posX, posY; // the cell position
 	private boolean alive;   // is it alive?
 
@@ -10,6 +10,8 @@ import org.simplesim.model.BasicDomain;
 
 public class Model extends BasicDomain {
 
+	private static final long serialVersionUID=1L;
+
 	private final Cell world[][];
 	private final int width, height;
 
@@ -15,7 +15,7 @@ import javax.swing.WindowConstants;
 
 import org.simplesim.core.instrumentation.Listener;
 import org.simplesim.core.scheduling.Time;
-import org.simplesim.model.Agent;
+import org.simplesim.model.ModelEntity;
 import org.simplesim.simulator.Simulator;
 
 @SuppressWarnings("serial")
@@ -44,7 +44,7 @@ public class View extends JFrame implements Listener<Simulator> {
 				// Get a new graphics context every time through the loop
 				// to make sure the strategy is validated
 				final Graphics g=bs.getDrawGraphics();
-				for (Agent cell : model.listAllAgents(false)) {
+				for (ModelEntity cell : model.listDomainEntities()) {
 					final CellState cs=((Cell) cell).getState();
 					if (cs.isAlive()) g.setColor(Color.YELLOW);
 					else g.setColor(Color.BLUE);
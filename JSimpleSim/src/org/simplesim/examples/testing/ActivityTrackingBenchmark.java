@@ -0,0 +1,163 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ */
+package org.simplesim.examples.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simplesim.core.messaging.DirectMessageForwarding;
+import org.simplesim.core.messaging.Message;
+import org.simplesim.core.messaging.SinglePort;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.BasicAgent;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.State;
+import org.simplesim.simulator.ConcurrentTSSimulator;
+import org.simplesim.simulator.SequentialTSSimulator;
+
+/**
+ * Benchmark of the activity tracking of the time step simulators
+ * <p>
+ * The model is a ring of agents passing a few tokens to their successors. An
+ * agent without a token declares itself idle, so with activity tracking only
+ * the agents holding a token are called in a step. Each configuration is run
+ * with and without activity tracking, sequentially and with persistent worker
+ * threads. For each run, the mean time of the measurement iterations and a
+ * checksum of the token passes are printed as a tab separated table. The
+ * checksums of a simulator have to be equal with and without tracking.
+ * <p>
+ * Usage: {@code ActivityTrackingBenchmark [agents [tokens [steps [workers]]]]},
+ * by default a ring of 200000 agents with 50 tokens is simulated for 500
+ * steps, the concurrent simulator uses four workers.
+ */
+public class ActivityTrackingBenchmark {
+
+	private static final int WARMUP_ITERATIONS=1;
+	private static final int MEASUREMENT_ITERATIONS=3;
+
+	private static final class TokenState implements State {
+
+		private static final long serialVersionUID=1L;
+
+		private long passes=0;
+
+	}
+
+	private static final class TokenAgent extends BasicAgent<TokenState, Object> {
+
+		private static final long serialVersionUID=1L;
+
+		TokenAgent() {
+			super(new TokenState());
+			setInport(new SinglePort(this));
+			setOutport(new SinglePort(this));
+		}
+
+		@Override
+		public Time doEvent(Time time) {
+			if (!getInport().hasMessages()) setIdle(true);
+			while (getInport().hasMessages()) {
+				getOutport().write(getInport().poll());
+				getState().passes++;
+			}
+			return Time.INFINITY;
+		}
+
+	}
+
+	private final int size;
+	private final int tokens;
+	private final int steps;
+	private final int workers;
+
+	private BasicDomain root;
+	private final List<TokenAgent> ring=new ArrayList<>();
+
+	public ActivityTrackingBenchmark(int size, int tokens, int steps, int workers) {
+		this.size=size;
+		this.tokens=tokens;
+		this.steps=steps;
+		this.workers=workers;
+	}
+
+	/**
+	 * Builds a new ring with evenly distributed tokens.
+	 */
+	private void buildModel() {
+		root=new BasicDomain() {
+			private static final long serialVersionUID=1L;
+		};
+		ring.clear();
+		for (int index=0; index<size; index++) ring.add(root.addEntity(new TokenAgent()));
+		for (int index=0; index<size; index++) ring.get(index).getOutport().connect(ring.get((index+1)%size).getInport());
+		for (int token=0; token<tokens; token++) {
+			final TokenAgent agent=ring.get((int) (((long) token*size)/tokens));
+			agent.getInport().write(new Message(agent,Integer.valueOf(token)));
+		}
+	}
+
+	/**
+	 * Does a single run with a new model.
+	 *
+	 * @param concurrent true to use the concurrent simulator with persistent
+	 *                   workers
+	 * @param tracking   true to enable activity tracking
+	 * @return nanoseconds of the run and checksum of the token passes
+	 */
+	public long[] runIteration(boolean concurrent, boolean tracking) {
+		buildModel();
+		final SequentialTSSimulator simulator=concurrent
+				? new ConcurrentTSSimulator(root,new DirectMessageForwarding(),workers)
+				: new SequentialTSSimulator(root,new DirectMessageForwarding());
+		simulator.setActivityTracking(tracking);
+		final long start=System.nanoTime();
+		simulator.runSimulation(new Time(steps));
+		final long nanos=System.nanoTime()-start;
+		long checksum=0;
+		for (int index=0; index<size; index++) checksum+=(index+1)*ring.get(index).getState().passes;
+		return new long[] { nanos,checksum };
+	}
+
+	/**
+	 * Does the warm-up and measurement iterations of a configuration.
+	 *
+	 * @param concurrent true to use the concurrent simulator
+	 * @param tracking   true to enable activity tracking
+	 * @return mean nanoseconds per run and checksum of the last run
+	 */
+	public long[] measure(boolean concurrent, boolean tracking) {
+		for (int iteration=0; iteration<WARMUP_ITERATIONS; iteration++) runIteration(concurrent,tracking);
+		long sum=0, checksum=0;
+		for (int iteration=0; iteration<MEASUREMENT_ITERATIONS; iteration++) {
+			final long[] result=runIteration(concurrent,tracking);
+			sum+=result[0];
+			checksum=result[1];
+		}
+		return new long[] { sum/MEASUREMENT_ITERATIONS,checksum };
+	}
+
+	/**
+	 * @param args number of agents, tokens, steps and workers
+	 */
+	public static void main(String[] args) {
+		final int size=args.length>0 ? Integer.parseInt(args[0]) : 200000;
+		final int tokens=args.length>1 ? Integer.parseInt(args[1]) : 50;
+		final int steps=args.length>2 ? Integer.parseInt(args[2]) : 500;
+		final int workers=args.length>3 ? Integer.parseInt(args[3]) : 4;
+		final ActivityTrackingBenchmark benchmark=new ActivityTrackingBenchmark(size,tokens,steps,workers);
+
+		System.out.println("simulator\ttracking\tms/run\tchecksum");
+		for (final boolean concurrent : new boolean[] { false,true }) for (final boolean tracking : new boolean[] { false,true }) {
+			final long[] result=benchmark.measure(concurrent,tracking);
+			System.out.printf("%s\t%b\t%.1f\t%d%n",concurrent ? "concurrent("+workers+")" : "sequential",tracking,
+					result[0]/1e6d,result[1]);
+		}
+		System.out.println("done.");
+	}
+
+}
@@ -0,0 +1,267 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ */
+package org.simplesim.examples.testing;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import org.simplesim.core.scheduling.AdaptiveEventQueue;
+import org.simplesim.core.scheduling.CalendarEventQueue;
+import org.simplesim.core.scheduling.ConcurrentBucketQueue;
+import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.HashedBucketQueue;
+import org.simplesim.core.scheduling.HeapBucketQueue;
+import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.IndexedHeapEventQueue;
+import org.simplesim.core.scheduling.LadderEventQueue;
+import org.simplesim.core.scheduling.MultiLevelBucketQueue;
+import org.simplesim.core.scheduling.MultiLevelEventQueue;
+import org.simplesim.core.scheduling.SortedBucketQueue;
+import org.simplesim.core.scheduling.SortedEventQueue;
+import org.simplesim.core.scheduling.TickHeapEventQueue;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.core.scheduling.TimingWheelEventQueue;
+
+/**
+ * Reproducible benchmark of all implementations of {@code EventQueue} based on
+ * the classic hold model
+ * <p>
+ * Other than {@code EventQueueTest} and {@code LargeQueueTest}, each
+ * measurement uses a new queue instance, a seeded random generator and several
+ * warm-up iterations. For each combination of scenario, increment
+ * distribution, queue size and queue type, the mean time per operation with
+ * its standard deviation and the number of bytes allocated per operation are
+ * printed as a tab separated table. Allocation is measured with the
+ * thread allocation counter of the JVM, if available.
+ * <p>
+ * Scenarios:
+ * <ul>
+ * <li>{@code HOLD}: dequeue the minimum and enqueue it again with a random
+ * increment, the queue size stays constant
+ * <li>{@code UP_DOWN}: enqueue all events into an empty queue and dequeue them
+ * again one by one, starting at the time of the last dequeued event
+ * <li>{@code DEQUEUE_ALL}: like hold, but all events with minimal time stamp
+ * are dequeued at once with {@code drainMin}, increments are coarse so that
+ * many events share a time stamp
+ * </ul>
+ * Usage: {@code EventQueueBenchmark [maxSize [queue ...]]}, with queue sizes
+ * ranging from 10 to {@code maxSize} (default 10^5, use 10^7 with an
+ * accordingly large heap) in steps of powers of ten and optional names of the
+ * queue types to run, e.g. {@code LADDER CALENDAR}.
+ */
+public class EventQueueBenchmark {
+
+	private static final long SEED=0x5DEECE66DL; // base seed, each iteration uses its own derived seed
+	private static final int WARMUP_ITERATIONS=3;
+	private static final int MEASUREMENT_ITERATIONS=5;
+	private static final int MIN_OPERATIONS=200000; // minimal number of operations per iteration
+	private static final double MEAN_INCREMENT=1000d; // mean increment in ticks
+	private static final double COARSE_INCREMENT=10d; // mean increment in ticks for DEQUEUE_ALL
+
+	private enum QueueType {
+		HASHED_BUCKET_QUEUE(HashedBucketQueue::new),
+		HEAP_BUCKET_QUEUE(HeapBucketQueue::new),
+		SORTED_BUCKET_QUEUE(SortedBucketQueue::new),
+		HEAP_EVENT_QUEUE(HeapEventQueue::new),
+		SORTED_EVENT_QUEUE(SortedEventQueue::new),
+		MLIST_BUCKET_QUEUE(MultiLevelBucketQueue::new),
+		MLIST_EVENT_QUEUE(MultiLevelEventQueue::new),
+		CALENDAR_EVENT_QUEUE(CalendarEventQueue::new),
+		LADDER_EVENT_QUEUE(LadderEventQueue::new),
+		INDEXED_HEAP_EVENT_QUEUE(IndexedHeapEventQueue::new),
+		TICK_HEAP_EVENT_QUEUE(TickHeapEventQueue::new),
+		CONCURRENT_BUCKET_QUEUE(ConcurrentBucketQueue::new),
+		TIMING_WHEEL_EVENT_QUEUE(TimingWheelEventQueue::new),
+		ADAPTIVE_EVENT_QUEUE(AdaptiveEventQueue::new);
+
+		private final Supplier<EventQueue<Integer>> factory;
+
+		QueueType(Supplier<EventQueue<Integer>> factory) {
+			this.factory=factory;
+		}
+
+		public EventQueue<Integer> createQueue() { return factory.get(); }
+
+	}
+
+	/** increment distributions with a mean of one */
+	private enum Distribution {
+		EXPONENTIAL {
+			@Override
+			double next(SplittableRandom random) { return -Math.log(1d-random.nextDouble()); }
+		},
+		UNIFORM {
+			@Override
+			double next(SplittableRandom random) { return 2d*random.nextDouble(); }
+		},
+		BIMODAL { // 90% of the increments are small, 10% are large
+			@Override
+			double next(SplittableRandom random) {
+				if (random.nextDouble()<0.9d) return 0.2d*random.nextDouble();
+				return 8.2d*random.nextDouble();
+			}
+		},
+		TRIANGULAR { // density rising linearly up to 1.5
+			@Override
+			double next(SplittableRandom random) { return 1.5d*Math.sqrt(random.nextDouble()); }
+		};
+
+		abstract double next(SplittableRandom random);
+
+	}
+
+	private enum Scenario {
+		HOLD, UP_DOWN, DEQUEUE_ALL
+	}
+
+	private final Scenario scenario;
+	private final Distribution distribution;
+	private final int size;
+	private final Integer[] events; // boxed once to keep event creation out of the measurement
+
+	public EventQueueBenchmark(Scenario scenario, Distribution distribution, int size) {
+		this.scenario=scenario;
+		this.distribution=distribution;
+		this.size=size;
+		events=new Integer[size];
+		for (int index=0; index<size; index++) events[index]=index;
+	}
+
+	/**
+	 * Does a single iteration with a new queue.
+	 *
+	 * @param type the queue type to test
+	 * @param seed seed of the random generator
+	 * @return nanoseconds and allocated bytes per operation
+	 */
+	public double[] runIteration(QueueType type, long seed) {
+		final SplittableRandom random=new SplittableRandom(seed);
+		final EventQueue<Integer> queue=type.createQueue();
+		final double mean=scenario==Scenario.DEQUEUE_ALL ? COARSE_INCREMENT : MEAN_INCREMENT;
+		if (scenario!=Scenario.UP_DOWN) for (final Integer event : events)
+			queue.enqueue(event,new Time(increment(random,mean)));
+		final long bytes=getAllocatedBytes();
+		final long start=System.nanoTime();
+		final long operations;
+		switch (scenario) {
+		case UP_DOWN:
+			operations=runUpDown(queue,random);
+			break;
+		case DEQUEUE_ALL:
+			operations=runDequeueAll(queue,random);
+			break;
+		default:
+			operations=runHold(queue,random);
+		}
+		final double nanos=System.nanoTime()-start;
+		return new double[] { nanos/operations,(getAllocatedBytes()-bytes)/(double) operations };
+	}
+
+	/**
+	 * Does the warm-up and measurement iterations for a queue type.
+	 *
+	 * @param type the queue type to test
+	 * @return mean and standard deviation of nanoseconds per operation and mean
+	 *         allocated bytes per operation
+	 */
+	public double[] measure(QueueType type) {
+		for (int iteration=0; iteration<WARMUP_ITERATIONS; iteration++) runIteration(type,SEED-iteration-1);
+		double sum=0, sumSquares=0, bytes=0;
+		for (int iteration=0; iteration<MEASUREMENT_ITERATIONS; iteration++) {
+			final double[] result=runIteration(type,SEED+iteration);
+			sum+=result[0];
+			sumSquares+=result[0]*result[0];
+			bytes+=result[1];
+		}
+		final double mean=sum/MEASUREMENT_ITERATIONS;
+		final double deviation=Math.sqrt(
+				Math.max(0,(sumSquares-(MEASUREMENT_ITERATIONS*mean*mean))/(MEASUREMENT_ITERATIONS-1)));
+		return new double[] { mean,deviation,bytes/MEASUREMENT_ITERATIONS };
+	}
+
+	private long runHold(EventQueue<Integer> queue, SplittableRandom random) {
+		final int operations=Math.max(size,MIN_OPERATIONS);
+		for (int index=0; index<operations; index++) {
+			final Time time=queue.getMin();
+			queue.enqueue(queue.dequeue(),time.add(increment(random,MEAN_INCREMENT)));
+		}
+		return operations;
+	}
+
+	private long runUpDown(EventQueue<Integer> queue, SplittableRandom random) {
+		final int rounds=Math.max(1,MIN_OPERATIONS/(2*size));
+		long now=0; // simulation time never goes backwards, as assumed by the multi-level queues
+		for (int round=0; round<rounds; round++) {
+			long last=now;
+			for (final Integer event : events) {
+				final long ticks=now+increment(random,MEAN_INCREMENT);
+				queue.enqueue(event,new Time(ticks));
+				if (ticks>last) last=ticks;
+			}
+			while (!queue.isEmpty()) queue.dequeue();
+			now=last;
+		}
+		return 2L*rounds*size;
+	}
+
+	private long runDequeueAll(EventQueue<Integer> queue, SplittableRandom random) {
+		final List<Integer> cel=new ArrayList<>();
+		long operations=0;
+		while (operations<Math.max(size,MIN_OPERATIONS)) {
+			final Time time=queue.getMin();
+			cel.clear();
+			queue.drainMin(cel);
+			for (final Integer event : cel) queue.enqueue(event,time.add(1+increment(random,COARSE_INCREMENT)));
+			operations+=cel.size();
+		}
+		return operations;
+	}
+
+	private long increment(SplittableRandom random, double mean) {
+		return (long) (mean*distribution.next(random));
+	}
+
+	private static long getAllocatedBytes() {
+		final Object bean=ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean tmx=(com.sun.management.ThreadMXBean) bean;
+			if (tmx.isThreadAllocatedMemorySupported()) return tmx.getThreadAllocatedBytes(Thread.currentThread().threadId());
+		}
+		return 0;
+	}
+
+	/**
+	 * @param args maximum queue size and names of the queue types to run
+	 */
+	public static void main(String[] args) {
+		final int maxSize=args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		final List<QueueType> types=new ArrayList<>();
+		for (int index=1; index<args.length; index++) types.add(QueueType.valueOf(args[index]));
+		if (types.isEmpty()) for (final QueueType type : QueueType.values()) types.add(type);
+
+		System.out.println("scenario\tdistribution\tsize\tqueue\tns/op\terror\tB/op");
+		for (final Scenario scenario : Scenario.values()) for (final Distribution distribution : Distribution.values())
+			for (int size=10; size<=maxSize; size*=10) {
+				final EventQueueBenchmark benchmark=new EventQueueBenchmark(scenario,distribution,size);
+				for (final QueueType type : types) {
+					System.out.print(scenario+"\t"+distribution+"\t"+size+"\t"+type+"\t");
+					try {
+						final double[] result=benchmark.measure(type);
+						System.out.printf("%.1f\t%.1f\t%.1f%n",result[0],result[1],result[2]);
+					} catch (final RuntimeException exception) { // queue does not support the scenario
+						System.out.println("failed: "+exception);
+					}
+				}
+			}
+		System.out.println("done.");
+	}
+
+}
@@ -10,14 +10,20 @@ package org.simplesim.examples.testing;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.simplesim.core.scheduling.AdaptiveEventQueue;
 import org.simplesim.core.scheduling.HashedBucketQueue;
 import org.simplesim.core.scheduling.HeapBucketQueue;
 import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.IndexedHeapEventQueue;
+import org.simplesim.core.scheduling.LadderEventQueue;
+import org.simplesim.core.scheduling.CalendarEventQueue;
+import org.simplesim.core.scheduling.ConcurrentBucketQueue;
 import org.simplesim.core.scheduling.EventQueue;
 import org.simplesim.core.scheduling.SortedBucketQueue;
 import org.simplesim.core.scheduling.SortedEventQueue;
 import org.simplesim.core.scheduling.MultiLevelBucketQueue;
 import org.simplesim.core.scheduling.Time;
+import org.simplesim.core.scheduling.TimingWheelEventQueue;
 
 /**
  * Performance test and comparison of various implementations of {@code EventQueue}
@@ -40,7 +46,13 @@ public class EventQueueTest {
 		SORTED_BUCKET_QUEUE("Sorted bucket queue", new SortedBucketQueue<String>()),
 		HEAP_EVENT_QUEUE("Heap event queue", new HeapEventQueue<String>()),
 		MLIST_EVENT_QUEUE("MList event queue", new MultiLevelBucketQueue<String>()),
-		SORTED_EVENT_QUEUE("Sorted event queue", new SortedEventQueue<String>());
+		SORTED_EVENT_QUEUE("Sorted event queue", new SortedEventQueue<String>()),
+		CALENDAR_EVENT_QUEUE("Calendar event queue", new CalendarEventQueue<String>()),
+		LADDER_EVENT_QUEUE("Ladder event queue", new LadderEventQueue<String>()),
+		INDEXED_HEAP_EVENT_QUEUE("Indexed heap event queue", new IndexedHeapEventQueue<String>()),
+		CONCURRENT_BUCKET_QUEUE("Concurrent bucket queue", new ConcurrentBucketQueue<String>()),
+		TIMING_WHEEL_EVENT_QUEUE("Timing wheel event queue", new TimingWheelEventQueue<String>()),
+		ADAPTIVE_EVENT_QUEUE("Adaptive event queue", new AdaptiveEventQueue<String>());
 				
 
 		private final String name;
@@ -0,0 +1,258 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ */
+package org.simplesim.examples.testing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simplesim.core.messaging.Message;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.core.messaging.SinglePort;
+import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.Agent;
+import org.simplesim.model.BasicAgent;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.State;
+import org.simplesim.simulator.Checkpoint;
+import org.simplesim.simulator.CheckpointListener;
+import org.simplesim.simulator.ConservativeParallelDESimulator;
+import org.simplesim.simulator.SequentialDESimulator;
+import org.simplesim.simulator.TimeWarpSimulator;
+
+/**
+ * Checks the parallel simulators and checkpoints against the sequential
+ * discrete event simulator
+ * <p>
+ * The model consists of several domains, each forming a partition of the
+ * parallel simulators. Each agent sends a pseudo random number to a successor
+ * at each event and adds up the numbers it receives. The time of its next
+ * event is drawn from the same random sequence, which is part of the agent's
+ * state, so it is rolled back by the optimistic simulator as well. Every
+ * fourth agent sends its messages to an agent of the next partition.
+ * <p>
+ * The model is simulated by the {@link SequentialDESimulator} as reference,
+ * by the {@link ConservativeParallelDESimulator} with a lookahead of zero and
+ * by the {@link TimeWarpSimulator} with adaptive, fixed and unlimited optimism
+ * window. The reference run saves a checkpoint halfway, which is loaded and
+ * resumed by a new sequential simulator. For each run, the time, the number
+ * of rollbacks and a checksum of all agent states are printed as a tab
+ * separated table. All checksums have to be equal to the reference.
+ * <p>
+ * Usage: {@code ParallelSimulatorTest [partitions [agents [stop]]]}, by
+ * default 4 partitions of 250 agents are simulated up to time 2000.
+ */
+public class ParallelSimulatorTest {
+
+	/** maximum time between two events of an agent in ticks */
+	private static final int MAX_DELAY=10;
+
+	/** every agent with an index divisible by this number sends to the next partition */
+	private static final int CROSSING=4;
+
+	private static final class TestState implements State {
+
+		private static final long serialVersionUID=1L;
+
+		private long random;
+		private long sum=0;
+		private long count=0;
+
+		TestState(long seed) {
+			random=seed;
+		}
+
+		/** linear congruential generator, stored in the state to be rolled back */
+		long nextRandom() {
+			random=(random*6364136223846793005L)+1442695040888963407L;
+			return random>>>1;
+		}
+
+		@Override
+		public TestState copy() {
+			final TestState result=new TestState(random);
+			result.sum=sum;
+			result.count=count;
+			return result;
+		}
+
+	}
+
+	private static final class TestAgent extends BasicAgent<TestState, Integer> {
+
+		private static final long serialVersionUID=1L;
+
+		TestAgent(long seed) {
+			super(new HeapEventQueue<>(),new TestState(seed));
+			setInport(new SinglePort(this));
+			setOutport(new SinglePort(this));
+			getEventQueue().enqueue(0,new Time(1+(getState().nextRandom()%MAX_DELAY)));
+		}
+
+		@Override
+		public Time doEvent(Time time) {
+			while (getInport().hasMessages()) {
+				final Long value=getInport().poll().getContent();
+				getState().sum+=value;
+				getState().count++;
+			}
+			getEventQueue().dequeue();
+			final long value=getState().nextRandom();
+			getOutport().write(new Message(this,Long.valueOf(value)));
+			getEventQueue().enqueue(0,time.add(new Time(1+(value%MAX_DELAY))));
+			return getTimeOfNextEvent();
+		}
+
+	}
+
+	private static final class TestDomain extends BasicDomain {
+
+		private static final long serialVersionUID=1L;
+
+	}
+
+	private final int partitions;
+	private final int agents;
+	private final Time stop;
+
+	private BasicDomain root;
+	private final List<Port[]> crossings=new ArrayList<>(); // connections between partitions
+
+	public ParallelSimulatorTest(int partitions, int agents, Time stop) {
+		this.partitions=partitions;
+		this.agents=agents;
+		this.stop=stop;
+	}
+
+	/**
+	 * Builds a new model with the same seeds for each run.
+	 */
+	private void buildModel() {
+		root=new TestDomain();
+		crossings.clear();
+		final List<List<TestAgent>> model=new ArrayList<>();
+		for (int partition=0; partition<partitions; partition++) {
+			final TestDomain domain=root.addEntity(new TestDomain());
+			final List<TestAgent> list=new ArrayList<>();
+			for (int index=0; index<agents; index++)
+				list.add(domain.addEntity(new TestAgent((((long) partition)*agents)+index+1)));
+			model.add(list);
+		}
+		for (int partition=0; partition<partitions; partition++) for (int index=0; index<agents; index++) {
+			final Port from=model.get(partition).get(index).getOutport();
+			if ((index%CROSSING)==0) {
+				final Port to=model.get((partition+1)%partitions).get(((index*7)+3)%agents).getInport();
+				from.connect(to);
+				crossings.add(new Port[] { from,to });
+			} else from.connect(model.get(partition).get((index+1)%agents).getInport());
+		}
+	}
+
+	/**
+	 * Calculates a checksum of all agent states of a model.
+	 */
+	private static long checksum(BasicDomain model) {
+		long result=0;
+		for (final Agent agent : model.listAllAgents(true)) {
+			final TestState state=((TestAgent) agent).getState();
+			result=(31*result)+state.sum+(state.count*1000003L)+state.random;
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the reference simulation, saving a checkpoint halfway.
+	 *
+	 * @return milliseconds of the run and checksum
+	 */
+	public long[] runSequential(Path file) {
+		buildModel();
+		final SequentialDESimulator simulator=new SequentialDESimulator(root);
+		simulator.registerEventsProcessedListener(new CheckpointListener(file,new Time(stop.getTicks()/2)));
+		final long start=System.nanoTime();
+		simulator.runSimulation(stop);
+		return new long[] { (System.nanoTime()-start)/1000000,0,checksum(root) };
+	}
+
+	/**
+	 * Resumes the reference simulation from its checkpoint.
+	 *
+	 * @return milliseconds of the run and checksum
+	 */
+	public long[] runResumed(Path file) throws IOException {
+		final Checkpoint checkpoint=Checkpoint.load(file);
+		final SequentialDESimulator simulator=new SequentialDESimulator(checkpoint.getRootDomain());
+		simulator.resumeFrom(checkpoint);
+		final long start=System.nanoTime();
+		simulator.runSimulation(stop);
+		return new long[] { (System.nanoTime()-start)/1000000,0,checksum(checkpoint.getRootDomain()) };
+	}
+
+	/**
+	 * Runs the conservative simulator with a lookahead of zero.
+	 *
+	 * @return milliseconds of the run and checksum
+	 */
+	public long[] runConservative() {
+		buildModel();
+		final ConservativeParallelDESimulator simulator=new ConservativeParallelDESimulator(root);
+		for (final Port[] crossing : crossings) simulator.declareLookahead(crossing[0],crossing[1],Time.ZERO);
+		final long start=System.nanoTime();
+		simulator.runSimulation(stop);
+		return new long[] { (System.nanoTime()-start)/1000000,0,checksum(root) };
+	}
+
+	/**
+	 * Runs the Time Warp simulator.
+	 *
+	 * @param window the fixed optimism window, {@link Time#INFINITY} for an
+	 *               unlimited window or {@code null} for the adaptive window
+	 * @return milliseconds of the run, number of rollbacks and checksum
+	 */
+	public long[] runTimeWarp(Time window) {
+		buildModel();
+		final TimeWarpSimulator simulator=new TimeWarpSimulator(root);
+		if (window!=null) simulator.setOptimismWindow(window);
+		for (final Port[] crossing : crossings) simulator.declareChannel(crossing[0],crossing[1]);
+		final long start=System.nanoTime();
+		simulator.runSimulation(stop);
+		return new long[] { (System.nanoTime()-start)/1000000,simulator.getRollbacks(),checksum(root) };
+	}
+
+	/**
+	 * @param args number of partitions, agents per partition and stop time
+	 */
+	public static void main(String[] args) throws IOException {
+		final int partitions=args.length>0 ? Integer.parseInt(args[0]) : 4;
+		final int agents=args.length>1 ? Integer.parseInt(args[1]) : 250;
+		final Time stop=new Time(args.length>2 ? Long.parseLong(args[2]) : 2000);
+		final ParallelSimulatorTest test=new ParallelSimulatorTest(partitions,agents,stop);
+		final Path file=Files.createTempFile("simplesim",".chk");
+		try {
+			final long[] reference=test.runSequential(file);
+			System.out.println("simulator\tms\trollbacks\tchecksum\tequal");
+			print("sequential",reference,reference);
+			print("resumed",test.runResumed(file),reference);
+			print("conservative",test.runConservative(),reference);
+			print("time warp (adaptive)",test.runTimeWarp(null),reference);
+			print("time warp (window 5)",test.runTimeWarp(new Time(5)),reference);
+			print("time warp (unlimited)",test.runTimeWarp(Time.INFINITY),reference);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		System.out.println("done.");
+	}
+
+	private static void print(String name, long[] result, long[] reference) {
+		System.out.printf("%s\t%d\t%d\t%d\t%b%n",name,result[0],result[1],result[2],result[2]==reference[2]);
+	}
+
+}
@@ -0,0 +1,249 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.SimulationContext;
+import org.simplesim.simulator.Simulator;
+
+/**
+ * Runs an experiment consisting of several replications of each parameter set
+ * of a {@link ParameterGrid}
+ * <p>
+ * For each run, the runner creates a {@link SimulationContext} with the seed of
+ * the run, builds a new model and a new simulator with the given factories,
+ * passes the context to the simulator, runs the simulation and passes the
+ * measured results to a {@link ResultAggregator}. All runs are executed in parallel
+ * within the same JVM, so startup and warm-up costs are paid only once.
+ * <p>
+ * The seed of a run depends only on the experiment's seed and the replication
+ * number, so each run is reproducible regardless of the execution order and
+ * all parameter sets share the same random numbers in the same replication
+ * (common random numbers). The model should therefore derive all its random
+ * numbers from the simulation context, e.g. by
+ * {@link SimulationContext#createRandomStream(long)}.
+ * <p>
+ * Since the runs already use all cores, the simulator factory should create
+ * sequential simulators.
+ */
+public final class ExperimentRunner {
+
+	/**
+	 * Factory building the model of a run
+	 */
+	@FunctionalInterface
+	public interface ModelFactory {
+		/**
+		 * Builds a new model.
+		 * <p>
+		 * The model is not attached to the simulation context yet, so random
+		 * numbers needed during construction should be derived from the given
+		 * context, which already has the seed of the run. The context is attached
+		 * to the model once the simulator has been built.
+		 *
+		 * @param run     the run with its parameters and seed
+		 * @param context the context of the run
+		 * @return the root domain of the new model
+		 */
+		BasicDomain createModel(Run run, SimulationContext context);
+	}
+
+	/**
+	 * Factory building the simulator of a run
+	 */
+	@FunctionalInterface
+	public interface SimulatorFactory {
+		/**
+		 * Builds a new simulator for the given model.
+		 *
+		 * @param model the root domain of the model
+		 * @param run   the run with its parameters and seed
+		 * @return the new simulator
+		 */
+		Simulator createSimulator(BasicDomain model, Run run);
+	}
+
+	/**
+	 * Measurement of the results of a run
+	 */
+	@FunctionalInterface
+	public interface Measurement {
+		/**
+		 * Measures the results after the simulation has stopped.
+		 *
+		 * @param run       the run
+		 * @param simulator the simulator of the run
+		 * @return the values of all metrics by their name
+		 */
+		Map<String, Double> measure(Run run, Simulator simulator);
+	}
+
+	/** increment of the SplitMix64 generator, used to derive run seeds */
+	private static final long GOLDEN_GAMMA=0x9E3779B97F4A7C15L;
+
+	private final ModelFactory models;
+	private final SimulatorFactory simulators;
+	private final ParameterGrid grid;
+	private final int replications;
+	private final Time stop;
+
+	private long seed=0;
+	private Measurement measurement=ExperimentRunner::measureCounters;
+	private ExecutorService executor=null;
+
+	/**
+	 * Constructs a new runner.
+	 *
+	 * @param modelFactory     factory building the model of each run
+	 * @param simulatorFactory factory building the simulator of each run
+	 * @param parameters       the parameter sets to test
+	 * @param count            number of replications of each parameter set
+	 * @param time             simulation time when each run should stop
+	 */
+	public ExperimentRunner(ModelFactory modelFactory, SimulatorFactory simulatorFactory, ParameterGrid parameters,
+			int count, Time time) {
+		if (count<1) throw new IllegalArgumentException("Number of replications must be positive: "+count);
+		models=modelFactory;
+		simulators=simulatorFactory;
+		grid=parameters;
+		replications=count;
+		stop=time;
+	}
+
+	/**
+	 * Sets the seed of the experiment, from which the seeds of all runs are
+	 * derived.
+	 *
+	 * @param value the seed
+	 */
+	public void setSeed(long value) {
+		seed=value;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the measurement of the results of each run.
+	 * <p>
+	 * By default, the values of all counters of the simulation context are
+	 * measured.
+	 *
+	 * @param value the measurement
+	 */
+	public void setMeasurement(Measurement value) {
+		measurement=value;
+	}
+
+	/**
+	 * Sets the executor to run the simulations.
+	 * <p>
+	 * By default, the runner creates a fixed thread pool with one thread per core
+	 * and shuts it down afterwards. A given executor is never shut down by the
+	 * runner.
+	 *
+	 * @param value the executor or {@code null} to create a new pool
+	 */
+	public void setExecutor(ExecutorService value) {
+		executor=value;
+	}
+
+	/**
+	 * Lists all runs of the experiment.
+	 *
+	 * @return list of runs, all replications of a parameter set in a row
+	 */
+	public List<Run> listRuns() {
+		final List<Run> result=new ArrayList<>();
+		for (final Parameters parameters : grid.listParameters())
+			for (int rep=0; rep<replications; rep++)
+				result.add(new Run(result.size(),parameters,rep,SimulationContext.mix(seed+(GOLDEN_GAMMA*(rep+1)))));
+		return result;
+	}
+
+	/**
+	 * Runs the experiment and waits for all runs to finish.
+	 *
+	 * @return the aggregated results of all runs
+	 * @exception Simulator.InvalidSimulatorStateException if a run failed or the
+	 *                                                     experiment was
+	 *                                                     interrupted
+	 */
+	public ResultAggregator run() {
+		return run(new ResultAggregator());
+	}
+
+	/**
+	 * Runs the experiment and passes the results of each run to the given
+	 * aggregator as soon as the run has finished.
+	 *
+	 * @param aggregator the aggregator of the results
+	 * @return the aggregator
+	 * @exception Simulator.InvalidSimulatorStateException if a run failed or the
+	 *                                                     experiment was
+	 *                                                     interrupted
+	 */
+	public ResultAggregator run(ResultAggregator aggregator) {
+		final ExecutorService used=executor!=null ? executor
+				: Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			final List<Future<?>> futures=new ArrayList<>();
+			for (final Parameters parameters : grid.listParameters()) aggregator.addParameters(parameters);
+			for (final Run run : listRuns()) futures.add(used.submit(() -> aggregator.accept(run,execute(run))));
+			for (final Future<?> future : futures) future.get();
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new Simulator.InvalidSimulatorStateException("Experiment was interrupted");
+		} catch (final ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+			if (exception.getCause() instanceof Error) throw (Error) exception.getCause();
+			throw new Simulator.InvalidSimulatorStateException("Run failed: "+exception.getCause());
+		} finally {
+			if (used!=executor) used.shutdownNow();
+		}
+		return aggregator;
+	}
+
+	/**
+	 * Executes a single run.
+	 *
+	 * @param run the run
+	 * @return the measured results
+	 */
+	public Map<String, Double> execute(Run run) {
+		final SimulationContext context=new SimulationContext(run.getSeed());
+		final BasicDomain model=models.createModel(run,context);
+		final Simulator simulator=simulators.createSimulator(model,run);
+		simulator.setSimulationContext(context);
+		simulator.runSimulation(stop);
+		return measurement.measure(run,simulator);
+	}
+
+	private static Map<String, Double> measureCounters(Run run, Simulator simulator) {
+		final Map<String, Double> result=new LinkedHashMap<>();
+		for (final Map.Entry<String, Long> entry : simulator.getSimulationContext().getMetrics().entrySet())
+			result.put(entry.getKey(),entry.getValue().doubleValue());
+		return result;
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full factorial grid of parameter values
+ * <p>
+ * Each parameter is added with its name and all values to test. The grid
+ * consists of all combinations of these values, e.g.:
+ *
+ * <pre>
+ * ParameterGrid grid=new ParameterGrid().add("elevators",1,2,4).add("load",0.5,0.9);
+ * </pre>
+ *
+ * gives six parameter sets. An empty grid contains exactly one empty parameter
+ * set, so a model without parameters can still be replicated.
+ */
+public final class ParameterGrid {
+
+	private final Map<String, List<Object>> dimensions=new LinkedHashMap<>();
+
+	/**
+	 * Adds a parameter with all its values to test.
+	 *
+	 * @param name   the name of the parameter
+	 * @param values the values of the parameter
+	 * @return this grid
+	 */
+	public ParameterGrid add(String name, Object... values) {
+		if (values.length==0) throw new IllegalArgumentException("No values given for parameter "+name);
+		dimensions.put(name,new ArrayList<>(Arrays.asList(values)));
+		return this;
+	}
+
+	/**
+	 * Returns the number of parameter sets in this grid.
+	 *
+	 * @return number of combinations of all parameter values
+	 */
+	public int size() {
+		int result=1;
+		for (final List<Object> values : dimensions.values()) result*=values.size();
+		return result;
+	}
+
+	/**
+	 * Lists all parameter sets of this grid.
+	 * <p>
+	 * The last parameter added varies fastest.
+	 *
+	 * @return list of all combinations of the parameter values
+	 */
+	public List<Parameters> listParameters() {
+		final List<Parameters> result=new ArrayList<>(size());
+		final List<String> names=new ArrayList<>(dimensions.keySet());
+		final int[] indices=new int[names.size()];
+		final Map<String, Object> point=new LinkedHashMap<>();
+		for (int count=0; count<size(); count++) {
+			point.clear();
+			for (int dim=0; dim<names.size(); dim++)
+				point.put(names.get(dim),dimensions.get(names.get(dim)).get(indices[dim]));
+			result.add(new Parameters(point));
+			// increment the indices like an odometer
+			for (int dim=names.size()-1; dim>=0; dim--) {
+				if (++indices[dim]<dimensions.get(names.get(dim)).size()) break;
+				indices[dim]=0;
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of named parameter values, representing a point of a
+ * {@link ParameterGrid}
+ * <p>
+ * Two parameter sets are equal if they contain the same names and values, so
+ * they can be used as keys to group the results of several replications.
+ */
+public final class Parameters {
+
+	private final Map<String, Object> values;
+
+	Parameters(Map<String, Object> map) {
+		values=Collections.unmodifiableMap(new LinkedHashMap<>(map));
+	}
+
+	/**
+	 * Gets the value of a parameter.
+	 *
+	 * @param name the name of the parameter
+	 * @return the value of the parameter
+	 * @exception NoSuchElementException if there is no parameter of this name
+	 */
+	public Object get(String name) {
+		final Object result=values.get(name);
+		if ((result==null)&&!values.containsKey(name)) throw new NoSuchElementException("Unknown parameter "+name);
+		return result;
+	}
+
+	public int getInt(String name) {
+		return ((Number) get(name)).intValue();
+	}
+
+	public long getLong(String name) {
+		return ((Number) get(name)).longValue();
+	}
+
+	public double getDouble(String name) {
+		return ((Number) get(name)).doubleValue();
+	}
+
+	public boolean getBoolean(String name) {
+		return (Boolean) get(name);
+	}
+
+	public String getString(String name) {
+		return String.valueOf(get(name));
+	}
+
+	/**
+	 * Returns all parameters in the order of their definition.
+	 *
+	 * @return unmodifiable map of names and values
+	 */
+	public Map<String, Object> asMap() {
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return (other instanceof Parameters)&&values.equals(((Parameters) other).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return values.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the results of all runs of an experiment
+ * <p>
+ * Results are grouped by parameter set and metric name. Each group keeps
+ * {@link Statistics} updated online, so the results of a run can be discarded
+ * as soon as they are accepted. Since runs finish in arbitrary order, the
+ * aggregated values of parallel experiments may differ in the last digits due
+ * to rounding.
+ * <p>
+ * This class is thread-safe, so runs may deliver their results concurrently.
+ */
+public final class ResultAggregator {
+
+	private final Map<Parameters, Map<String, Statistics>> results=new LinkedHashMap<>();
+	private final double level;
+
+	/**
+	 * Constructs an aggregator with a confidence level of 95%.
+	 */
+	public ResultAggregator() {
+		this(0.95);
+	}
+
+	/**
+	 * Constructs an aggregator with the given confidence level.
+	 *
+	 * @param confidence the confidence level of the intervals, e.g. 0.95
+	 */
+	public ResultAggregator(double confidence) {
+		if ((confidence<=0)||(confidence>=1))
+			throw new IllegalArgumentException("Confidence level must be between zero and one: "+confidence);
+		level=confidence;
+	}
+
+	/**
+	 * Adds the results of a run.
+	 *
+	 * @param run     the run
+	 * @param metrics the values of all metrics measured during the run
+	 */
+	public synchronized void accept(Run run, Map<String, Double> metrics) {
+		final Map<String, Statistics> group=addParameters(run.getParameters());
+		for (final Map.Entry<String, Double> entry : metrics.entrySet())
+			group.computeIfAbsent(entry.getKey(),key -> new Statistics()).add(entry.getValue());
+	}
+
+	/**
+	 * Adds a parameter set without results, so results are listed in the order
+	 * of the parameter sets and not in the order in which the runs finished.
+	 *
+	 * @param parameters the parameter set
+	 * @return the statistics of the parameter set
+	 */
+	synchronized Map<String, Statistics> addParameters(Parameters parameters) {
+		return results.computeIfAbsent(parameters,key -> new TreeMap<>());
+	}
+
+	public double getConfidenceLevel() { return level; }
+
+	/**
+	 * Returns the statistics of a metric for a parameter set.
+	 *
+	 * @param parameters the parameter set
+	 * @param metric     the name of the metric
+	 * @return the statistics or {@code null} if there are no results
+	 */
+	public synchronized Statistics getStatistics(Parameters parameters, String metric) {
+		final Map<String, Statistics> group=results.get(parameters);
+		return group==null ? null : group.get(metric);
+	}
+
+	/**
+	 * Returns all results.
+	 * <p>
+	 * The returned statistics must not be read while runs are still delivering
+	 * their results.
+	 *
+	 * @return unmodifiable map of parameter sets to the statistics of each metric
+	 */
+	public synchronized Map<Parameters, Map<String, Statistics>> getResults() {
+		final Map<Parameters, Map<String, Statistics>> result=new LinkedHashMap<>();
+		for (final Map.Entry<Parameters, Map<String, Statistics>> entry : results.entrySet())
+			result.put(entry.getKey(),Collections.unmodifiableMap(entry.getValue()));
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Returns a tab separated table of all results with one row per parameter set
+	 * and metric.
+	 *
+	 * @return the summary of the experiment
+	 */
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb=new StringBuilder("parameters\tmetric\tn\tmean\thalf width\tmin\tmax\n");
+		for (final Map.Entry<Parameters, Map<String, Statistics>> group : results.entrySet())
+			for (final Map.Entry<String, Statistics> entry : group.getValue().entrySet()) {
+				final Statistics stats=entry.getValue();
+				sb.append(group.getKey()).append('\t').append(entry.getKey()).append('\t');
+				sb.append(stats.getCount()).append('\t').append(stats.getMean()).append('\t');
+				sb.append(stats.getConfidenceHalfWidth(level)).append('\t');
+				sb.append(stats.getMin()).append('\t').append(stats.getMax()).append('\n');
+			}
+		return sb.toString();
+	}
+
+}
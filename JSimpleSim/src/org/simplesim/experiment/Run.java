@@ -0,0 +1,63 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+/**
+ * Description of a single simulation run of an experiment: its parameter set,
+ * its replication number and its random seed.
+ */
+public final class Run {
+
+	private final int index;
+	private final Parameters parameters;
+	private final int replication;
+	private final long seed;
+
+	Run(int number, Parameters values, int rep, long value) {
+		index=number;
+		parameters=values;
+		replication=rep;
+		seed=value;
+	}
+
+	/**
+	 * Returns the number of this run within the experiment.
+	 *
+	 * @return the index of the run, starting with zero
+	 */
+	public int getIndex() { return index; }
+
+	public Parameters getParameters() { return parameters; }
+
+	/**
+	 * Returns the number of this replication of the parameter set.
+	 *
+	 * @return the replication, starting with zero
+	 */
+	public int getReplication() { return replication; }
+
+	/**
+	 * Returns the seed of this run.
+	 * <p>
+	 * The seed depends on the experiment's seed and the replication only, so
+	 * all parameter sets use the same random numbers in the same replication.
+	 *
+	 * @return the random seed of this run
+	 */
+	public long getSeed() { return seed; }
+
+	@Override
+	public String toString() {
+		return "run "+index+" "+parameters+" replication "+replication;
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.experiment;
+
+/**
+ * Online statistics of a series of observations
+ * <p>
+ * Mean and variance are updated with each observation by Welford's algorithm,
+ * so no observations have to be stored and the result is numerically stable.
+ * The confidence interval of the mean is based on Student's t-distribution,
+ * assuming independent and approximately normally distributed observations,
+ * as given by independent replications of a simulation run.
+ * <p>
+ * Note: This class is not thread-safe.
+ */
+public final class Statistics {
+
+	private long count=0;
+	private double mean=0;
+	private double sumSquares=0; // sum of squared deviations from the mean
+	private double min=Double.POSITIVE_INFINITY;
+	private double max=Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Adds an observation.
+	 *
+	 * @param value the observed value
+	 */
+	public void add(double value) {
+		count++;
+		final double delta=value-mean;
+		mean+=delta/count;
+		sumSquares+=delta*(value-mean);
+		if (value<min) min=value;
+		if (value>max) max=value;
+	}
+
+	public long getCount() { return count; }
+
+	/**
+	 * @return the mean of all observations or {@code NaN} if there are none
+	 */
+	public double getMean() { return count>0 ? mean : Double.NaN; }
+
+	/**
+	 * @return the sample variance or {@code NaN} if there are less than two
+	 *         observations
+	 */
+	public double getVariance() { return count>1 ? sumSquares/(count-1) : Double.NaN; }
+
+	public double getStandardDeviation() { return Math.sqrt(getVariance()); }
+
+	public double getMin() { return min; }
+
+	public double getMax() { return max; }
+
+	/**
+	 * Returns the half width of the confidence interval of the mean.
+	 *
+	 * @param level the confidence level, e.g. 0.95
+	 * @return the half width or {@code NaN} if there are less than two
+	 *         observations
+	 */
+	public double getConfidenceHalfWidth(double level) {
+		if (count<2) return Double.NaN;
+		return getStudentQuantile(1-level,count-1)*Math.sqrt(getVariance()/count);
+	}
+
+	/**
+	 * Calculates the two-tailed quantile of Student's t-distribution.
+	 * <p>
+	 * Uses the approximation of G.W. Hill (Algorithm 396, Comm. ACM 13, 1970),
+	 * exact for one and two degrees of freedom and accurate to about six digits
+	 * otherwise.
+	 *
+	 * @param alpha the two-tailed probability, e.g. 0.05 for a 95% interval
+	 * @param df    the degrees of freedom
+	 * @return the positive quantile {@code t} with {@code P(|T|>t)=alpha}
+	 */
+	public static double getStudentQuantile(double alpha, long df) {
+		if (df==1) {
+			final double angle=alpha*Math.PI/2;
+			return Math.cos(angle)/Math.sin(angle);
+		}
+		if (df==2) return Math.sqrt((2/(alpha*(2-alpha)))-2);
+		final double n=df;
+		final double a=1/(n-0.5);
+		final double b=48/(a*a);
+		double c=((((((20700*a)/b)-98)*a)-16)*a)+96.36;
+		final double d=((((94.5/(b+c))-3)/b)+1)*Math.sqrt((a*Math.PI)/2)*n;
+		double x=d*alpha;
+		double y=Math.pow(x,2/n);
+		if (y>(0.05+a)) { // asymptotic inverse expansion about the normal distribution
+			x=getNormalQuantile(alpha*0.5);
+			y=x*x;
+			if (df<5) c+=0.3*(n-4.5)*(x+0.6);
+			c+=((((((0.05*d*x)-5)*x)-7)*x)-2)*x+b;
+			y=((((((((((0.4*y)+6.3)*y)+36)*y)+94.5)/c)-y-3)/b)+1)*x;
+			y=a*y*y;
+			y=y>0.002 ? Math.exp(y)-1 : (0.5*y*y)+y;
+		} else y=((((1/((((n+6)/(n*y))-(0.089*d)-0.822)*(n+2)*3))+(0.5/(n+4)))*y)-1)*((n+1)/(n+2))+(1/y);
+		return Math.sqrt(n*y);
+	}
+
+	/**
+	 * Calculates the quantile of the standard normal distribution.
+	 * <p>
+	 * Uses the rational approximation of P.J. Acklam with a relative error below
+	 * 1.15e-9.
+	 *
+	 * @param p the probability, {@code 0<p<1}
+	 * @return the quantile {@code z} with {@code P(Z<=z)=p}
+	 */
+	public static double getNormalQuantile(double p) {
+		final double[] a= { -3.969683028665376e+01,2.209460984245205e+02,-2.759285104469687e+02,
+				1.383577518672690e+02,-3.066479806614716e+01,2.506628277459239e+00 };
+		final double[] b= { -5.447609879822406e+01,1.615858368580409e+02,-1.556989798598866e+02,
+				6.680131188771972e+01,-1.328068155288572e+01 };
+		final double[] c= { -7.784894002430293e-03,-3.223964580411365e-01,-2.400758277161838e+00,
+				-2.549732539343734e+00,4.374664141464968e+00,2.938163982698783e+00 };
+		final double[] d= { 7.784695709041462e-03,3.224671290700398e-01,2.445134137142996e+00,
+				3.754408661907416e+00 };
+		final double low=0.02425;
+		if ((p>=low)&&(p<=(1-low))) {
+			final double q=p-0.5;
+			final double r=q*q;
+			return ((((((((((a[0]*r)+a[1])*r)+a[2])*r)+a[3])*r)+a[4])*r)+a[5])*q
+					/((((((((((b[0]*r)+b[1])*r)+b[2])*r)+b[3])*r)+b[4])*r)+1);
+		}
+		final double q=Math.sqrt(-2*Math.log(p<low ? p : 1-p));
+		final double result=((((((((((c[0]*q)+c[1])*q)+c[2])*q)+c[3])*q)+c[4])*q)+c[5])
+				/((((((((d[0]*q)+d[1])*q)+d[2])*q)+d[3])*q)+1);
+		return p<low ? result : -result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%g +- %g (n=%d)",getMean(),getConfidenceHalfWidth(0.95),count);
+	}
+
+}
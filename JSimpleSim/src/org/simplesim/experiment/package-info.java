@@ -0,0 +1,4 @@
+/**
+ * Support for parameter sweeps and replications of simulation runs
+ */
+package org.simplesim.experiment;
\ No newline at end of file
@@ -8,6 +8,7 @@ package org.simplesim.model;
 
 import java.io.PrintStream;
 
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
 
 /**
@@ -45,6 +46,34 @@ public interface Agent extends ModelEntity {
 	 */
 	Time getTimeOfNextEvent();
 
+	/**
+	 * Checks if the agent is activated by incoming messages.
+	 * <p>
+	 * If set, discrete event simulators activate the agent at the time a message
+	 * is delivered to its inport, even if its next event is later. Thus, an
+	 * agent waiting for messages does not have to poll its inport by scheduling
+	 * events periodically. The default implementation returns false.
+	 *
+	 * @return true if the agent wakes up on incoming messages
+	 */
+	default boolean isWakeOnMessage() {
+		return false;
+	}
+
+	/**
+	 * Checks if the agent has declared itself idle.
+	 * <p>
+	 * Time step simulators with activity tracking do not call an idle agent
+	 * anymore until a message arrives at its inport or it is activated
+	 * explicitly. An idle agent also wakes on messages in discrete event
+	 * simulators. The default implementation returns false.
+	 *
+	 * @return true if the agent is idle
+	 */
+	default boolean isIdle() {
+		return false;
+	}
+
 	/**
 	 * Calculates new outputs from the available inputs and implements the agent's
 	 * strategy.
@@ -90,6 +119,60 @@ public interface Agent extends ModelEntity {
 	 *
 	 */
 	Time doEventSim(Time time);
+
+	/**
+	 * Returns the time of the next event (tone) in ticks.
+	 * <p>
+	 * This method is called by simulators using a {@link TickEventQueue} as global
+	 * event queue. The default implementation converts the result of
+	 * {@link #getTimeOfNextEvent()}.
+	 *
+	 * @return time of the next event in ticks or {@link TickEventQueue#UNDEFINED}
+	 *         if there is no next event
+	 */
+	default long getTicksOfNextEvent() {
+		final Time tone=getTimeOfNextEvent();
+		if (tone==null) return TickEventQueue.UNDEFINED;
+		return tone.getTicks();
+	}
+
+	/**
+	 * Tick-based variant of {@link #doEvent(Time)}.
+	 * <p>
+	 * The default implementation just calls {@link #doEvent(Time)}. Agents may
+	 * override this method to avoid the creation of {@code Time} objects during
+	 * simulation. In this case, {@code doEvent(Time)} should delegate to this
+	 * method.
+	 * <p>
+	 * <b>Do not invoke from outside the simulation loop!</b>
+	 *
+	 * @param ticks current simulation time in ticks
+	 *
+	 * @return tone - time of next event in ticks or
+	 *         {@link TickEventQueue#UNDEFINED} if there is no next event
+	 */
+	default long doEvent(long ticks) {
+		final Time tone=doEvent(new Time(ticks));
+		if (tone==null) return TickEventQueue.UNDEFINED;
+		return tone.getTicks();
+	}
+
+	/**
+	 * Tick-based variant of {@link #doEventSim(Time)}, called by simulators using
+	 * a {@link TickEventQueue} as global event queue.
+	 * <p>
+	 * <b>Do not invoke from outside the simulation loop!</b>
+	 *
+	 * @param ticks current simulation time in ticks
+	 *
+	 * @return tone - time of next event in ticks or
+	 *         {@link TickEventQueue#UNDEFINED} if there is no next event
+	 */
+	default long doEventSim(long ticks) {
+		final Time tone=doEventSim(new Time(ticks));
+		if (tone==null) return TickEventQueue.UNDEFINED;
+		return tone.getTicks();
+	}
 	
 	/**
 	 * Provides simple logging functionality to a stream with time stamp, entity name and message output.
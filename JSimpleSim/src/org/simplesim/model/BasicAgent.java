@@ -10,8 +10,12 @@
  */
 package org.simplesim.model;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.simplesim.core.dynamic.AddEntityRequest;
 import org.simplesim.core.dynamic.ChangeDomainRequest;
@@ -22,11 +26,12 @@ import org.simplesim.core.dynamic.ReconnectPortRequest;
 import org.simplesim.core.dynamic.RemoveEntityRequest;
 import org.simplesim.core.instrumentation.Listener;
 import org.simplesim.core.instrumentation.ListenerSupport;
+import org.simplesim.core.messaging.AbstractMessage;
 import org.simplesim.core.messaging.Port;
 import org.simplesim.core.scheduling.EventQueue;
 import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
-import org.simplesim.simulator.DynamicDecorator;
 
 /**
  * Implements all basic functionality of an agent.
@@ -55,9 +60,13 @@ import org.simplesim.simulator.DynamicDecorator;
  */
 public abstract class BasicAgent<S extends State, E> extends BasicModelEntity implements Agent {
 
+	private static final long serialVersionUID = 1L;
+
 	private interface Instrumenter {
 		Time doEventSim(Time time);
 
+		long doEventSim(long ticks);
+
 		void registerBeforeExecutionListener(Listener<BasicAgent<?, ?>> listener);
 
 		void unregisterBeforeExecutionListener(Listener<BasicAgent<?, ?>> listener);
@@ -67,19 +76,44 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 		void unregisterAfterExecutionListener(Listener<BasicAgent<?, ?>> listener);
 	}
 
-	/** the internal state of the agent */
-	private final S state;
+	/**
+	 * Snapshot of an agent's state, local event queue and inport messages.
+	 * <p>
+	 * Used by optimistic simulators to roll back the events of an agent.
+	 *
+	 * @see BasicAgent#saveMemento()
+	 * @see BasicAgent#restoreMemento(Memento)
+	 */
+	public static final class Memento {
+
+		private final State state;
+		private final List<Object> events = new ArrayList<>();
+		private final List<Time> times = new ArrayList<>();
+		private final List<AbstractMessage<?>> messages = new ArrayList<>();
+
+		private Memento(State s) {
+			state = s;
+		}
+
+	}
+
+	/** the internal state of the agent, only replaced when restoring a memento or reading the model */
+	private transient S state;
+
+	/** the local event queue of the agent, only replaced when reading the model */
+	private transient EventQueue<E> leq;
 
-	/** the local event queue of the agent */
-	private final EventQueue<E> leq;
+	/** the local event queue if it supports primitive time stamps, null otherwise */
+	private transient TickEventQueue<E> tleq;
 
-	private Instrumenter instrumenter;
+	/** listeners of the agent, not saved with the agent */
+	private transient Instrumenter instrumenter;
 
-	/** global queue for model change requests, only used by dynamic simulators */
-	private final static Queue<ChangeRequest> queue = new ConcurrentLinkedDeque<>();
+	/** flag to activate the agent on incoming messages */
+	private boolean wakeOnMessage = false;
 
-	/** flag to indicate if the simulation is running */
-	private static volatile boolean simulationIsRunning = false;
+	/** flag to skip the agent in time steps until it receives a message */
+	private boolean idle = false;
 
 	/**
 	 * Sets the agent's local event queue and the internal state.
@@ -91,8 +125,24 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 	 * @param s     the state of the agent
 	 */
 	public BasicAgent(EventQueue<E> queue, S s) {
+		this(queue, s, false);
+	}
+
+	/**
+	 * Sets the agent's local event queue, the internal state and whether the
+	 * agent is activated by incoming messages.
+	 *
+	 * @param queue the local event queue
+	 * @param s     the state of the agent
+	 * @param wake  true to wake the agent on incoming messages
+	 * @see #setWakeOnMessage(boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	protected BasicAgent(EventQueue<E> queue, S s, boolean wake) {
 		state = s;
 		leq = queue;
+		tleq = queue instanceof TickEventQueue ? (TickEventQueue<E>) queue : null;
+		wakeOnMessage = wake;
 		disableInstrumentation();
 	}
 
@@ -110,19 +160,92 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 	 * Returns the time of the next internal event.
 	 * <p>
 	 * This method is called by the simulator to update the global event queue.
+	 * If the agent wakes on messages or is idle and its local event queue is
+	 * empty, the agent is dormant and {@link Time#INFINITY} is returned.
 	 *
 	 * @return time of the next internal event
 	 */
 	@Override
 	public Time getTimeOfNextEvent() {
+		if ((wakeOnMessage || idle) && leq.isEmpty()) return Time.INFINITY;
 		return leq.getMin();
 	}
 
+	/**
+	 * Returns the time of the next internal event in ticks.
+	 * <p>
+	 * If the local event queue is a {@link TickEventQueue}, no {@code Time}
+	 * object is created.
+	 *
+	 * @return time of the next internal event in ticks or
+	 *         {@link TickEventQueue#UNDEFINED} if the local event queue is empty
+	 *         and the agent is not dormant
+	 */
+	@Override
+	public long getTicksOfNextEvent() {
+		if (leq.isEmpty()) return (wakeOnMessage || idle) ? Time.INFINITY.getTicks() : TickEventQueue.UNDEFINED;
+		if (tleq != null) return tleq.getMinTicks();
+		return leq.getMin().getTicks();
+	}
+
+	@Override
+	public boolean isWakeOnMessage() {
+		return wakeOnMessage;
+	}
+
+	/**
+	 * Sets whether the agent is activated by incoming messages.
+	 * <p>
+	 * A waking agent is activated at the time a message is delivered to its
+	 * inport, even if its next internal event is later. So {@code doEvent} has
+	 * to check the inport and must not assume that an internal event is due. An
+	 * agent waiting only for messages may leave its local event queue empty and
+	 * stays dormant at {@link Time#INFINITY} until a message arrives.
+	 * <p>
+	 * Note: Supported by the {@link org.simplesim.simulator.SequentialDESimulator}
+	 * and the {@link org.simplesim.simulator.ConcurrentDESimulator} with
+	 * message forwarding strategies reporting their receivers.
+	 *
+	 * @param value true to wake the agent on incoming messages
+	 * @see org.simplesim.core.messaging.MessageForwardingStrategy#forwardMessages(java.util.Collection,
+	 *      java.util.Collection)
+	 */
+	public void setWakeOnMessage(boolean value) {
+		wakeOnMessage = value;
+	}
+
+	@Override
+	public boolean isIdle() {
+		return idle;
+	}
+
+	/**
+	 * Declares the agent idle or active.
+	 * <p>
+	 * An idle agent is skipped by time step simulators with activity tracking
+	 * until a message arrives at its inport or it is activated explicitly. The
+	 * flag is cleared each time the agent is called, so an agent has to declare
+	 * itself idle again in {@code doEvent} to stay out of the step loop.
+	 *
+	 * @param value true if the agent has nothing to do without new messages
+	 * @see org.simplesim.simulator.SequentialTSSimulator#setActivityTracking(boolean)
+	 */
+	public void setIdle(boolean value) {
+		idle = value;
+	}
+
 	@Override
 	public final Time doEventSim(Time time) {
+		idle = false;
 		return instrumenter.doEventSim(time);
 	}
 
+	@Override
+	public final long doEventSim(long ticks) {
+		idle = false;
+		return instrumenter.doEventSim(ticks);
+	}
+
 	/**
 	 * Enables the feature to listen to this agent's events and queue its state.
 	 */
@@ -162,6 +285,15 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 				ael.notifyListeners(time, BasicAgent.this);
 				return getTimeOfNextEvent();
 			}
+
+			@Override
+			public long doEventSim(long ticks) {
+				final Time time = new Time(ticks); // listeners need a time object
+				bel.notifyListeners(time, BasicAgent.this);
+				doEvent(ticks);
+				ael.notifyListeners(time, BasicAgent.this);
+				return getTicksOfNextEvent();
+			}
 		};
 	}
 
@@ -175,6 +307,11 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 				return BasicAgent.this.doEvent(time);
 			}
 
+			@Override
+			public long doEventSim(long ticks) {
+				return BasicAgent.this.doEvent(ticks);
+			}
+
 			@Override
 			public void registerBeforeExecutionListener(Listener<BasicAgent<?, ?>> listener) {
 			}
@@ -209,6 +346,82 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 		instrumenter.unregisterAfterExecutionListener(listener);
 	}
 
+	/**
+	 * Saves the agent's state, the content of its local event queue and the
+	 * messages at its inport.
+	 * <p>
+	 * The state is saved by {@link State#copy()}, the events are saved by
+	 * reference and should thus be immutable. The local event queue is copied by
+	 * {@link EventQueue#copyTo(List, List)} and stays unchanged.
+	 *
+	 * @return snapshot of the agent to be restored by
+	 *         {@link #restoreMemento(Memento)}
+	 */
+	public final Memento saveMemento() {
+		final Memento result = new Memento(state.copy());
+		leq.copyTo(result.events, result.times);
+		if (getInport() != null) result.messages.addAll(getInport().<AbstractMessage<?>>readAll());
+		return result;
+	}
+
+	/**
+	 * Restores the agent to a previously saved snapshot.
+	 * <p>
+	 * Note: A memento may only be restored once, since it becomes the agent's
+	 * current state.
+	 *
+	 * @param memento the snapshot to restore
+	 */
+	@SuppressWarnings("unchecked")
+	public final void restoreMemento(Memento memento) {
+		final List<E> bucket = new ArrayList<>();
+		while (!leq.isEmpty()) leq.drainMin(bucket);
+		for (int index = 0; index < memento.events.size(); index++)
+			leq.enqueue(getSavedEvent(memento, index), memento.times.get(index));
+		state = (S) memento.state;
+		if (getInport() != null) {
+			getInport().clearMessages();
+			getInport().writeAll(memento.messages);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private E getSavedEvent(Memento memento, int index) {
+		return (E) memento.events.get(index);
+	}
+
+	/**
+	 * Writes the ports, the state and the local event queue of the agent.
+	 */
+	@Override
+	void writeContents(ObjectOutputStream out) throws IOException {
+		super.writeContents(out);
+		out.writeObject(state);
+		out.writeObject(leq);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	void readContents(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		super.readContents(in);
+		final Object s = in.readObject();
+		final Object queue = in.readObject();
+		if (((s != null) && !(s instanceof State)) || ((queue != null) && !(queue instanceof EventQueue)))
+			throw new InvalidObjectException("State and local event queue expected for agent " + getFullName());
+		state = (S) s;
+		leq = (EventQueue<E>) queue;
+		tleq = queue instanceof TickEventQueue ? (TickEventQueue<E>) queue : null;
+	}
+
+	/**
+	 * Restores a serialized agent, e.g. from a checkpoint, with disabled
+	 * instrumentation, since listeners are not serialized.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		disableInstrumentation();
+	}
+
 	/**
 	 * Gets the local event queue.
 	 * <p>
@@ -220,6 +433,18 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 		return leq;
 	}
 
+	/**
+	 * Gets the local event queue if it supports primitive time stamps.
+	 * <p>
+	 * Note: The event queue should only be manipulated by this agent itself.
+	 *
+	 * @return the local event queue or {@code null} if it is no
+	 *         {@link TickEventQueue}
+	 */
+	protected TickEventQueue<E> getTickEventQueue() {
+		return tleq;
+	}
+
 	/**
 	 * Moves this agent to an other domain.
 	 * <p>
@@ -277,7 +502,7 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 	}
 
 	/**
-	 * Adds a model change request to the queue
+	 * Adds a model change request to the queue of the simulation context
 	 * <p>
 	 * Change request are processed by a dynamic simulator after each simulation
 	 * cycle. Has no effect when using other simulator implementations.
@@ -285,61 +510,10 @@ public abstract class BasicAgent<S extends State, E> extends BasicModelEntity im
 	 * This method is thread-safe.
 	 *
 	 * @param cr the request
-	 *
-	 */
-	protected static final void pushModelChangeRequest(ChangeRequest cr) {
-		queue.add(cr);
-	}
-
-	/**
-	 * Checks if there are any chage requests
-	 * <p>
-	 * This method is thread-safe.
-	 *
-	 * @return true if there are model change requests
-	 * @see DynamicDecorator
-	 */
-	public static final boolean hasModelChangeRequest() {
-		return !queue.isEmpty();
-	}
-	
-	/**
-	 * Removes first model change request in queue
-	 * <p>
-	 * Should only be used by a dynamic simulator implementation and by an agent
-	 * <p>
-	 * This method is thread-safe.
-	 *
-	 * @return next model change request or null if queue is empty
-	 * @see DynamicDecorator
-	 */
-	public static final ChangeRequest pollModelChangeRequest() {
-		return queue.poll();
-	}
-
-	/**
-	 * Sets the status of simulation run.
-	 * <p>
-	 * Static method and variable to be accessible for all agents of the simulation
-	 * model
-	 *
-	 * @param toggle the status of the simulation, {@code true} means simulation is
-	 *               running
-	 */
-	public static final void setSimulationIsRunning(boolean toggle) {
-		simulationIsRunning = toggle;
-	}
-
-	/**
-	 * Gets the status of simulation run.
-	 * <p>
-	 * Static method and variable to be accessible for all entities of the
-	 * simulation model
-	 *
-	 * @return current simulation status, {@code true} means simulation is running
+	 * @see SimulationContext#pushModelChangeRequest(ChangeRequest)
 	 */
-	public static final boolean isSimulationRunning() {
-		return simulationIsRunning;
+	protected final void pushModelChangeRequest(ChangeRequest cr) {
+		getSimulationContext().pushModelChangeRequest(cr);
 	}
 
 }
\ No newline at end of file
@@ -5,9 +5,15 @@
  */
 package org.simplesim.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -26,25 +32,68 @@ import java.util.NoSuchElementException;
  */
 public abstract class BasicDomain extends BasicModelEntity implements Domain {
 
+	private static final long serialVersionUID=1L;
+
 	public static final int ROOT_ADDRESS[]=new int[0];
 
-	/** set of child entities (agents or domains). */
-	private final List<ModelEntity> entityList=new ArrayList<>(); // Only to be used internally!
+	/** set of child entities (agents or domains), rebuilt from the parents of the entities when reading a model */
+	private transient ArrayList<ModelEntity> entityList=new ArrayList<>(); // Only to be used internally!
 	
-	/** unmodifiable external view of the entityList*/
-	private final List<ModelEntity> unmodifiableEntityList=Collections.unmodifiableList(entityList);
+	/** unmodifiable external view of the entityList, rebuilt after deserialization */
+	private transient List<ModelEntity> unmodifiableEntityList=Collections.unmodifiableList(entityList);
+
+	/** context of the simulation, only set at the root domain and not serialized */
+	private transient SimulationContext context=null;
+
+	/** flat index of all agents of the subtree, only maintained at the root domain, null otherwise */
+	private transient ArrayList<Agent> agentIndex=new ArrayList<>();
+
+	/** agents added to (true) or removed from (false) the index since the last poll, null if not tracked */
+	private transient Map<Agent, Boolean> agentChanges=null;
 	
 	
+	/**
+	 * Returns all agents within this domain.
+	 * <p>
+	 * The recursive listing of the root domain is a copy of an agent index that
+	 * is updated incrementally when entities are added or removed. So, it is
+	 * built without walking the model tree. The order of the index is the order
+	 * in which agents were added, a removed agent is replaced by the last one.
+	 * Recursive listings of subdomains are built by walking the subtree. In any
+	 * case, the returned list is independent of later model changes.
+	 */
 	@Override
 	public final List<Agent> listAllAgents(boolean recursive) {
+		if (recursive&&(agentIndex!=null)) return new ArrayList<>(agentIndex);
 		final List<Agent> result=new ArrayList<>();
-		for (final ModelEntity iter : listDomainEntities())
-			if (iter instanceof Agent) result.add((Agent) iter);
-			else if (recursive&&(iter instanceof Domain))
-				result.addAll(((Domain) iter).listAllAgents(true));
+		if (recursive) collectAgents(result);
+		else for (final ModelEntity iter : listDomainEntities()) if (iter instanceof Agent) result.add((Agent) iter);
 		return result;
 	}
 
+	/**
+	 * Returns all agents of the subtree without copying them.
+	 * <p>
+	 * For the root domain, this is a read-only view of the agent index in O(1).
+	 * The view reflects later model changes, so it must not be iterated while
+	 * the model is changed. For other domains, the agents are collected by
+	 * walking the subtree like {@link #listAllAgents(boolean)}.
+	 *
+	 * @return unmodifiable list of all agents of the subtree
+	 */
+	public final List<Agent> viewAllAgents() {
+		if (agentIndex!=null) return Collections.unmodifiableList(agentIndex);
+		return listAllAgents(true);
+	}
+
+	/**
+	 * Checks if the given entity is a child of this domain in O(1).
+	 */
+	@Override
+	public boolean containsEntity(ModelEntity entity) {
+		return (entity!=null)&&(entity.getParent()==this);
+	}
+
 	@Override
 	public final List<ModelEntity> listDomainEntities() {
 		return unmodifiableEntityList;
@@ -57,16 +106,118 @@ public abstract class BasicDomain extends BasicModelEntity implements Domain {
 				"Model "+entity.toString()+" added twice to domain "+this.getFullName());
 		entity.setParent(this);
 		getModifiableEntityList().add(entity);
+		getIndexRoot().addToIndex(entity);
 		return entity;
 	}
 
 	@Override
 	public <T extends BasicModelEntity> void removeEntity(T entity) {
 		if (!getModifiableEntityList().remove(entity)) throw new NoSuchElementException("Entity not part of parent domain: "+entity.getFullName());
+		getIndexRoot().removeFromIndex(entity);
 		entity.setParent(null);
 		return;
 	}
 
+	/**
+	 * Attaches a simulation context to this domain.
+	 * <p>
+	 * Called by the simulator for the root domain of its model. All entities
+	 * of the model tree use the context attached to their root domain, it is
+	 * passed on to them at once.
+	 *
+	 * @param value the context of the simulation
+	 * @see BasicModelEntity#getSimulationContext()
+	 */
+	public void setSimulationContext(SimulationContext value) {
+		context=value;
+		resetContext();
+	}
+
+	@Override
+	SimulationContext getAttachedContext() {
+		return context;
+	}
+
+	/**
+	 * Updates the cached context of this domain and all its descendants.
+	 */
+	@Override
+	void resetContext() {
+		super.resetContext();
+		for (final ModelEntity entity : entityList) ((BasicModelEntity) entity).resetContext();
+	}
+
+	/**
+	 * Enables or disables tracking of agents added to or removed from the model.
+	 * <p>
+	 * Used by simulators that have to integrate model changes incrementally, e.g.
+	 * into their global event queue. Only the root domain tracks changes. Enabling
+	 * discards all changes tracked so far.
+	 *
+	 * @param value true to track changes
+	 * @see #pollAgentChanges(Collection, Collection)
+	 */
+	public void setAgentChangeTracking(boolean value) {
+		agentChanges=value ? new LinkedHashMap<>() : null;
+	}
+
+	/**
+	 * Checks if agents were added or removed since the last poll.
+	 *
+	 * @return true if there are tracked changes
+	 */
+	public boolean hasAgentChanges() {
+		return (agentChanges!=null)&&!agentChanges.isEmpty();
+	}
+
+	/**
+	 * Moves all tracked changes to the given collections, in order of change.
+	 * <p>
+	 * Changes cancelling each other out are not reported, so an agent moved
+	 * from one domain to another within the model is neither added nor removed.
+	 *
+	 * @param added   collection to add the new agents of the model to
+	 * @param removed collection to add the removed agents of the model to
+	 */
+	public void pollAgentChanges(Collection<Agent> added, Collection<Agent> removed) {
+		if (agentChanges==null) return;
+		for (final Map.Entry<Agent, Boolean> entry : agentChanges.entrySet())
+			if (entry.getValue()) added.add(entry.getKey());
+			else removed.add(entry.getKey());
+		agentChanges.clear();
+	}
+
+	/**
+	 * Writes this root domain and its whole model tree to a stream.
+	 * <p>
+	 * The entities, their contents and the port connections are written as flat
+	 * records, so even models with millions of agents are written without deep
+	 * recursion. All states, events and message contents of the model have to be
+	 * serializable. Connections of single, multi and switch ports may only lead
+	 * to inports and outports of entities of the model.
+	 *
+	 * @param out the stream to write to
+	 * @exception IOException if the stream fails or a part of the model cannot be
+	 *                        written
+	 * @see #readModel(ObjectInputStream)
+	 */
+	public final void writeModel(ObjectOutputStream out) throws IOException {
+		ModelSerializer.write(this,out);
+	}
+
+	/**
+	 * Reads a model tree written by {@link #writeModel(ObjectOutputStream)}.
+	 *
+	 * @param in the stream to read from
+	 * @return the root domain of the model
+	 * @exception IOException            if the stream fails or contains no valid
+	 *                                   model
+	 * @exception ClassNotFoundException if a class of the model is unknown
+	 */
+	public static BasicDomain readModel(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		return ModelSerializer.read(in);
+	}
+
 	/**
 	 * The modifiable list should only be used internally to add and remove entities.
 	 * For all other purposes use {@code listDomainEntities()}.
@@ -76,4 +227,128 @@ public abstract class BasicDomain extends BasicModelEntity implements Domain {
 		return entityList;
 	}
 
+	/**
+	 * Returns the topmost basic domain of the model tree, holding the agent index.
+	 * <p>
+	 * Takes time proportional to the depth of the model tree.
+	 */
+	BasicDomain getIndexRoot() {
+		BasicDomain root=this;
+		while (root.getParent() instanceof BasicDomain) root=(BasicDomain) root.getParent();
+		return root;
+	}
+
+	/**
+	 * Adds a new child entity of the subtree to the agent index of this root domain.
+	 * <p>
+	 * An added domain hands its own index over, so this takes time proportional to
+	 * the number of added agents.
+	 *
+	 * @param entity the agent or domain added to the subtree
+	 */
+	void addToIndex(ModelEntity entity) {
+		if (entity instanceof Agent) appendToIndex((Agent) entity);
+		else if (entity instanceof Domain) {
+			for (final Agent agent : ((Domain) entity).listAllAgents(true)) appendToIndex(agent);
+			if (entity instanceof BasicDomain) ((BasicDomain) entity).agentIndex=null;
+		}
+	}
+
+	/**
+	 * Removes a child entity of the subtree from the agent index of this root
+	 * domain.
+	 * <p>
+	 * A removed domain becomes the root of its own subtree and gets its own index,
+	 * so this takes time proportional to the number of removed agents.
+	 *
+	 * @param entity the agent or domain to be removed from the subtree
+	 */
+	void removeFromIndex(ModelEntity entity) {
+		if (entity instanceof Agent) deleteFromIndex((Agent) entity);
+		else if (entity instanceof Domain) {
+			final ArrayList<Agent> agents=new ArrayList<>();
+			if (entity instanceof BasicDomain) ((BasicDomain) entity).collectAgents(agents);
+			else agents.addAll(((Domain) entity).listAllAgents(true));
+			for (final Agent agent : agents) deleteFromIndex(agent);
+			if (entity instanceof BasicDomain) {
+				for (int index=0; index<agents.size(); index++) setIndexPosition(agents.get(index),index);
+				((BasicDomain) entity).agentIndex=agents;
+			}
+		}
+	}
+
+	private void appendToIndex(Agent agent) {
+		setIndexPosition(agent,agentIndex.size());
+		agentIndex.add(agent);
+		if ((agentChanges!=null)&&(agentChanges.remove(agent)==null)) agentChanges.put(agent,Boolean.TRUE);
+	}
+
+	/**
+	 * Removes an agent from the index in O(1) by moving the last agent to its
+	 * position.
+	 */
+	private void deleteFromIndex(Agent agent) {
+		final int position=getIndexPosition(agent);
+		if (position<0) return;
+		final Agent last=agentIndex.remove(agentIndex.size()-1);
+		if (last!=agent) {
+			agentIndex.set(position,last);
+			setIndexPosition(last,position);
+		}
+		setIndexPosition(agent,-1);
+		if ((agentChanges!=null)&&(agentChanges.remove(agent)==null)) agentChanges.put(agent,Boolean.FALSE);
+	}
+
+	/**
+	 * Returns the position of an agent in the index.
+	 * <p>
+	 * Only agents derived from {@link BasicModelEntity} store their position,
+	 * other agents are searched in linear time.
+	 *
+	 * @return the position or -1 if the agent is not indexed
+	 */
+	private int getIndexPosition(Agent agent) {
+		if (agent instanceof BasicModelEntity) return ((BasicModelEntity) agent).getIndexPosition();
+		for (int index=0; index<agentIndex.size(); index++) if (agentIndex.get(index)==agent) return index;
+		return -1;
+	}
+
+	private static void setIndexPosition(Agent agent, int position) {
+		if (agent instanceof BasicModelEntity) ((BasicModelEntity) agent).setIndexPosition(position);
+	}
+
+	/**
+	 * Returns the agent index.
+	 *
+	 * @return the agent index or null if this is no root domain
+	 */
+	List<Agent> getAgentIndex() {
+		return agentIndex;
+	}
+
+	void setAgentIndex(ArrayList<Agent> value) {
+		agentIndex=value;
+	}
+
+	/**
+	 * Restores a serialized domain with an empty entity list, the children are
+	 * added when reading the model.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		entityList=new ArrayList<>();
+		unmodifiableEntityList=Collections.unmodifiableList(entityList);
+	}
+
+	/**
+	 * Adds all agents of this domain and its subdomains to the given list by
+	 * walking the subtree.
+	 */
+	private void collectAgents(List<Agent> result) {
+		for (final ModelEntity iter : listDomainEntities())
+			if (iter instanceof Agent) result.add((Agent) iter);
+			else if (iter instanceof BasicDomain) ((BasicDomain) iter).collectAgents(result);
+			else if (iter instanceof Domain) result.addAll(((Domain) iter).listAllAgents(true));
+	}
+
 }
@@ -5,6 +5,12 @@
  */
 package org.simplesim.model;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.simplesim.core.messaging.Port;
 import org.simplesim.core.messaging.SinglePort;
 
@@ -19,25 +25,37 @@ import org.simplesim.core.messaging.SinglePort;
  * <li>utility methods (model level, naming, {@code toString}, {@code equals})
  * <li>providing relevant exceptions
  * </ul>
+ * <p>
+ * Entities can only be serialized as part of a model written by
+ * {@link BasicDomain#writeModel(ObjectOutputStream)}. Ports, states and local
+ * event queues are written by the model, not by default serialization.
  */
 public abstract class BasicModelEntity implements ModelEntity {
 
+	private static final long serialVersionUID=1L;
+
 	private static final int INIT_LEVEL=Integer.MIN_VALUE;
 
 	/** Parent entity in model hierarchy. */
 	private Domain parent=null;
 
-	/** The inport (is always a SinglePort) */
-	private Port inport=new SinglePort(this);
+	/** The inport (is always a SinglePort), written with the contents of the entity */
+	private transient Port inport=new SinglePort(this);
 
-	/** The outport */
-	private Port outport=null;
+	/** The outport, written with the contents of the entity */
+	private transient Port outport=null;
 
 	/** Address in numbers, describing the model's branch within the model tree */
 	private int[] address=null;
 
 	/** The level in the hierarchy the model is located at. */
 	private int level=INIT_LEVEL;
+
+	/** Position in the agent index of the root domain, -1 if not indexed */
+	private int indexPosition=-1;
+
+	/** Context attached to the root domain, cached on attach and not serialized */
+	private transient SimulationContext context=null;
 	
 	
 /*	@Override
@@ -81,10 +99,47 @@ public abstract class BasicModelEntity implements ModelEntity {
 		return level;
 	}
 
+	/**
+	 * Returns the context of the simulation this entity is part of.
+	 * <p>
+	 * The context is attached to the root domain of the model by the
+	 * simulator and cached by each entity of the model tree when it is attached.
+	 * Entities not attached to a simulator get the default context.
+	 *
+	 * @return the simulation context
+	 */
+	public SimulationContext getSimulationContext() {
+		final SimulationContext result=context;
+		if (result!=null) return result;
+		return SimulationContext.getDefault();
+	}
+
+	/**
+	 * Returns the context attached to this entity itself.
+	 *
+	 * @return the attached context or {@code null} if there is none
+	 */
+	SimulationContext getAttachedContext() {
+		return null;
+	}
+
+	/**
+	 * Updates the cached context from the parent, or from the context attached
+	 * to this entity if it has no parent.
+	 */
+	void resetContext() {
+		if (parent instanceof BasicModelEntity) context=((BasicModelEntity) parent).context;
+		else context=getAttachedContext();
+	}
+
 	protected Port setInport(Port port) { return (inport=port); }
 
 	protected Port setOutport(Port port) { return (outport=port); }
 
+	int getIndexPosition() { return indexPosition; }
+
+	void setIndexPosition(int value) { indexPosition=value; }
+
 	/**
 	 * Sets the address of this model. Should only be used internally when changing
 	 * the model.
@@ -129,6 +184,45 @@ public abstract class BasicModelEntity implements ModelEntity {
 		// any updating which is related to setting a new parent must be done in
 		// the reset method - this method is overwritten in descendant classes
 		resetLevel();
+		resetContext();
+	}
+
+	/**
+	 * Writes the parts of this entity that may refer to other entities, i.e. its
+	 * ports.
+	 *
+	 * @param out the stream of the model
+	 * @see ModelSerializer
+	 */
+	void writeContents(ObjectOutputStream out) throws IOException {
+		out.writeObject(inport);
+		out.writeObject(outport);
+	}
+
+	/**
+	 * Reads the parts written by {@link #writeContents(ObjectOutputStream)}.
+	 *
+	 * @param in the stream of the model
+	 */
+	void readContents(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		inport=readPort(in);
+		outport=readPort(in);
+	}
+
+	private static Port readPort(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final Object result=in.readObject();
+		if ((result!=null)&&!(result instanceof Port)) throw new InvalidObjectException("Port expected");
+		return (Port) result;
+	}
+
+	/**
+	 * Serializes the entity as record of a model, since the entity cannot be
+	 * restored without its ports and the rest of the model.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (!ModelSerializer.acceptsEntity(out)) throw new NotSerializableException(
+				"Entity "+getFullName()+" is not part of a model written by BasicDomain.writeModel");
+		out.defaultWriteObject();
 	}
 
 	/**
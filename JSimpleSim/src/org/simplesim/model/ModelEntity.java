@@ -6,6 +6,8 @@
  */
 package org.simplesim.model;
 
+import java.io.Serializable;
+
 import org.simplesim.core.messaging.Port;
 
 /**
@@ -19,8 +21,11 @@ import org.simplesim.core.messaging.Port;
  * {@code equals})
  * <li>providing relevant exceptions
  * </ul>
+ * Entities are serializable, so a whole model can be saved as a checkpoint.
+ *
+ * @see org.simplesim.simulator.Checkpoint
  */
-public interface ModelEntity {
+public interface ModelEntity extends Serializable {
 
 	/**
 	 * Exception to be thrown if a duplicate object is used where only a unique one
@@ -0,0 +1,219 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy way. This software is published as open
+ * source and licensed under the terms of GNU GPLv3. Contributors: - Rene Kuhlemann - development and initial
+ * implementation
+ */
+package org.simplesim.model;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simplesim.core.messaging.MultiPort;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.core.messaging.SinglePort;
+import org.simplesim.core.messaging.SwitchPort;
+
+/**
+ * Writes and reads a model tree as a flat sequence of records
+ * <p>
+ * Default serialization follows the references between the entities, e.g. along
+ * the port connections, recursively. So, the stack overflows for large models.
+ * Instead, the model is written in four parts, each visiting the entities in
+ * pre-order:
+ * <ol>
+ * <li>one record per entity without its ports, state and local event queue,
+ * so a record only refers to the parent written before
+ * <li>the ports, the state and the local event queue of each entity
+ * <li>a connection table with the connections of single, multi and switch
+ * ports, giving each destination port by the number of its entity
+ * <li>the agent index of the root domain as entity numbers
+ * </ol>
+ * As all entities have been written in the first part, later references to
+ * them are only handles of the stream. The child lists of the domains are
+ * rebuilt from the parents of the entities when reading.
+ */
+final class ModelSerializer {
+
+	/** number of a port that is not part of the connection table */
+	private static final int NO_TABLE=-1;
+
+	/** streams writing a model, mapped to true while the entity records are written */
+	private static final Map<ObjectOutputStream, Boolean> streams=new ConcurrentHashMap<>();
+
+	private ModelSerializer() {}
+
+	/**
+	 * Checks if an entity may be serialized to the given stream.
+	 * <p>
+	 * Entities can only be written as part of a model, otherwise their ports,
+	 * state and local event queue would be lost.
+	 */
+	static boolean acceptsEntity(ObjectOutputStream out) {
+		return Boolean.TRUE.equals(streams.get(out));
+	}
+
+	/**
+	 * Writes a root domain and its subtree.
+	 *
+	 * @param root the root domain of the model
+	 * @param out  the stream to write to
+	 * @exception IOException if the stream fails, a part of the model is not
+	 *                        serializable or a port is connected to a port
+	 *                        outside of the model
+	 */
+	static void write(BasicDomain root, ObjectOutputStream out) throws IOException {
+		if (root.getParent()!=null)
+			throw new IllegalArgumentException("Only a root domain can be written, not "+root.getFullName());
+		final List<BasicModelEntity> entities=listEntities(root);
+		final Map<ModelEntity, Integer> numbers=new IdentityHashMap<>(entities.size());
+		for (int index=0; index<entities.size(); index++) numbers.put(entities.get(index),index);
+		streams.put(out,Boolean.TRUE);
+		try {
+			out.writeInt(entities.size());
+			for (final BasicModelEntity entity : entities) out.writeObject(entity);
+			streams.put(out,Boolean.FALSE); // all further entity references are handles
+			for (final BasicModelEntity entity : entities) entity.writeContents(out);
+			final Set<Port> written=Collections.newSetFromMap(new IdentityHashMap<>());
+			for (final BasicModelEntity entity : entities) {
+				writeConnections(out,entity.getInport(),numbers,written);
+				writeConnections(out,entity.getOutport(),numbers,written);
+			}
+			final List<Agent> index=root.getAgentIndex();
+			out.writeInt(index==null ? NO_TABLE : index.size());
+			if (index!=null) for (final Agent agent : index) out.writeInt(getNumber(numbers,agent));
+		} finally {
+			streams.remove(out);
+		}
+	}
+
+	/**
+	 * Reads a model written by {@link #write(BasicDomain, ObjectOutputStream)}.
+	 *
+	 * @param in the stream to read from
+	 * @return the root domain of the model
+	 * @exception IOException            if the stream fails or contains no
+	 *                                   valid model
+	 * @exception ClassNotFoundException if a class of the model is unknown
+	 */
+	static BasicDomain read(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final int count=in.readInt();
+		if (count<1) throw new StreamCorruptedException("Invalid number of entities: "+count);
+		final BasicModelEntity[] entities=new BasicModelEntity[count];
+		for (int index=0; index<count; index++) {
+			final Object entity=in.readObject();
+			if (!(entity instanceof BasicModelEntity)) throw new StreamCorruptedException("Model entity expected");
+			entities[index]=(BasicModelEntity) entity;
+		}
+		if (!(entities[0] instanceof BasicDomain)) throw new StreamCorruptedException("Root domain expected");
+		for (int index=1; index<count; index++) {
+			if (!(entities[index].getParent() instanceof BasicDomain))
+				throw new StreamCorruptedException("Entity without domain: "+entities[index].getName());
+			((BasicDomain) entities[index].getParent()).getModifiableEntityList().add(entities[index]);
+		}
+		for (final BasicModelEntity entity : entities) entity.readContents(in);
+		for (final BasicModelEntity entity : entities) {
+			readConnections(in,entity.getInport(),entities);
+			readConnections(in,entity.getOutport(),entities);
+		}
+		final BasicDomain root=(BasicDomain) entities[0];
+		final int size=in.readInt();
+		if (size==NO_TABLE) root.setAgentIndex(null);
+		else {
+			final ArrayList<Agent> index=new ArrayList<>(size);
+			for (int position=0; position<size; position++) {
+				final ModelEntity agent=getEntity(entities,in.readInt());
+				if (!(agent instanceof Agent)) throw new StreamCorruptedException("Agent expected in index");
+				index.add((Agent) agent);
+			}
+			root.setAgentIndex(index);
+		}
+		return root;
+	}
+
+	/**
+	 * Lists all entities of the subtree in pre-order without recursion, so each
+	 * domain is listed before its children.
+	 */
+	private static List<BasicModelEntity> listEntities(BasicDomain root) {
+		final List<BasicModelEntity> result=new ArrayList<>();
+		final Deque<BasicModelEntity> stack=new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			final BasicModelEntity entity=stack.pop();
+			result.add(entity);
+			if (entity instanceof BasicDomain) {
+				final List<ModelEntity> children=((BasicDomain) entity).listDomainEntities();
+				for (int index=children.size()-1; index>=0; index--) stack.push((BasicModelEntity) children.get(index));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the connections of a port to the connection table.
+	 * <p>
+	 * Only ports of the standard types store their connections in the table,
+	 * other ports are serialized with all their fields. Each destination is
+	 * written as twice the number of its entity, plus one for an outport.
+	 */
+	private static void writeConnections(ObjectOutputStream out, Port port, Map<ModelEntity, Integer> numbers,
+			Set<Port> written) throws IOException {
+		if (!hasTableConnections(port)||!written.add(port)) {
+			out.writeInt(NO_TABLE);
+			return;
+		}
+		final Collection<Port> connections=port.listConnections();
+		out.writeInt(connections.size());
+		for (final Port dest : connections) {
+			final ModelEntity owner=dest.getParent();
+			final int number=getNumber(numbers,owner);
+			if (owner.getInport()==dest) out.writeInt(2*number);
+			else if (owner.getOutport()==dest) out.writeInt((2*number)+1);
+			else throw new NotSerializableException("Port of "+owner.getFullName()+" is neither inport nor outport");
+		}
+	}
+
+	private static void readConnections(ObjectInputStream in, Port port, BasicModelEntity[] entities)
+			throws IOException {
+		final int count=in.readInt();
+		if (count==NO_TABLE) return;
+		if (!hasTableConnections(port)) throw new StreamCorruptedException("Connection table of unexpected port");
+		for (int index=0; index<count; index++) {
+			final int code=in.readInt();
+			final ModelEntity owner=getEntity(entities,code>>>1);
+			final Port dest=(code&1)==0 ? owner.getInport() : owner.getOutport();
+			if (dest==null) throw new StreamCorruptedException("Missing port of "+owner.getFullName());
+			port.connect(dest);
+		}
+	}
+
+	private static boolean hasTableConnections(Port port) {
+		return (port instanceof SinglePort)||(port instanceof MultiPort)||(port instanceof SwitchPort);
+	}
+
+	private static int getNumber(Map<ModelEntity, Integer> numbers, ModelEntity entity) throws IOException {
+		final Integer result=numbers.get(entity);
+		if (result==null) throw new NotSerializableException(
+				"Entity "+(entity==null ? null : entity.getFullName())+" is referenced but not part of the model");
+		return result;
+	}
+
+	private static ModelEntity getEntity(BasicModelEntity[] entities, int number) throws IOException {
+		if ((number<0)||(number>=entities.length)) throw new StreamCorruptedException("Invalid entity number "+number);
+		return entities[number];
+	}
+
+}
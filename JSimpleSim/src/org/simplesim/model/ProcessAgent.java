@@ -0,0 +1,274 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors: - Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.model;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.Time;
+
+/**
+ * Agent with its behavior written as sequential process.
+ * <p>
+ * Instead of implementing a state machine within {@link #doEvent(Time)}, the
+ * agent's behavior is implemented in {@link #process()} as sequential code,
+ * e.g.:
+ *
+ * <pre>
+ * protected void process() {
+ * 	while (true) {
+ * 		waitForMessage();
+ * 		handleRequest(getInport().poll());
+ * 		hold(SERVICE_TIME);
+ * 	}
+ * }
+ * </pre>
+ *
+ * The process runs on its own virtual thread. Each time the simulator calls
+ * {@code doEvent}, control is handed over to the process until it waits again
+ * by calling {@link #hold(Time)}, {@link #waitForMessage()} or
+ * {@link #waitUntil(BooleanSupplier)}. Thus, the process and the simulator
+ * never run at the same time and the process may access the agent's state and
+ * ports like a conventional {@code doEvent} method.
+ * <p>
+ * While waiting for a message or a condition, the agent has no next event and
+ * its time of next event is {@link Time#INFINITY}, so no polling events are
+ * necessary. Process agents wake on messages, so a process waiting for a
+ * message is resumed at the time the message arrives. A condition is checked
+ * whenever the agent is activated, i.e. when it receives a message.
+ * <p>
+ * Simulators stop all processes at the end of a simulation run by
+ * {@link #stopProcess()}, so their virtual threads do not outlive the run. A
+ * process agent is thus only active in a single run.
+ * <p>
+ * Note: Optimistic simulators cannot roll back a process, so process agents
+ * are not supported by them. For the same reason, a process agent can only be
+ * saved in a checkpoint before its process has started or after it has
+ * finished.
+ *
+ * @param <S> type of the agent state containing all state variables
+ */
+public abstract class ProcessAgent<S extends State> extends BasicAgent<S, ProcessAgent.Signal> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** events of the local event queue */
+	public enum Signal {
+		RESUME
+	}
+
+	/** reasons for the process to wait */
+	private enum Wait {
+		START, HOLD, MESSAGE, CONDITION, FINISHED
+	}
+
+	/** thrown within the process to unwind it if it is stopped */
+	@SuppressWarnings("serial")
+	private static final class ProcessTermination extends RuntimeException {
+		ProcessTermination() {
+			super(null, null, false, false);
+		}
+	}
+
+	/** permits to run the process */
+	private final Semaphore processPermit = new Semaphore(0);
+
+	/** permits to continue the simulation */
+	private final Semaphore simulatorPermit = new Semaphore(0);
+
+	private transient Thread thread = null;
+	private Time now = Time.ZERO;
+	private Wait waiting = Wait.START;
+	private transient BooleanSupplier condition = null;
+	private Throwable failure = null;
+
+	/**
+	 * Constructor for a process starting at the given time.
+	 *
+	 * @param s     the state of the agent
+	 * @param start the time to start the process
+	 */
+	public ProcessAgent(S s, Time start) {
+		super(createEventQueue(start), s, true);
+	}
+
+	/**
+	 * Constructor for a process starting at time zero.
+	 *
+	 * @param s the state of the agent
+	 */
+	public ProcessAgent(S s) {
+		this(s, Time.ZERO);
+	}
+
+	private static EventQueue<Signal> createEventQueue(Time start) {
+		final EventQueue<Signal> result = new HeapEventQueue<>();
+		result.enqueue(Signal.RESUME, start);
+		return result;
+	}
+
+	/**
+	 * Implements the behavior of the agent as sequential process.
+	 * <p>
+	 * The process is started at the first activation of the agent. The agent
+	 * will not be activated anymore after the process has returned.
+	 */
+	protected abstract void process();
+
+	/**
+	 * Hands over control to the process and returns when the process waits
+	 * again.
+	 */
+	@Override
+	public final Time doEvent(Time time) {
+		now = time;
+		boolean due = false;
+		while (!getEventQueue().isEmpty() && (getEventQueue().getMin().compareTo(time) <= 0)) {
+			getEventQueue().dequeue();
+			due = true;
+		}
+		if (isResumable(due)) {
+			if (thread == null) thread = Thread.ofVirtual().name(getFullName()).start(this::run);
+			else processPermit.release();
+			simulatorPermit.acquireUninterruptibly();
+			if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+			if (failure instanceof Error) throw (Error) failure;
+		}
+		return getTimeOfNextEvent();
+	}
+
+	/**
+	 * Returns the current simulation time, to be called by the process.
+	 *
+	 * @return the time of the current activation
+	 */
+	protected final Time getCurrentTime() {
+		return now;
+	}
+
+	/**
+	 * Suspends the process for the given duration.
+	 *
+	 * @param duration the time to wait
+	 */
+	protected final void hold(Time duration) {
+		getEventQueue().enqueue(Signal.RESUME, now.add(duration));
+		suspend(Wait.HOLD);
+	}
+
+	/**
+	 * Suspends the process until there is a message at the inport.
+	 * <p>
+	 * Returns immediately if there already is a message. The message is not
+	 * removed from the inport.
+	 */
+	protected final void waitForMessage() {
+		if (getInport().hasMessages()) return;
+		suspend(Wait.MESSAGE);
+	}
+
+	/**
+	 * Suspends the process until the given condition is met.
+	 * <p>
+	 * The condition is evaluated each time the agent is activated. Returns
+	 * immediately if the condition is already met.
+	 * <p>
+	 * Note: In the discrete event simulators, the waiting agent has no next
+	 * event, so it is only activated by incoming messages. A condition that
+	 * becomes true by other means, e.g. by the change of another agent's state,
+	 * is not noticed until the next message arrives. In this case, the
+	 * condition should be polled with {@link #hold(Time)} instead. In the
+	 * time-step simulators, the condition is checked in each step unless the
+	 * agent is idle.
+	 *
+	 * @param value the condition to wait for
+	 */
+	protected final void waitUntil(BooleanSupplier value) {
+		if (value.getAsBoolean()) return;
+		condition = value;
+		suspend(Wait.CONDITION);
+		condition = null;
+	}
+
+	/**
+	 * Terminates the process and its virtual thread.
+	 * <p>
+	 * The agent will not be activated anymore. Called by the simulator at the end
+	 * of a simulation run.
+	 */
+	public final void stopProcess() {
+		if ((thread != null) && (waiting != Wait.FINISHED)) {
+			thread.interrupt();
+			simulatorPermit.acquireUninterruptibly();
+		} else waiting = Wait.FINISHED;
+		while (!getEventQueue().isEmpty()) getEventQueue().dequeue();
+	}
+
+	/**
+	 * Checks if the process can continue at the current activation.
+	 */
+	private boolean isResumable(boolean due) {
+		switch (waiting) {
+		case START:
+		case HOLD:
+			return due;
+		case MESSAGE:
+			return getInport().hasMessages();
+		case CONDITION:
+			return condition.getAsBoolean();
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Hands control back to the simulator and blocks until resumed.
+	 */
+	private void suspend(Wait reason) {
+		waiting = reason;
+		simulatorPermit.release();
+		try {
+			processPermit.acquire();
+		} catch (final InterruptedException exception) {
+			throw new ProcessTermination();
+		}
+	}
+
+	/**
+	 * Serializes the agent if its process is not running, since the stack of a
+	 * thread cannot be saved.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if ((thread != null) && (waiting != Wait.FINISHED))
+			throw new NotSerializableException("Process of agent " + getFullName() + " is running");
+		out.defaultWriteObject();
+	}
+
+	private void run() {
+		try {
+			process();
+		} catch (final ProcessTermination termination) {
+			// process was stopped
+		} catch (final Throwable throwable) {
+			failure = throwable;
+		} finally {
+			waiting = Wait.FINISHED;
+			while (!getEventQueue().isEmpty()) getEventQueue().dequeue();
+			simulatorPermit.release();
+		}
+	}
+
+}
@@ -24,6 +24,8 @@ import org.simplesim.core.scheduling.EventQueue;
  */
 public abstract class RoutingAgent<S extends State, E> extends BasicAgent<S, E> {
 
+	private static final long serialVersionUID=1L;
+
 	public RoutingAgent(EventQueue<E> queue, S s) {
 		super(queue,s);
 		setOutport(new SinglePort(this));
@@ -5,7 +5,9 @@
  */
 package org.simplesim.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.NoSuchElementException;
 
@@ -32,6 +34,8 @@ import org.simplesim.core.messaging.SinglePort;
  */
 public abstract class RoutingDomain extends BasicDomain {
 
+	private static final long serialVersionUID=1L;
+
 	/**
 	 * Port for automatic message routing.
 	 * <p>
@@ -50,6 +54,8 @@ public abstract class RoutingDomain extends BasicDomain {
 	 */
 	protected final class RoutingPort extends AbstractPort {
 
+		private static final long serialVersionUID=1L;
+
 		public RoutingPort(ModelEntity parent) {
 			super(parent);
 		}
@@ -88,6 +94,17 @@ public abstract class RoutingDomain extends BasicDomain {
 			return containsEntity(port.getParent());
 		}
 
+		/**
+		 * Lists the inports of all entities of the domain, since messages are
+		 * routed to them implicitly.
+		 */
+		@Override
+		public Collection<Port> listConnections() {
+			final Collection<Port> result=new ArrayList<>();
+			for (final ModelEntity entity : listDomainEntities()) result.add(entity.getInport());
+			return Collections.unmodifiableCollection(result);
+		}
+
 	}
 
 	public RoutingDomain() {
@@ -140,6 +157,7 @@ public abstract class RoutingDomain extends BasicDomain {
 		final int start=listDomainEntities().indexOf(entity);
 		if (start==-1) throw new NoSuchElementException("Entity not part of parent domain: "+entity.getFullName());
 		entity.getOutport().disconnect(getOutport()); // remove connection towards domain root
+		getIndexRoot().removeFromIndex(entity);
 		entity.setParent(null);
 		getModifiableEntityList().remove(start);
 		for (int index=start; index<countDomainEntities(); index++) {
@@ -0,0 +1,210 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors:
+ * 	- Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.model;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.simplesim.core.dynamic.ChangeRequest;
+
+/**
+ * Runtime environment of a single simulation.
+ * <p>
+ * Each simulator owns a context and attaches it to the root domain of its
+ * model, so all entities of the model can reach it via
+ * {@link BasicModelEntity#getSimulationContext()}. The context contains:
+ * <ul>
+ * <li>the queue of model change requests, processed by a dynamic simulator
+ * <li>the flag indicating a running simulation
+ * <li>the seed and reproducible random number streams
+ * <li>named counters as simple metrics of a simulation run
+ * </ul>
+ * Since nothing is shared between contexts, several simulations can run
+ * independently within the same JVM, e.g. replications of an experiment.
+ * Entities not attached to a simulator use a default context shared by the
+ * whole JVM.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see org.simplesim.simulator.Simulator#getSimulationContext()
+ */
+public final class SimulationContext {
+
+	/** the context of all entities without a simulator */
+	private static final SimulationContext DEFAULT_CONTEXT=new SimulationContext();
+
+	/** increment of the SplitMix64 generator, used to derive stream seeds */
+	private static final long GOLDEN_GAMMA=0x9E3779B97F4A7C15L;
+
+	/** queue for model change requests, only used by dynamic simulators */
+	private final Queue<ChangeRequest> changeRequests=new ConcurrentLinkedQueue<>();
+
+	/** counters of the current simulation */
+	private final Map<String, LongAdder> counters=new ConcurrentHashMap<>();
+
+	/** flag to indicate if the simulation is running */
+	private volatile boolean running=false;
+
+	private volatile long seed;
+
+	/**
+	 * Constructs a context with a seed of zero.
+	 */
+	public SimulationContext() {
+		this(0);
+	}
+
+	/**
+	 * Constructs a context with the given seed for its random number streams.
+	 *
+	 * @param value the seed
+	 */
+	public SimulationContext(long value) {
+		seed=value;
+	}
+
+	/**
+	 * Returns the context shared by all entities not attached to a simulator.
+	 *
+	 * @return the default context
+	 */
+	public static SimulationContext getDefault() {
+		return DEFAULT_CONTEXT;
+	}
+
+	/**
+	 * Adds a model change request to the queue.
+	 * <p>
+	 * Change requests are processed by a dynamic simulator after each
+	 * simulation cycle.
+	 *
+	 * @param cr the request
+	 */
+	public void pushModelChangeRequest(ChangeRequest cr) {
+		changeRequests.add(cr);
+	}
+
+	/**
+	 * Checks if there are any change requests.
+	 *
+	 * @return true if there are model change requests
+	 */
+	public boolean hasModelChangeRequest() {
+		return !changeRequests.isEmpty();
+	}
+
+	/**
+	 * Removes the first model change request of the queue.
+	 *
+	 * @return next model change request or null if the queue is empty
+	 */
+	public ChangeRequest pollModelChangeRequest() {
+		return changeRequests.poll();
+	}
+
+	/**
+	 * Sets the status of the simulation run.
+	 *
+	 * @param value the status of the simulation, {@code true} means simulation
+	 *              is running
+	 */
+	public void setRunning(boolean value) {
+		running=value;
+	}
+
+	/**
+	 * Gets the status of the simulation run.
+	 *
+	 * @return current simulation status, {@code true} means simulation is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Sets the seed of all random number streams created afterwards.
+	 *
+	 * @param value the new seed
+	 */
+	public void setSeed(long value) {
+		seed=value;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Creates a new random number stream.
+	 * <p>
+	 * The seed of the stream is derived from the context's seed and the given
+	 * index, so each index gives a reproducible stream independent of the
+	 * order of creation and of thread scheduling. The generator is not
+	 * thread-safe, so each agent or thread should use its own stream, e.g. by
+	 * using the agent's index as stream index.
+	 *
+	 * @param index the index of the stream
+	 * @return a new random number generator
+	 */
+	public SplittableRandom createRandomStream(long index) {
+		return new SplittableRandom(mix(seed+(GOLDEN_GAMMA*(index+1))));
+	}
+
+	/**
+	 * Gets a counter by its name, creating it if necessary.
+	 *
+	 * @param name the name of the counter
+	 * @return the counter
+	 */
+	public LongAdder getCounter(String name) {
+		return counters.computeIfAbsent(name,key -> new LongAdder());
+	}
+
+	/**
+	 * Returns the current values of all counters.
+	 *
+	 * @return snapshot of the counters sorted by name
+	 */
+	public Map<String, Long> getMetrics() {
+		final Map<String, Long> result=new TreeMap<>();
+		for (final Map.Entry<String, LongAdder> entry : counters.entrySet())
+			result.put(entry.getKey(),entry.getValue().sum());
+		return result;
+	}
+
+	/**
+	 * Removes all counters.
+	 */
+	public void resetMetrics() {
+		counters.clear();
+	}
+
+	/**
+	 * Finalizer of the SplitMix64 generator, scrambling all bits of a seed.
+	 * <p>
+	 * Consecutive values give statistically independent seeds.
+	 *
+	 * @param value the value to scramble
+	 * @return the scrambled value
+	 */
+	public static long mix(long value) {
+		long result=(value^(value>>>30))*0xBF58476D1CE4E5B9L;
+		result=(result^(result>>>27))*0x94D049BB133111EBL;
+		return result^(result>>>31);
+	}
+
+}
@@ -5,11 +5,14 @@
  */
 package org.simplesim.model;
 
+import java.io.Serializable;
+
 /**
  * The state contains the internal information of an {@code AbstractAgent}.
  * <p>
  * Marker interface. A state serves to decouple logic and data. It should bundle all necessary information of an agent. It should support
- * persistence in a way that the complete model state is saved when all states are saved.
+ * persistence in a way that the complete model state is saved when all states are saved. Thus, states are
+ * serializable and all their fields have to be serializable or transient.
  * <p>
  * An implementing class should only contain variables, getter and setter methods - no other methods or logic functions.
  * <p>
@@ -18,6 +21,25 @@ package org.simplesim.model;
  * <p>
  * Note: a state can also be used by domains or other classes to bundle variables and facilitate persistence.
  */
-public interface State {
+public interface State extends Serializable {
+
+	/**
+	 * Returns a copy of this state.
+	 * <p>
+	 * Optimistic simulators like the {@code TimeWarpSimulator} save the state of
+	 * an agent before each event to be able to roll it back. The copy must not
+	 * share any mutable data with this state, immutable parts may be shared.
+	 * <p>
+	 * The default implementation copies the state by serialization. Model
+	 * entities and ports referenced by the state are shared and not copied. Since
+	 * a state is copied before each event, states should override this method
+	 * with a plain field by field copy to speed up optimistic simulation.
+	 *
+	 * @return an independent copy of this state
+	 * @exception UnsupportedOperationException if the state cannot be copied
+	 */
+	default State copy() {
+		return StateCopier.copy(this);
+	}
 
 }
@@ -0,0 +1,103 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy way. This software is published as open
+ * source and licensed under the terms of GNU GPLv3. Contributors: - Rene Kuhlemann - development and initial
+ * implementation
+ */
+package org.simplesim.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simplesim.core.messaging.Port;
+
+/**
+ * Deep copy of a state by serialization, used as default of {@link State#copy()}
+ * <p>
+ * Model entities and ports referenced by the state are not part of the state,
+ * so they are shared by the original and the copy instead of being copied.
+ */
+final class StateCopier {
+
+	/** placeholder for a model entity or port in the serialized state */
+	private static final class SharedReference implements Serializable {
+
+		private static final long serialVersionUID=1L;
+
+		private final int index;
+
+		SharedReference(int value) {
+			index=value;
+		}
+
+	}
+
+	private static final class SharingOutputStream extends ObjectOutputStream {
+
+		private final List<Object> shared;
+
+		SharingOutputStream(OutputStream out, List<Object> list) throws IOException {
+			super(out);
+			shared=list;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			if (!(obj instanceof ModelEntity)&&!(obj instanceof Port)) return obj;
+			shared.add(obj);
+			return new SharedReference(shared.size()-1);
+		}
+
+	}
+
+	private static final class SharingInputStream extends ObjectInputStream {
+
+		private final List<Object> shared;
+
+		SharingInputStream(InputStream in, List<Object> list) throws IOException {
+			super(in);
+			shared=list;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) {
+			if (obj instanceof SharedReference) return shared.get(((SharedReference) obj).index);
+			return obj;
+		}
+
+	}
+
+	private StateCopier() {}
+
+	/**
+	 * Copies a state by serializing and deserializing it.
+	 *
+	 * @param state the state to copy
+	 * @return an independent copy of the state
+	 * @exception UnsupportedOperationException if the state is not serializable
+	 */
+	static State copy(State state) {
+		final List<Object> shared=new ArrayList<>();
+		final ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		try {
+			try (ObjectOutputStream out=new SharingOutputStream(bytes,shared)) {
+				out.writeObject(state);
+			}
+			try (ObjectInputStream in=new SharingInputStream(new ByteArrayInputStream(bytes.toByteArray()),shared)) {
+				return (State) in.readObject();
+			}
+		} catch (IOException|ClassNotFoundException exception) {
+			throw new UnsupportedOperationException("State "+state.getClass().getName()+" cannot be copied",exception);
+		}
+	}
+
+}
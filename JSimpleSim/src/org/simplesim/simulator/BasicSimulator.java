@@ -10,14 +10,25 @@
  */
 package org.simplesim.simulator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.simplesim.core.instrumentation.Listener;
 import org.simplesim.core.instrumentation.ListenerSupport;
 import org.simplesim.core.messaging.MessageForwardingStrategy;
 import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.Agent;
 import org.simplesim.model.BasicDomain;
 import org.simplesim.model.Domain;
+import org.simplesim.model.ProcessAgent;
+import org.simplesim.model.SimulationContext;
 
 /**
  * Implements the core functionality of a simulator.
@@ -26,20 +37,48 @@ import org.simplesim.model.Domain;
 public abstract class BasicSimulator implements Simulator {
 
 	// top node of the simulation model
-	private final Domain rootDomain;
+	private final BasicDomain rootDomain;
+
+	// current simulation time in ticks
+	private long simTicks = 0;
 
-	// current simulation time
+	// current simulation time as object, created lazily if simulation time was set in ticks
 	private Time simTime = Time.ZERO;
 
-	// the global event queue of the simulation
-	private final EventQueue<Agent> geq;
+	// the global event queue of the simulation, replaced when resuming from a checkpoint
+	private EventQueue<Agent> geq;
+
+	// the global event queue if it supports primitive time stamps, null otherwise
+	private TickEventQueue<Agent> tgeq;
 
 	// the strategy used to forward messages during a simulation run
 	private final MessageForwardingStrategy mfs;
 
+	// runtime environment of this simulation, attached to the root domain
+	private SimulationContext context = new SimulationContext();
+
 	// listeners to notify after all agents of a cycle have been processed
 	private final ListenerSupport<Simulator> eventsProcessedListeners = new ListenerSupport<>();
 
+	// agents to wake after message forwarding, reused in each cycle
+	private final Collection<Agent> receivers = new LinkedHashSet<>();
+
+	// receivers to reschedule in the global event queue, reused in each cycle
+	private final List<Agent> woken = new ArrayList<>();
+
+	// executor of concurrent simulators, null if a new pool is created for each run
+	private ExecutorService executor = null;
+
+	// pool shared by all simulators, created lazily
+	private static ExecutorService sharedExecutor = null;
+
+	// checkpoint to continue the next simulation run from, null to start a new run
+	private Checkpoint checkpoint = null;
+
+	// agents added to or removed from the model in the last cycle, reused in each cycle
+	private final List<Agent> addedAgents = new ArrayList<>();
+	private final List<Agent> removedAgents = new ArrayList<>();
+
 	/**
 	 * Constructs a new simulator with given model, queue implementation and
 	 * messaging strategy
@@ -48,38 +87,208 @@ public abstract class BasicSimulator implements Simulator {
 	 * @param queue      the queue implementation to use as global event queue
 	 * @param forwarding the strategy to use for message forwarding
 	 */
+	@SuppressWarnings("unchecked")
 	public BasicSimulator(BasicDomain root, EventQueue<Agent> queue, MessageForwardingStrategy forwarding) {
 		rootDomain = root;
 		geq = queue;
+		tgeq = queue instanceof TickEventQueue ? (TickEventQueue<Agent>) queue : null;
 		mfs = forwarding;
+		root.setSimulationContext(context);
+		root.setAgentChangeTracking(false);
 	}
 
 	/**
 	 * Builds the global event queue by querying the local event queues of all
 	 * agents within the root model
+	 * <p>
+	 * All agents are enqueued at once, so the queue may use an efficient bulk
+	 * operation. When resuming from a checkpoint, the saved global event queue
+	 * is used instead if it is of the same type, so the simulation continues
+	 * exactly as saved.
+	 * <p>
+	 * Afterwards, agents added to or removed from the model are tracked, so they
+	 * are integrated into the queue after each cycle.
+	 *
+	 * @see #integrateModelChanges()
 	 */
+	@SuppressWarnings("unchecked")
 	protected void initGlobalEventQueue() {
-		for (Agent agent : getRootDomain().listAllAgents(true)) {
+		rootDomain.setAgentChangeTracking(true);
+		final Checkpoint resumed = pollCheckpoint();
+		final EventQueue<Agent> saved = resumed == null ? null : resumed.getEventQueue();
+		if ((saved != null) && (saved.getClass() == geq.getClass()) && geq.isEmpty()) {
+			geq = saved;
+			tgeq = saved instanceof TickEventQueue ? (TickEventQueue<Agent>) saved : null;
+			return;
+		}
+		enqueueAgents(listModelAgents(), Long.MIN_VALUE);
+		if (saved != null) restoreWakeUps(saved);
+	}
+
+	/**
+	 * Enqueues the given agents at their time of next event in the global event
+	 * queue, using a bulk operation of the queue.
+	 *
+	 * @param agents   the agents to enqueue
+	 * @param earliest the earliest valid time of next event in ticks
+	 * @exception Simulator.InvalidSimulatorStateException if an agent has no
+	 *                                                     valid time of next
+	 *                                                     event
+	 */
+	private void enqueueAgents(Collection<Agent> agents, long earliest) {
+		if (tgeq != null) tgeq.enqueueAllTicks(agents, (Agent agent) -> {
+			final long tone = agent.getTicksOfNextEvent();
+			if (tone == TickEventQueue.UNDEFINED)
+				throw new Simulator.InvalidSimulatorStateException(
+						"Local event queue empty in agent " + agent.getFullName());
+			if (tone < earliest) throw new Simulator.InvalidSimulatorStateException("Tone "
+					+ new Time(tone).toString() + " is before current simulation time in agent " + agent.getFullName());
+			return tone;
+		});
+		else geq.enqueueAll(agents, (Agent agent) -> {
 			final Time tone = agent.getTimeOfNextEvent();
 			if (tone == null)
 				throw new Simulator.InvalidSimulatorStateException(
 						"Local event queue empty in agent " + agent.getFullName());
-			getGlobalEventQueue().enqueue(agent,tone);
+			if (tone.getTicks() < earliest) throw new Simulator.InvalidSimulatorStateException(
+					"Tone " + tone.toString() + " is before current simulation time in agent " + agent.getFullName());
+			return tone;
+		});
+	}
+
+	/**
+	 * Integrates agents added to or removed from the model since the last cycle
+	 * into the global event queue.
+	 * <p>
+	 * Removed agents are dequeued at once by
+	 * {@link EventQueue#dequeueEvents(Collection)}, so the cost depends on the
+	 * queue implementation: O(k log n) for k agents and an
+	 * {@link org.simplesim.core.scheduling.IndexedHeapEventQueue}, a single
+	 * linear pass for the default
+	 * {@link org.simplesim.core.scheduling.LadderEventQueue} instead of a linear
+	 * search per agent.
+	 * Added agents are enqueued at their time of next event in one bulk
+	 * operation. Agents moved within the model stay in the queue. Only done if
+	 * the global event queue was initialized by
+	 * {@link #initGlobalEventQueue()}, so simulators using other queues are not
+	 * affected.
+	 */
+	protected void integrateModelChanges() {
+		if (!rootDomain.hasAgentChanges()) return;
+		addedAgents.clear();
+		removedAgents.clear();
+		rootDomain.pollAgentChanges(addedAgents, removedAgents);
+		if (!removedAgents.isEmpty()) geq.dequeueEvents(removedAgents);
+		if (!addedAgents.isEmpty()) enqueueAgents(addedAgents, getSimulationTicks());
+	}
+
+	/**
+	 * Reschedules all agents that were woken by messages before a checkpoint was
+	 * saved, i.e. agents scheduled earlier in the saved global event queue than
+	 * at their time of next event. Only needed if the saved queue cannot be used
+	 * directly.
+	 *
+	 * @param saved the global event queue of the checkpoint, emptied by this
+	 *              method
+	 */
+	private void restoreWakeUps(EventQueue<Agent> saved) {
+		final List<Agent> agents = new ArrayList<>();
+		while (!saved.isEmpty()) {
+			final Time time = saved.getMin();
+			agents.clear();
+			saved.drainMin(agents);
+			for (final Agent agent : agents)
+				if (agent.getTimeOfNextEvent().compareTo(time) > 0) geq.reschedule(agent, time);
 		}
 	}
 
+	/**
+	 * Continues the simulation from a checkpoint in the next simulation run.
+	 * <p>
+	 * The seed and the metrics of the checkpoint are copied to the simulation
+	 * context. Discrete event simulators continue with the saved global event
+	 * queue, time step simulators with the step after the checkpoint. The
+	 * checkpoint is used by the next simulation run only.
+	 *
+	 * @param value the checkpoint containing the model of this simulator
+	 * @exception IllegalArgumentException if the checkpoint does not contain the
+	 *                                     root domain of this simulator
+	 */
+	public void resumeFrom(Checkpoint value) {
+		if (value.getRootDomain() != rootDomain)
+			throw new IllegalArgumentException("Checkpoint does not contain the model of this simulator");
+		checkpoint = value;
+		context.setSeed(value.getSeed());
+		context.resetMetrics();
+		for (final Map.Entry<String, Long> entry : value.getMetrics().entrySet())
+			context.getCounter(entry.getKey()).add(entry.getValue());
+	}
+
+	/**
+	 * Returns the checkpoint to continue from and clears it, so it is only used
+	 * by the next simulation run.
+	 *
+	 * @return the checkpoint or {@code null} if a new simulation is started
+	 */
+	protected Checkpoint pollCheckpoint() {
+		final Checkpoint result = checkpoint;
+		checkpoint = null;
+		return result;
+	}
+
 	@Override
 	public Domain getRootDomain() {
 		return rootDomain;
 	}
 
+	/**
+	 * Returns all agents of the model without copying them.
+	 *
+	 * @return read-only view of the root domain's agent index
+	 * @see BasicDomain#viewAllAgents()
+	 */
+	protected List<Agent> listModelAgents() {
+		return rootDomain.viewAllAgents();
+	}
+
+	@Override
+	public SimulationContext getSimulationContext() {
+		return context;
+	}
+
+	@Override
+	public void setSimulationContext(SimulationContext value) {
+		context = value;
+		rootDomain.setSimulationContext(value);
+	}
+
 	@Override
 	public Time getSimulationTime() {
+		if (simTime == null) simTime = new Time(simTicks);
 		return simTime;
 	}
 
+	@Override
+	public long getSimulationTicks() {
+		return simTicks;
+	}
+
 	protected void setSimulationTime(Time time) {
 		simTime = time;
+		simTicks = time.getTicks();
+	}
+
+	/**
+	 * Sets the simulation time in ticks.
+	 * <p>
+	 * A {@code Time} object is only created if {@link #getSimulationTime()} is
+	 * called afterwards.
+	 *
+	 * @param ticks the new simulation time in ticks
+	 */
+	protected void setSimulationTicks(long ticks) {
+		if (ticks != simTicks) simTime = null;
+		simTicks = ticks;
 	}
 
 	@Override
@@ -92,10 +301,58 @@ public abstract class BasicSimulator implements Simulator {
 		eventsProcessedListeners.unregisterListener(listener);
 	}
 
+	/**
+	 * Notifies the listeners after a simulation cycle and integrates the model
+	 * changes done by them.
+	 */
 	protected void callEventsProcessedHook() {
 		eventsProcessedListeners.notifyListeners(this);
+		integrateModelChanges();
 	}
 	
+	/**
+	 * Forwards the messages of the given agents and wakes the receivers.
+	 * <p>
+	 * Receivers waking on messages are rescheduled in the global event queue to
+	 * the given time if their next event is later. Thus, they are activated in
+	 * the next cycle at the same simulation time, with the messages available at
+	 * their inports. All woken receivers are rescheduled at once, as removing
+	 * single events is costly for some queues.
+	 *
+	 * @param senders the agents of the current cycle
+	 * @param time    the time of the current cycle
+	 * @see Agent#isWakeOnMessage()
+	 */
+	protected void forwardMessages(List<Agent> senders, Time time) {
+		receivers.clear();
+		mfs.forwardMessages(senders, receivers);
+		woken.clear();
+		for (final Agent agent : receivers) if (agent.getTimeOfNextEvent().compareTo(time) > 0) woken.add(agent);
+		if (woken.isEmpty()) return;
+		geq.dequeueEvents(woken);
+		geq.enqueueAll(woken, (Agent agent) -> time);
+	}
+
+	/**
+	 * Tick-based variant of {@link #forwardMessages(List, Time)}.
+	 *
+	 * @param senders the agents of the current cycle
+	 * @param ticks   the time of the current cycle in ticks
+	 */
+	protected void forwardMessages(List<Agent> senders, long ticks) {
+		receivers.clear();
+		mfs.forwardMessages(senders, receivers);
+		woken.clear();
+		for (final Agent agent : receivers) if (agent.getTicksOfNextEvent() > ticks) woken.add(agent);
+		if (woken.isEmpty()) return;
+		geq.dequeueEvents(woken);
+		if (tgeq != null) tgeq.enqueueAllTicks(woken, (Agent agent) -> ticks);
+		else {
+			final Time time = new Time(ticks);
+			geq.enqueueAll(woken, (Agent agent) -> time);
+		}
+	}
+
 	protected MessageForwardingStrategy getMessageForwardingStrategy() {
 		return mfs;
 	}
@@ -104,4 +361,143 @@ public abstract class BasicSimulator implements Simulator {
 		return geq;
 	}
 
+	/**
+	 * Returns the queue to save with a checkpoint.
+	 * <p>
+	 * By default, this is the global event queue containing all agents.
+	 * Simulators partitioning the model return {@code null}, so a resumed
+	 * simulation reschedules all agents from their local event queues.
+	 *
+	 * @return the global event queue or {@code null} if it is not complete
+	 */
+	protected EventQueue<Agent> getCheckpointQueue() {
+		return geq;
+	}
+
+	/**
+	 * Sets the executor used by concurrent simulators to call the agents.
+	 * <p>
+	 * By default, concurrent simulators create a work stealing pool for each
+	 * simulation run and shut it down afterwards. A given executor is reused for
+	 * all runs and is never shut down by the simulator. Sequential simulators
+	 * ignore the executor.
+	 *
+	 * @param value the executor to use or {@code null} to create a new pool for
+	 *              each run
+	 * @see #virtualThreadExecutor()
+	 * @see #sharedExecutor()
+	 */
+	public void setExecutor(ExecutorService value) {
+		executor = value;
+	}
+
+	/**
+	 * Gets the executor set by {@link #setExecutor(ExecutorService)}.
+	 *
+	 * @return the executor or {@code null} if none was set
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Returns the executor to use for a simulation run.
+	 *
+	 * @return the executor set or a new work stealing pool
+	 */
+	protected ExecutorService acquireExecutor() {
+		if (executor != null) return executor;
+		return Executors.newWorkStealingPool();
+	}
+
+	/**
+	 * Releases the executor used for a simulation run, shutting it down if it was
+	 * created by {@link #acquireExecutor()}.
+	 *
+	 * @param used the executor returned by {@link #acquireExecutor()}
+	 */
+	protected void releaseExecutor(ExecutorService used) {
+		if (used != executor) used.shutdown();
+	}
+
+	/**
+	 * Stops the processes of all process agents at the end of a simulation run.
+	 * <p>
+	 * A suspended process blocks its virtual thread until the agent is activated
+	 * again, which will not happen after the run. So the threads are terminated
+	 * to release them.
+	 *
+	 * @see ProcessAgent#stopProcess()
+	 */
+	protected void stopProcessAgents() {
+		for (final Agent agent : listModelAgents())
+			if (agent instanceof ProcessAgent) ((ProcessAgent<?>) agent).stopProcess();
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread for each task.
+	 * <p>
+	 * Use this executor if the agents' {@code doEvent} method blocks, e.g.
+	 * because it calls an external model or reads data files. The caller is
+	 * responsible for closing the executor.
+	 *
+	 * @return a new virtual thread per task executor
+	 */
+	public static ExecutorService virtualThreadExecutor() {
+		return Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	/**
+	 * Returns a work stealing pool shared by all simulators.
+	 * <p>
+	 * Use this executor for batch runs calling {@code runSimulation} many times,
+	 * so that the worker threads are not created again for each run. The pool
+	 * uses daemon threads and is never shut down.
+	 *
+	 * @return the shared pool
+	 */
+	public static synchronized ExecutorService sharedExecutor() {
+		if (sharedExecutor == null) sharedExecutor = Executors.newWorkStealingPool();
+		return sharedExecutor;
+	}
+
+	/**
+	 * Gets the global event queue if it supports primitive time stamps.
+	 *
+	 * @return the global event queue or {@code null} if it is no
+	 *         {@link TickEventQueue}
+	 */
+	protected TickEventQueue<Agent> getTickEventQueue() {
+		return tgeq;
+	}
+
+	/**
+	 * Returns the time of the next simulation cycle of a discrete event
+	 * simulation.
+	 * <p>
+	 * The global event queue may become empty, e.g. if all agents have been
+	 * removed from the model. Then, the simulation is done and the stop time is
+	 * returned, so the simulation loop ends.
+	 *
+	 * @param stop the time when the simulation should stop
+	 * @return the minimal time stamp of the global event queue or {@code stop}
+	 *         if the queue is empty
+	 */
+	protected Time getTimeOfNextCycle(Time stop) {
+		return geq.isEmpty() ? stop : geq.getMin();
+	}
+
+	/**
+	 * Returns the time of the next simulation cycle in ticks if the global event
+	 * queue is a {@link TickEventQueue}.
+	 *
+	 * @param stop the time in ticks when the simulation should stop
+	 * @return the minimal time stamp of the global event queue or {@code stop}
+	 *         if the queue is empty
+	 * @see #getTimeOfNextCycle(Time)
+	 */
+	protected long getTicksOfNextCycle(long stop) {
+		return tgeq.isEmpty() ? stop : tgeq.getMinTicks();
+	}
+
 }
@@ -0,0 +1,65 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy way. This software is published as open
+ * source and licensed under the terms of GNU GPLv3. Contributors: - Rene Kuhlemann - development and initial
+ * implementation
+ */
+package org.simplesim.simulator;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.simplesim.core.messaging.AbstractPort;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.model.ModelEntity;
+
+/**
+ * End point collecting the messages of a connection between partitions during
+ * a simulation run
+ * <p>
+ * Parallel simulators redirect connections between partitions to a buffer
+ * port, so that messages can be passed to the receiving partition with a time
+ * stamp. The port has the same parent as the original destination, so that
+ * destination based ports like {@code SwitchPort} can still find it.
+ *
+ * @see ConservativeParallelDESimulator
+ * @see TimeWarpSimulator
+ */
+final class BufferPort extends AbstractPort {
+
+	private static final long serialVersionUID=1L;
+
+	BufferPort(ModelEntity model) {
+		super(model);
+	}
+
+	@Override
+	public void connect(Port target) {
+		throw new ModelEntity.PortConnectionException("Cannot connect a buffer port in "+getParent().getFullName());
+	}
+
+	@Override
+	public void disconnect(Port target) {
+		throw new ModelEntity.PortConnectionException("Cannot disconnect a buffer port in "+getParent().getFullName());
+	}
+
+	@Override
+	public boolean isEndPoint() {
+		return true;
+	}
+
+	@Override
+	public boolean isConnectedTo(Port port) {
+		return false;
+	}
+
+	@Override
+	public Collection<Port> listConnections() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Collection<Port> forwardMessages() {
+		return Collections.emptyList();
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors: - Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.simplesim.core.messaging.AbstractMessage;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.Agent;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.ModelEntity;
+import org.simplesim.model.State;
+
+/**
+ * Snapshot of a simulation run, saved to and loaded from a binary file
+ * <p>
+ * A checkpoint contains the complete model with its domain tree, the agents'
+ * states and local event queues, the port connections and all pending
+ * messages, as well as the global event queue of the simulator and the seed
+ * and metrics of the simulation context. It is written as a stream over a
+ * {@link FileChannel}, so the model is never copied as a whole in memory. The
+ * model is written by {@link BasicDomain#writeModel(java.io.ObjectOutputStream)}
+ * as flat records with a separate table of the port connections, so there is
+ * no deep recursion even for models with millions of agents. All other parts
+ * are written by Java serialization, so the agents' states, events and message
+ * contents have to be serializable. Listeners are not saved. When loading,
+ * only classes of trusted packages and types are accepted.
+ * <p>
+ * A checkpoint may only be saved between two simulation cycles, typically by a
+ * {@link CheckpointListener}. To continue a simulation, load the checkpoint,
+ * create a new simulator with its root domain and call
+ * {@link BasicSimulator#resumeFrom(Checkpoint)} before
+ * {@code runSimulation}. Several branches of a scenario can be started from the
+ * same file, each one loading its own copy of the model.
+ * <p>
+ * Note: Process agents can only be saved before or after their process runs.
+ * The conservative and optimistic parallel simulators ignore the saved global
+ * event queue and continue from the agents' local event queues.
+ */
+public final class Checkpoint {
+
+	/** identifies checkpoint files */
+	private static final int MAGIC=0x4A53494D;
+
+	/** version of the file format */
+	private static final int VERSION=2;
+
+	private static final int BUFFER_SIZE=1<<16;
+
+	/** packages of the framework and value classes of the JDK accepted when loading */
+	private static final String[] ACCEPTED_PACKAGES= { "org.simplesim.","java.lang.","java.util.","java.time.",
+			"java.math." };
+
+	/** types of the model accepted when loading, including subclasses of the application */
+	private static final Class<?>[] ACCEPTED_TYPES= { ModelEntity.class,State.class,Port.class,AbstractMessage.class,
+			EventQueue.class };
+
+	private final BasicDomain root;
+	private final Time time;
+	private final long seed;
+	private final Map<String, Long> metrics;
+	private final EventQueue<Agent> queue;
+
+	private Checkpoint(BasicDomain model, Time when, long value, Map<String, Long> counters, EventQueue<Agent> geq) {
+		root=model;
+		time=when;
+		seed=value;
+		metrics=Collections.unmodifiableMap(counters);
+		queue=geq;
+	}
+
+	/**
+	 * Saves the current state of a simulation.
+	 * <p>
+	 * The file is written to a temporary file first and then moved to the
+	 * given path, so an existing checkpoint is only replaced by a complete one.
+	 * The temporary file is deleted if saving fails.
+	 *
+	 * @param simulator the simulator between two simulation cycles
+	 * @param file      the file to write
+	 * @exception IOException if the file cannot be written or a part of the
+	 *                        model is not serializable
+	 * @exception Simulator.InvalidSimulatorStateException if a simulation cycle
+	 *                                                     is running
+	 */
+	public static void save(BasicSimulator simulator, Path file) throws IOException {
+		if (simulator.getSimulationContext().isRunning()) throw new Simulator.InvalidSimulatorStateException(
+				"Checkpoints can only be saved between simulation cycles");
+		simulator.integrateModelChanges(); // model changes of the last cycle may still be pending
+		final Path temp=file.resolveSibling(file.getFileName()+".tmp");
+		try {
+			try (FileChannel channel=FileChannel.open(temp,StandardOpenOption.CREATE,StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+					ObjectOutputStream out=new ObjectOutputStream(
+							new BufferedOutputStream(Channels.newOutputStream(channel),BUFFER_SIZE))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(simulator.getSimulationTicks());
+				out.writeLong(simulator.getSimulationContext().getSeed());
+				out.writeObject(new TreeMap<>(simulator.getSimulationContext().getMetrics()));
+				((BasicDomain) simulator.getRootDomain()).writeModel(out); // the root of a basic simulator is always a basic domain
+				out.writeObject(simulator.getCheckpointQueue());
+			}
+			Files.move(temp,file,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException|RuntimeException|Error exception) {
+			try { // do not leave an incomplete checkpoint behind
+				Files.deleteIfExists(temp);
+			} catch (final IOException suppressed) {
+				exception.addSuppressed(suppressed);
+			}
+			throw exception;
+		}
+	}
+
+	/**
+	 * Loads a checkpoint.
+	 * <p>
+	 * Only classes of the framework, model entities, states, ports, messages,
+	 * event queues, enums and value classes of the JDK are accepted, any other
+	 * class in the file is rejected.
+	 *
+	 * @param file the file to read
+	 * @return the checkpoint with a new copy of the model
+	 * @exception IOException if the file cannot be read, is no checkpoint or
+	 *                        contains a rejected class
+	 * @see #load(Path, String)
+	 */
+	public static Checkpoint load(Path file) throws IOException {
+		return load(file,null);
+	}
+
+	/**
+	 * Loads a checkpoint, accepting further classes.
+	 * <p>
+	 * Classes used by the model besides those accepted by {@link #load(Path)},
+	 * e.g. event or message content types of an application, have to be
+	 * accepted explicitly. Only use patterns for trusted classes.
+	 *
+	 * @param file    the file to read
+	 * @param pattern additional classes to accept, in the pattern syntax of
+	 *                {@link ObjectInputFilter.Config#createFilter(String)}, e.g.
+	 *                {@code "com.example.model.**"}, may be null
+	 * @return the checkpoint with a new copy of the model
+	 * @exception IOException if the file cannot be read, is no checkpoint or
+	 *                        contains a rejected class
+	 */
+	@SuppressWarnings("unchecked")
+	public static Checkpoint load(Path file, String pattern) throws IOException {
+		try (FileChannel channel=FileChannel.open(file,StandardOpenOption.READ);
+				ObjectInputStream in=new ObjectInputStream(
+						new BufferedInputStream(Channels.newInputStream(channel),BUFFER_SIZE))) {
+			in.setObjectInputFilter(createFilter(pattern));
+			if (in.readInt()!=MAGIC) throw new StreamCorruptedException("No checkpoint: "+file);
+			final int version=in.readInt();
+			if (version!=VERSION) throw new StreamCorruptedException("Unsupported checkpoint version "+version);
+			final Time time=new Time(in.readLong());
+			final long seed=in.readLong();
+			try {
+				final Map<String, Long> metrics=(Map<String, Long>) in.readObject();
+				final BasicDomain root=BasicDomain.readModel(in);
+				final EventQueue<Agent> geq=(EventQueue<Agent>) in.readObject();
+				return new Checkpoint(root,time,seed,metrics,geq);
+			} catch (final ClassNotFoundException exception) {
+				throw new InvalidClassException("Unknown class in checkpoint: "+exception.getMessage());
+			} catch (final ClassCastException exception) {
+				throw new StreamCorruptedException("Invalid checkpoint: "+exception.getMessage());
+			}
+		}
+	}
+
+	public BasicDomain getRootDomain() { return root; }
+
+	/**
+	 * Returns the time of the last simulation cycle before the checkpoint was
+	 * saved.
+	 *
+	 * @return the simulation time of the checkpoint
+	 */
+	public Time getSimulationTime() { return time; }
+
+	public long getSeed() { return seed; }
+
+	/**
+	 * Returns the counters of the simulation context.
+	 *
+	 * @return unmodifiable map of the counters' values by name
+	 */
+	public Map<String, Long> getMetrics() { return metrics; }
+
+	/**
+	 * Returns the global event queue.
+	 *
+	 * @return the global event queue or {@code null} if the simulator had none
+	 */
+	EventQueue<Agent> getEventQueue() { return queue; }
+
+	/**
+	 * Creates the filter accepting the classes of a checkpoint.
+	 *
+	 * @param pattern additional classes to accept or null
+	 * @return the filter rejecting all other classes
+	 */
+	private static ObjectInputFilter createFilter(String pattern) {
+		final ObjectInputFilter additional=pattern==null ? null : ObjectInputFilter.Config.createFilter(pattern);
+		return (ObjectInputFilter.FilterInfo info) -> {
+			Class<?> type=info.serialClass();
+			if (type==null) return ObjectInputFilter.Status.UNDECIDED; // no class, e.g. checking the depth
+			while (type.isArray()) type=type.getComponentType();
+			if (isAccepted(type)) return ObjectInputFilter.Status.ALLOWED;
+			if ((additional!=null)&&(additional.checkInput(info)==ObjectInputFilter.Status.ALLOWED))
+				return ObjectInputFilter.Status.ALLOWED;
+			return ObjectInputFilter.Status.REJECTED;
+		};
+	}
+
+	private static boolean isAccepted(Class<?> type) {
+		if (type.isPrimitive()||Enum.class.isAssignableFrom(type)) return true;
+		final String name=type.getName();
+		if (name.startsWith("java.lang.reflect.")||name.startsWith("java.lang.invoke.")) return false;
+		for (final String prefix : ACCEPTED_PACKAGES) if (name.startsWith(prefix)) return true;
+		for (final Class<?> base : ACCEPTED_TYPES) if (base.isAssignableFrom(type)) return true;
+		return false;
+	}
+
+}
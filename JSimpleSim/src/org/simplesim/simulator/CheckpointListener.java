@@ -0,0 +1,82 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy
+ * way.
+ *
+ * This software is published as open source and licensed under the terms of GNU
+ * GPLv3.
+ *
+ * Contributors: - Rene Kuhlemann - development and initial implementation
+ *
+ */
+package org.simplesim.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.simplesim.core.instrumentation.Listener;
+import org.simplesim.core.scheduling.Time;
+
+/**
+ * Saves a {@link Checkpoint} periodically during a simulation run.
+ * <p>
+ * To be registered as events processed listener of a simulator, e.g.:
+ *
+ * <pre>
+ * simulator.registerEventsProcessedListener(new CheckpointListener(Paths.get("run.chk"),Time.DAY));
+ * </pre>
+ *
+ * The checkpoint is saved after the first simulation cycle at or after each
+ * interval and replaces the previous one, so the file always contains the
+ * latest complete checkpoint. If the simulator is wrapped by a
+ * {@link DynamicDecorator}, the listener has to be registered after creating
+ * the decorator, so model changes are done before saving.
+ */
+public final class CheckpointListener implements Listener<Simulator> {
+
+	private final Path file;
+	private final long interval;
+	private long due=Long.MIN_VALUE; // time of the next checkpoint in ticks, set at the first call
+	private int count=0;
+
+	/**
+	 * Constructs a new listener.
+	 *
+	 * @param path  the file to save the checkpoints to
+	 * @param value the simulation time between two checkpoints
+	 */
+	public CheckpointListener(Path path, Time value) {
+		if (value.getTicks()<=0) throw new IllegalArgumentException("Checkpoint interval must be positive");
+		file=path;
+		interval=value.getTicks();
+	}
+
+	/**
+	 * Saves a checkpoint if the interval has passed.
+	 *
+	 * @exception UncheckedIOException if the checkpoint cannot be saved
+	 */
+	@Override
+	public void notifyListener(Time time, Simulator source) {
+		final long now=source.getSimulationTicks();
+		if (due==Long.MIN_VALUE) due=now+interval;
+		if (now<due) return;
+		try {
+			Checkpoint.save((BasicSimulator) source,file);
+		} catch (final IOException exception) {
+			throw new UncheckedIOException("Cannot save checkpoint "+file,exception);
+		}
+		count++;
+		due=now+interval;
+	}
+
+	/**
+	 * Returns the number of checkpoints saved by this listener.
+	 *
+	 * @return number of checkpoints
+	 */
+	public int getCount() { return count; }
+
+	public Path getFile() { return file; }
+
+}
@@ -6,17 +6,24 @@
 package org.simplesim.simulator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
 
 import org.simplesim.core.messaging.MessageForwardingStrategy;
 import org.simplesim.core.messaging.RecursiveMessageForwarding;
+import org.simplesim.core.scheduling.ConcurrentEventQueue;
 import org.simplesim.core.scheduling.EventQueue;
-import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.LadderEventQueue;
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
-import org.simplesim.model.BasicAgent;
 import org.simplesim.model.BasicDomain;
 import org.simplesim.model.Agent;
 
@@ -27,10 +34,175 @@ import org.simplesim.model.Agent;
  * queue. Then the {@code doEventSim} method of these imminent agents are called
  * in a concurrent mode and with no specific order.
  * <p>
+ * If the global event queue is a {@link ConcurrentEventQueue} (e.g.
+ * {@link org.simplesim.core.scheduling.ConcurrentBucketQueue}), the worker
+ * threads enqueue the agents' next events directly. Otherwise, the next events
+ * are collected and enqueued by the simulator thread.
+ * <p>
+ * Optionally, a lookahead window can be set (similar to the YAWNS protocol).
+ * Then all events in {@code [min, min+window)} are processed in parallel
+ * within the same cycle, each at its own time stamp, followed by a single
+ * message forwarding. This is only valid if the model guarantees that messages
+ * are not needed by their receivers before {@code window} ticks have passed.
+ * The events of a window are processed in rounds: Each round contains every
+ * agent at most once, an agent with further events within the window is
+ * processed again in the next round. So the local time of an agent never
+ * decreases and the messages of all rounds are forwarded once the window is
+ * done. The window never extends beyond the stop time.
+ * <p>
+ * The events of a cycle are not submitted one by one. Small current event
+ * lists are processed by the simulator thread directly, large ones are split
+ * recursively into ranges sized by the measured average cost of an event.
+ * <p>
  * This implementation is especially useful to run DES models.
  */
 public final class ConcurrentDESimulator extends BasicSimulator {
 
+	/** lookahead window in ticks, events within are processed in the same cycle */
+	private final long window;
+
+	/** splits the current event list into tasks, reused in each cycle */
+	private final TaskScheduler scheduler=new TaskScheduler();
+
+	/**
+	 * Executes the events of a cycle with a task granularity adapted to the
+	 * cost of an event
+	 * <p>
+	 * The cost per event is measured in each cycle and smoothed by an
+	 * exponential moving average. If the estimated cost of the whole cycle is
+	 * below {@value #INLINE_NANOS} nanoseconds, the events are executed by the
+	 * calling thread. Otherwise, the index range is split recursively by fork/join
+	 * until a range costs about {@value #TASK_NANOS} nanoseconds. The task
+	 * objects are kept and reinitialized in the next cycle. Other executors, e.g.
+	 * with virtual threads, get one task per range.
+	 */
+	private static final class TaskScheduler {
+
+		/** estimated cost of a cycle below which it is executed by the calling thread */
+		private static final long INLINE_NANOS=50000;
+		/** targeted cost of a task */
+		private static final long TASK_NANOS=100000;
+		/** weight of the latest measurement in the moving average */
+		private static final double ALPHA=0.2d;
+
+		private final List<RangeTask> tasks=new ArrayList<>();
+		private final List<Future<?>> futures=new ArrayList<>(); // only used by other executors
+		private final AtomicInteger used=new AtomicInteger();
+		private final LongAdder busy=new LongAdder(); // nanoseconds spent executing events
+		private double cost=TASK_NANOS; // average nanoseconds per event, assume expensive events in the beginning
+		private IntConsumer action;
+		private int grain; // maximum number of events per task
+
+		/**
+		 * Task executing the events of an index range
+		 */
+		private final class RangeTask extends RecursiveAction {
+
+			private static final long serialVersionUID=1L;
+
+			private int from, to;
+
+			@Override
+			protected void compute() {
+				if ((to-from)<=grain) {
+					run(from,to);
+					return;
+				}
+				final int middle=(from+to)>>>1;
+				invokeAll(getTask(from,middle),getTask(middle,to));
+			}
+
+		}
+
+		/**
+		 * Executes the action for all indices from zero to size and returns
+		 * when all actions are done.
+		 * <p>
+		 * If an action fails, the failure is thrown after all tasks have ended,
+		 * so no task of this round runs on afterwards.
+		 *
+		 * @param executor the executor to use for parallel execution
+		 * @param size     number of events
+		 * @param consumer action to execute for each index
+		 * @throws InterruptedException if interrupted while waiting for the tasks
+		 * @throws ExecutionException   if an event failed with a checked exception
+		 */
+		void execute(ExecutorService executor, int size, IntConsumer consumer)
+				throws InterruptedException, ExecutionException {
+			if (size==0) return;
+			action=consumer;
+			busy.reset();
+			if ((size==1)||((size*cost)<INLINE_NANOS)) run(0,size);
+			else {
+				grain=(int) Math.max(1,Math.min(size,TASK_NANOS/cost));
+				if (executor instanceof ForkJoinPool) {
+					final int count=4*((size/grain)+1); // upper bound of tasks created by splitting
+					while (tasks.size()<count) tasks.add(new RangeTask());
+					used.set(0);
+					try {
+						((ForkJoinPool) executor).invoke(getTask(0,size));
+					} catch (RuntimeException|Error exception) {
+						// forked subtasks may still be running
+						for (int index=0; index<Math.min(used.get(),tasks.size()); index++) tasks.get(index).quietlyJoin();
+						throw exception;
+					}
+				} else try {
+					for (int from=0; from<size; from+=grain) {
+						final int start=from, end=Math.min(size,from+grain);
+						futures.add(executor.submit(() -> run(start,end)));
+					}
+					ExecutionException failure=null;
+					for (final Future<?> future : futures) try {
+						future.get();
+					} catch (final ExecutionException exception) {
+						if (failure==null) failure=exception;
+					}
+					if (failure!=null) throw failure;
+				} finally {
+					futures.clear();
+				}
+			}
+			cost=(ALPHA*busy.sum()/size)+((1-ALPHA)*cost);
+			action=null;
+		}
+
+		private void run(int from, int to) {
+			final long start=System.nanoTime();
+			for (int index=from; index<to; index++) action.accept(index);
+			busy.add(System.nanoTime()-start);
+		}
+
+		private RangeTask getTask(int from, int to) {
+			final RangeTask result=tasks.get(used.getAndIncrement());
+			result.reinitialize();
+			result.from=from;
+			result.to=to;
+			return result;
+		}
+
+	}
+
+	/**
+	 * Constructs a new concurrent simulator with given model, queue
+	 * implementation, messaging strategy and lookahead window
+	 * <p>
+	 * All events with time stamps in {@code [min, min+window)} are processed
+	 * within the same cycle. The model must guarantee that all messages take at
+	 * least {@code window} ticks to be delivered, i.e. a message sent at time
+	 * {@code t} is not needed by events before {@code t+window}.
+	 *
+	 * @param root       the root domain of the model
+	 * @param queue      the queue implementation to use as global event queue
+	 * @param forwarding the strategy to use for message forwarding
+	 * @param lookahead  the lookahead window, a window of one tick or less only
+	 *                   processes events with the same time stamp
+	 */
+	public ConcurrentDESimulator(BasicDomain root, EventQueue<Agent> queue, MessageForwardingStrategy forwarding,
+			Time lookahead) {
+		super(root,queue,forwarding);
+		window=lookahead.getTicks();
+	}
+
 	/**
 	 * Constructs a new concurrent simulator with given model, queue implementation
 	 * and messaging strategy
@@ -40,59 +212,221 @@ public final class ConcurrentDESimulator extends BasicSimulator {
 	 * @param forwarding the strategy to use for message forwarding
 	 */
 	public ConcurrentDESimulator(BasicDomain root, EventQueue<Agent> queue, MessageForwardingStrategy forwarding) {
-		super(root,queue,forwarding);
+		this(root,queue,forwarding,Time.ZERO);
 	}
 
 	/**
 	 * Quick start constructor of a new concurrent discrete-event simulator with a
 	 * given model
 	 * <p>
-	 * Uses {@code RecursiveMessageForwarding} and a {@code HeapEventQueue} as
-	 * default options.
+	 * Uses {@code RecursiveMessageForwarding} and a {@code LadderEventQueue} as
+	 * default options, since the ladder queue scales well with large models.
 	 *
 	 * @param root the root domain of the model
 	 */
 	public ConcurrentDESimulator(BasicDomain root) {
-		this(root,new HeapEventQueue<Agent>(),new RecursiveMessageForwarding());
+		this(root,new LadderEventQueue<Agent>(),new RecursiveMessageForwarding());
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If an agent fails, the run ends and the failure is propagated, a checked
+	 * exception as {@link Simulator.InvalidSimulatorStateException}.
+	 */
 	@Override
 	public void runSimulation(Time stop) {
+		// use a variable thread pool with as many worker threads as cpu cores by default
+		final ExecutorService executor=acquireExecutor();
+		try {
+			if (getTickEventQueue()!=null) runTickSimulation(stop.getTicks(),executor);
+			else runTimeSimulation(stop,executor);
+		} finally {
+			getSimulationContext().setRunning(false);
+			releaseExecutor(executor);
+			stopProcessAgents();
+		}
+	}
+
+	/**
+	 * Simulation loop using {@code Time} objects.
+	 *
+	 * @param stop     simulation time when the simulation should stop
+	 * @param executor the executor of the simulation cycles
+	 */
+	private void runTimeSimulation(Time stop, ExecutorService executor) {
 		initGlobalEventQueue();
-		setSimulationTime(getGlobalEventQueue().getMin());
-		// use a variable thread pool with as many worker threads as cpu cores
-		final ExecutorService executor=Executors.newWorkStealingPool();
-		final List<Future<Time>> futures=new ArrayList<>();
+		setSimulationTime(getTimeOfNextCycle(stop));
+		// worker threads may enqueue the next events directly into a concurrent queue
+		final boolean direct=getGlobalEventQueue() instanceof ConcurrentEventQueue;
+		Time[] tones=new Time[0];
+		final List<Agent> cel=new ArrayList<>(); // cel=current event list of a round, reused in each round
+		final List<Time> times=new ArrayList<>(); // time stamps of the events in the cel
+		final List<Agent> senders=new ArrayList<>(); // agents of all rounds of a cycle
 		while (getSimulationTime().compareTo(stop)<0) {
-			BasicAgent.setSimulationIsRunning(true);
+			getSimulationContext().setRunning(true);
 			// part I: process all current events by calling the agents' doEvent method
-			// and enqueue the next events of the agents
-			List<Agent> cel=getGlobalEventQueue().dequeueAll(); // cel=current event list
-			// start multi-threaded execution
-			for (Agent agent : cel)
-				futures.add(executor.submit(() -> agent.doEventSim(getSimulationTime())));
-			// join threads again and collect results
-			try {
-				for (int index=0; index<futures.size(); index++) {
+			// and enqueue the next events of the agents, until the window is done
+			senders.clear();
+			Time latest=getSimulationTime();
+			final long end=Math.min(getWindowEnd(getSimulationTicks()),stop.getTicks());
+			do {
+				cel.clear();
+				times.clear();
+				do {
+					final Time time=getGlobalEventQueue().getMin();
+					final int count=getGlobalEventQueue().drainMin(cel);
+					for (int index=0; index<count; index++) times.add(time);
+				} while (!getGlobalEventQueue().isEmpty()&&(getGlobalEventQueue().getMin().getTicks()<end));
+				if (tones.length<cel.size()) tones=new Time[cel.size()];
+				final Time[] results=tones;
+				// start multi-threaded execution, results are available after return
+				execute(executor,cel.size(),index -> {
 					final Agent agent=cel.get(index);
-					final Time tone=futures.get(index).get();
-					if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+					final Time time=times.get(index);
+					if (direct) enqueueEvent(agent,agent.doEventSim(time),time);
+					else results[index]=agent.doEventSim(time);
+				});
+				if (!direct) for (int index=0; index<cel.size(); index++)
+					enqueueEvent(cel.get(index),results[index],times.get(index));
+				senders.addAll(cel);
+				if (latest.compareTo(times.get(times.size()-1))<0) latest=times.get(times.size()-1);
+			} while (!getGlobalEventQueue().isEmpty()&&(getGlobalEventQueue().getMin().getTicks()<end));
+			// part II: do the message forwarding, receivers are woken at the latest event of the window
+			forwardMessages(senders,latest);
+			getSimulationContext().setRunning(false);
+			callEventsProcessedHook();
+			final Time next=getTimeOfNextCycle(stop); // stop if all agents have been removed
+			checkCausality(next.getTicks());
+			setSimulationTime(next);
+		}
+	}
+
+	/**
+	 * Executes the events of a round and propagates the failure of an event.
+	 *
+	 * @param executor the executor to use for parallel execution
+	 * @param size     number of events
+	 * @param action   action to execute for each index
+	 * @exception Simulator.InvalidSimulatorStateException if an event failed
+	 *                                                     with a checked
+	 *                                                     exception or the run
+	 *                                                     was interrupted
+	 */
+	private void execute(ExecutorService executor, int size, IntConsumer action) {
+		try {
+			scheduler.execute(executor,size,action);
+		} catch (final ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+			if (exception.getCause() instanceof Error) throw (Error) exception.getCause();
+			throw new Simulator.InvalidSimulatorStateException(exception.getCause().toString());
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new Simulator.InvalidSimulatorStateException("Simulation run interrupted");
+		}
+	}
+
+	/**
+	 * Returns the end of the lookahead window starting at the given time.
+	 *
+	 * @param ticks start of the window
+	 * @return the first tick after the window
+	 */
+	private long getWindowEnd(long ticks) {
+		if (ticks>(Long.MAX_VALUE-window)) return Long.MAX_VALUE;
+		return ticks+window;
+	}
+
+	/**
+	 * Checks that the simulation time does not decrease from one cycle to the
+	 * next.
+	 *
+	 * @param ticks start of the next cycle
+	 */
+	private void checkCausality(long ticks) {
+		if (ticks<getSimulationTicks()) throw new Simulator.InvalidSimulatorStateException(
+				"Next cycle at "+new Time(ticks).toString()+" is before current simulation time "
+				+getSimulationTime().toString());
+	}
+
+	/**
+	 * Checks the agent's time of next event and enqueues it into the global event
+	 * queue.
+	 * <p>
+	 * If the global event queue is a {@link ConcurrentEventQueue}, this method is
+	 * called by the worker threads directly.
+	 *
+	 * @param agent the agent to enqueue
+	 * @param tone  the agent's time of next event
+	 * @param time  the current simulation time
+	 * @return the agent's time of next event
+	 */
+	private Time enqueueEvent(Agent agent, Time tone, Time time) {
+		if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+				"Local event queue is empty in agent "+agent.getFullName());
+		if (tone.compareTo(time)<0) throw new Simulator.InvalidSimulatorStateException(
+				"Tone "+tone.toString()+" is before current simulation time "+time.toString()
+				+" in agent "+agent.getFullName());
+		getGlobalEventQueue().enqueue(agent,tone);
+		return tone;
+	}
+
+	/**
+	 * Simulation loop using primitive time stamps if the global event queue is a
+	 * {@link TickEventQueue}.
+	 * <p>
+	 * The agents' tones are collected in a primitive array, so neither
+	 * {@code Time} objects nor boxed results are created by the simulation cycle
+	 * itself.
+	 *
+	 * @param stop     simulation time in ticks when the simulation should stop
+	 * @param executor the executor of the simulation cycles
+	 */
+	private void runTickSimulation(long stop, ExecutorService executor) {
+		initGlobalEventQueue(); // may replace the queue when resuming from a checkpoint
+		final TickEventQueue<Agent> geq=getTickEventQueue();
+		setSimulationTicks(getTicksOfNextCycle(stop));
+		long[] tones=new long[0];
+		long[] stamps=new long[0]; // time stamps of the events in the cel
+		final List<Agent> cel=new ArrayList<>(); // cel=current event list of a round, reused in each round
+		final List<Agent> senders=new ArrayList<>(); // agents of all rounds of a cycle
+		while (getSimulationTicks()<stop) {
+			getSimulationContext().setRunning(true);
+			senders.clear();
+			long latest=getSimulationTicks();
+			final long end=Math.min(getWindowEnd(getSimulationTicks()),stop);
+			do {
+				cel.clear();
+				do {
+					final long ticks=geq.getMinTicks();
+					final int count=geq.drainMin(cel);
+					if (stamps.length<cel.size()) stamps=Arrays.copyOf(stamps,Math.max(cel.size(),2*stamps.length));
+					Arrays.fill(stamps,cel.size()-count,cel.size(),ticks);
+				} while (!geq.isEmpty()&&(geq.getMinTicks()<end));
+				if (tones.length<cel.size()) tones=new long[cel.size()];
+				final long[] results=tones;
+				final long[] times=stamps;
+				execute(executor,cel.size(),index -> results[index]=cel.get(index).doEventSim(times[index]));
+				for (int index=0; index<cel.size(); index++) {
+					final Agent agent=cel.get(index);
+					final long tone=results[index];
+					if (tone==TickEventQueue.UNDEFINED) throw new Simulator.InvalidSimulatorStateException(
 							"Local event queue is empty in agent "+agent.getFullName());
-					if (tone.compareTo(getSimulationTime())<0) throw new Simulator.InvalidSimulatorStateException(
-							"Tone "+tone.toString()+" is before current simulation time "+getSimulationTime().toString()
-							+" in agent "+agent.getFullName());
-					getGlobalEventQueue().enqueue(agent,tone);}
-			} catch (Exception exception) {
-				exception.printStackTrace();
-			}
-			// part II: do the message forwarding
-			getMessageForwardingStrategy().forwardMessages(cel);
-			BasicAgent.setSimulationIsRunning(false);
-			futures.clear(); // free futures again
+					if (tone<stamps[index]) throw new Simulator.InvalidSimulatorStateException(
+							"Tone "+new Time(tone).toString()+" is before current simulation time "
+							+new Time(stamps[index]).toString()+" in agent "+agent.getFullName());
+					geq.enqueue(agent,tone);
+				}
+				senders.addAll(cel);
+				latest=Math.max(latest,stamps[cel.size()-1]);
+			} while (!geq.isEmpty()&&(geq.getMinTicks()<end));
+			forwardMessages(senders,latest);
+			getSimulationContext().setRunning(false);
 			callEventsProcessedHook();
-			setSimulationTime(getGlobalEventQueue().getMin());
+			final long next=getTicksOfNextCycle(stop); // stop if all agents have been removed
+			checkCausality(next);
+			setSimulationTicks(next);
 		}
-		executor.shutdown();
 	}
 
 }
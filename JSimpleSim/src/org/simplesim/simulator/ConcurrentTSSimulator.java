@@ -11,16 +11,18 @@
 package org.simplesim.simulator;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
 
+import org.simplesim.core.messaging.DirectMessageForwarding;
 import org.simplesim.core.messaging.MessageForwardingStrategy;
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.Agent;
-import org.simplesim.model.BasicAgent;
 import org.simplesim.model.BasicDomain;
 
 /**
@@ -30,13 +32,54 @@ import org.simplesim.model.BasicDomain;
  * {@code doEventSim} method of the agents is called in a concurrent mode and
  * with no specific oder every {@code timeStep}.
  * <p>
+ * By default, a task is submitted to a thread pool for each agent in each time
+ * step. If a number of workers is given, a fixed set of worker threads is used
+ * instead. Each worker owns a static slice of the agent list and all workers
+ * synchronize at a barrier after calling their agents and after forwarding the
+ * messages. If an agent throws an exception, the barriers are terminated, so
+ * all workers leave the simulation loop and the first exception is rethrown. With {@link DirectMessageForwarding}, each worker forwards the
+ * messages of its own slice in parallel, with any other strategy the messages
+ * are forwarded by a single thread. The worker threads are created for each
+ * simulation run and are not taken from the executor of the simulator.
+ * <p>
+ * With activity tracking, the tasks or slices are rebuilt from the active
+ * agents in each time step.
+ * <p>
  * This implementation is especially useful to run cellular automata.
  *
  */
 public final class ConcurrentTSSimulator extends SequentialTSSimulator {
 
-	public ConcurrentTSSimulator(BasicDomain root, MessageForwardingStrategy forwarding) {
+	/** number of persistent worker threads, zero if a task is submitted per agent */
+	private final int workers;
+
+	/** slices of the agent list, one per worker */
+	private final List<List<Agent>> slices = new ArrayList<>();
+
+	/** idle agents receiving messages, one collection per worker */
+	private final List<Collection<Agent>> receivers = new ArrayList<>();
+
+	/** the first exception thrown by a worker */
+	private volatile RuntimeException failure = null;
+
+	private volatile boolean running = false;
+
+	/**
+	 * Constructs a concurrent time-step simulator using persistent worker
+	 * threads
+	 *
+	 * @param root       the root domain of the model
+	 * @param forwarding the strategy to use for message forwarding
+	 * @param count      the number of worker threads, usually the number of cpu
+	 *                   cores
+	 */
+	public ConcurrentTSSimulator(BasicDomain root, MessageForwardingStrategy forwarding, int count) {
 		super(root, forwarding);
+		workers = count;
+	}
+
+	public ConcurrentTSSimulator(BasicDomain root, MessageForwardingStrategy forwarding) {
+		this(root, forwarding, 0);
 	}
 
 	/**
@@ -49,43 +92,207 @@ public final class ConcurrentTSSimulator extends SequentialTSSimulator {
 	 */
 	public ConcurrentTSSimulator(BasicDomain root) {
 		super(root);
+		workers = 0;
 	}
 
 	@Override
 	public void runSimulation(Time stop) {
-		setSimulationTime(Time.ZERO);
+		if (workers > 0) {
+			runWorkers(stop);
+			return;
+		}
+		setSimulationTime(getStartTime());
 		// used a variable thread pool with a maximum of as many worker threads as cpu
 		// cores
-		final ExecutorService executor = Executors.newWorkStealingPool();
-		final List<Callable<?>> tasks = new ArrayList<>();
+		final ExecutorService executor = acquireExecutor();
+		final List<Callable<Object>> tasks = new ArrayList<>();
 		List<Agent> cel = Collections.emptyList(); // cel=current event list
+		final Collection<Agent> woken = new LinkedHashSet<>(); // idle agents receiving messages
+		if (isActivityTracking()) woken.addAll(listWokenAgents());
 		boolean rebuildTaskList = true;
 
 		while (getSimulationTime().compareTo(stop) < 0) {
-			BasicAgent.setSimulationIsRunning(true);
+			getSimulationContext().setRunning(true);
 			// part 0: costly rebuild of list only if there are changes to the model
 			if (rebuildTaskList) {
-				tasks.clear();
-				cel = getRootDomain().listAllAgents(true);
-				for (Agent agent : cel)
-					tasks.add(() -> agent.doEventSim(getSimulationTime()));
+				cel = listAgents();
+				buildTasks(tasks, cel);
 				rebuildTaskList = false;
 			}
+			if (isActivityTracking()) {
+				cel = updateActiveAgents(woken);
+				woken.clear();
+				buildTasks(tasks, cel);
+			}
 			// part I: invoke all agents
 			try {
 				executor.invokeAll(tasks);
 			} catch (Exception exception) {
 				exception.printStackTrace();
 			}
+			final long hint = isAdaptiveStep() ? getStepHint(cel) : Long.MIN_VALUE;
 			// part II: do the message forwarding
-			getMessageForwardingStrategy().forwardMessages(cel);
-			rebuildTaskList = BasicAgent.hasModelChangeRequest();
-			BasicAgent.setSimulationIsRunning(false);
+			forwardMessages(cel, woken);
+			rebuildTaskList = getSimulationContext().hasModelChangeRequest();
+			getSimulationContext().setRunning(false);
 			callEventsProcessedHook();
-			// part III: add the time step
-			setSimulationTime(getSimulationTime().add(getTimeStep()));
+			// part III: add the time step or skip the steps without activity
+			setSimulationTime(getNextStepTime(rebuildTaskList ? Long.MIN_VALUE : hint, stop));
+		}
+		releaseExecutor(executor);
+		stopProcessAgents();
+	}
+
+	/**
+	 * Simulation loop using persistent worker threads, each processing its own
+	 * slice of the agent list.
+	 * <p>
+	 * A time step consists of two phases separated by barriers: first, the
+	 * workers call their agents, then they forward the messages. The step is
+	 * completed by the barrier action of the second barrier, which also
+	 * rebuilds the slices if the model has changed. The barriers are phasers, so
+	 * they can be terminated if a worker or a barrier action fails, releasing all
+	 * workers waiting or still arriving.
+	 *
+	 * @param stop simulation time when the simulation should stop
+	 */
+	private void runWorkers(Time stop) {
+		setSimulationTime(getStartTime());
+		if (getSimulationTime().compareTo(stop) >= 0) return;
+		final boolean parallel = getMessageForwardingStrategy() instanceof DirectMessageForwarding;
+		List<Agent> agents = listAgents();
+		if (isActivityTracking()) agents = updateActiveAgents(listWokenAgents());
+		buildSlices(agents);
+		receivers.clear();
+		for (int index = 0; index < workers; index++) receivers.add(new LinkedHashSet<>());
+		final long[] hints = new long[workers]; // step hint of each slice in adaptive mode
+		failure = null;
+		running = true;
+		// forward messages in a single thread if ports might be shared by several workers
+		final Phaser called = createBarrier(parallel ? null : () -> {
+			for (final List<Agent> slice : slices) forwardMessages(slice, receivers.get(0));
+		});
+		final Phaser forwarded = createBarrier(() -> {
+			final boolean rebuild = getSimulationContext().hasModelChangeRequest();
+			getSimulationContext().setRunning(false);
+			callEventsProcessedHook();
+			long hint = Long.MAX_VALUE;
+			for (final long value : hints) hint = Math.min(hint, value);
+			if (rebuild) hint = Long.MIN_VALUE; // new agents have to be called in the next step
+			setSimulationTime(getNextStepTime(hint, stop));
+			List<Agent> cel = null;
+			if (rebuild) cel = listAgents();
+			if (isActivityTracking()) {
+				cel = updateActiveAgents(collectReceivers());
+				receivers.get(0).clear();
+			}
+			if (cel != null) buildSlices(cel);
+			running = getSimulationTime().compareTo(stop) < 0;
+			getSimulationContext().setRunning(running);
+		});
+		final List<Thread> threads = new ArrayList<>();
+		for (int index = 0; index < workers; index++) {
+			final int worker = index;
+			threads.add(new Thread(() -> {
+				try {
+					while (running) {
+						final List<Agent> slice = slices.get(worker);
+						final Time time = getSimulationTime();
+						for (final Agent agent : slice) agent.doEventSim(time);
+						if (isAdaptiveStep()) hints[worker] = getStepHint(slice);
+						if (called.arriveAndAwaitAdvance() < 0) break; // another worker failed
+						if (parallel) forwardMessages(slice, receivers.get(worker));
+						if (forwarded.arriveAndAwaitAdvance() < 0) break;
+					}
+				} catch (final RuntimeException exception) {
+					abort(exception, called, forwarded);
+				}
+			}, "ConcurrentTSSimulator-"+index));
+		}
+		getSimulationContext().setRunning(true);
+		for (final Thread thread : threads) thread.start();
+		try {
+			for (final Thread thread : threads) thread.join();
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			abort(null, called, forwarded);
+			for (final Thread thread : threads) thread.interrupt();
+		} finally {
+			getSimulationContext().setRunning(false);
+			stopProcessAgents();
 		}
-		executor.shutdown();
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Creates a barrier for all workers.
+	 * <p>
+	 * The action is done by the last arriving worker before the others are
+	 * released. If it throws an exception, the barrier is terminated.
+	 *
+	 * @param action the barrier action or null
+	 * @return a phaser with one party per worker
+	 */
+	private Phaser createBarrier(Runnable action) {
+		return new Phaser(workers) {
+			@Override
+			protected boolean onAdvance(int phase, int parties) {
+				if (action == null) return false;
+				try {
+					action.run();
+					return false;
+				} catch (final RuntimeException exception) {
+					abort(exception);
+					return true;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Stops all workers by terminating the barriers, so workers waiting at a
+	 * barrier or arriving later leave the simulation loop. Only the first
+	 * failure is kept.
+	 *
+	 * @param exception the cause or null if the simulation was interrupted
+	 * @param barriers  the barriers to terminate
+	 */
+	private void abort(RuntimeException exception, Phaser... barriers) {
+		synchronized (this) {
+			if ((failure == null) && (exception != null)) failure = exception;
+		}
+		running = false;
+		for (final Phaser barrier : barriers) barrier.forceTermination();
+	}
+
+	/**
+	 * Splits the list of agents into contiguous slices of equal size, one per
+	 * worker.
+	 */
+	private void buildSlices(List<Agent> cel) {
+		slices.clear();
+		for (int index = 0; index < workers; index++)
+			slices.add(cel.subList((index * cel.size()) / workers, ((index + 1) * cel.size()) / workers));
+	}
+
+	/**
+	 * Merges the receivers collected by all workers into the first collection.
+	 *
+	 * @return the merged receivers
+	 */
+	private Collection<Agent> collectReceivers() {
+		final Collection<Agent> result = receivers.get(0);
+		for (int index = 1; index < workers; index++) {
+			result.addAll(receivers.get(index));
+			receivers.get(index).clear();
+		}
+		return result;
+	}
+
+	private void buildTasks(List<Callable<Object>> tasks, List<Agent> cel) {
+		tasks.clear();
+		for (Agent agent : cel)
+			tasks.add(() -> agent.doEventSim(getSimulationTime()));
 	}
 
 }
@@ -0,0 +1,504 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy way. This software is published as open
+ * source and licensed under the terms of GNU GPLv3. Contributors: - Rene Kuhlemann - development and initial
+ * implementation
+ */
+package org.simplesim.simulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.simplesim.core.messaging.AbstractMessage;
+import org.simplesim.core.messaging.MessageForwardingStrategy;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.core.messaging.RecursiveMessageForwarding;
+import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.LadderEventQueue;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.Agent;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.Domain;
+import org.simplesim.model.ModelEntity;
+
+/**
+ * Conservative parallel simulator for discrete event models
+ * <p>
+ * The model is partitioned into logical processes: each domain directly below
+ * the root domain forms a partition, all agents placed directly in the root
+ * domain form another one. Each logical process has its own event queue and
+ * runs in its own thread. Other than the {@link ConcurrentDESimulator}, a
+ * logical process does not wait for the others to finish a simulation cycle,
+ * but advances independently up to a <i>safe time</i>.
+ * <p>
+ * The safe time is derived from the lookahead of the connections between
+ * partitions, following the algorithm of Chandy, Misra and Bryant. A lookahead
+ * {@code L} declared via {@link #declareLookahead(Port, Port, Time)} states
+ * that a message sent at time {@code t} is not needed by the receiving
+ * partition before {@code t+L}. So it is only visible to events after
+ * {@code t+L}. With a lookahead of zero, this equals the behavior of the
+ * sequential simulator. Instead of sending explicit null messages, each
+ * logical process publishes its clock, i.e. the time of its next event, after
+ * each cycle. A partition may process an event at time {@code T} if
+ * {@code T<=clock+L} holds for all of its incoming connections. The partition
+ * with the least clock can always proceed, so there are no deadlocks.
+ * <p>
+ * Messages crossing partitions are buffered with their time stamp and
+ * delivered to the receiving port as soon as the receiver advances beyond
+ * {@code t+L}. Thereto, the declared connections are redirected to buffering
+ * ports during a simulation run and restored afterwards.
+ * <p>
+ * Note: All connections between different partitions must be declared,
+ * otherwise the simulation run is rejected. The
+ * message forwarding strategy must be stateless and connection based, e.g.
+ * {@link RecursiveMessageForwarding} or
+ * {@link org.simplesim.core.messaging.DirectMessageForwarding}. The model
+ * structure must not change during a simulation run. Since there are no global
+ * simulation cycles, the {@code EventsProcessedListener}s are only notified
+ * once at the end of a run and the simulation time is only updated then.
+ * <p>
+ * This implementation is especially useful for DES models with few
+ * simultaneous events, but a natural partitioning with sufficient lookahead.
+ */
+public final class ConservativeParallelDESimulator extends BasicSimulator {
+
+	private final Supplier<EventQueue<Agent>> queueFactory;
+
+	/** declared connections between partitions */
+	private final List<Channel> channels=new ArrayList<>();
+
+	/** logical processes of the current simulation run */
+	private final List<LogicalProcess> processes=new ArrayList<>();
+
+	/** set if a logical process failed, so that all other processes stop */
+	private volatile boolean aborted=false;
+
+	/**
+	 * Connection between two ports with a declared lookahead
+	 */
+	private static final class Channel {
+
+		private final Port from, to;
+		private final long lookahead;
+		private final Port buffer;
+		private LogicalProcess source, target;
+
+		Channel(Port src, Port dest, long value) {
+			from=src;
+			to=dest;
+			lookahead=value;
+			buffer=new BufferPort(dest.getParent());
+		}
+
+		/**
+		 * Returns the earliest time the receiver needs a message sent at the
+		 * given time.
+		 */
+		long getDeliveryTime(long ticks) {
+			if (ticks>(Long.MAX_VALUE-lookahead)) return Long.MAX_VALUE;
+			return ticks+lookahead;
+		}
+
+	}
+
+	/**
+	 * Messages sent over a channel at the same time
+	 */
+	private static final class Envelope {
+
+		private final Channel channel;
+		private final List<AbstractMessage<?>> messages;
+		private final Time delivery; // time after which the messages are visible to the receiver
+
+		Envelope(Channel c, Collection<AbstractMessage<?>> m, long sent) {
+			channel=c;
+			messages=new ArrayList<>(m);
+			delivery=new Time(c.getDeliveryTime(sent));
+		}
+
+		/**
+		 * Writes the messages to the destination port and forwards them along
+		 * its connections.
+		 */
+		void deliver() {
+			channel.to.writeAll(messages);
+			Collection<Port> sources=Collections.singletonList(channel.to);
+			while (!sources.isEmpty()) {
+				final Collection<Port> destinations=new ArrayList<>();
+				for (final Port port : sources) if (!port.isEndPoint()) destinations.addAll(port.forwardMessages());
+				sources=destinations;
+			}
+		}
+
+	}
+
+	/**
+	 * Partition of the model with its own event queue, running in its own thread
+	 */
+	private final class LogicalProcess implements Runnable {
+
+		private final EventQueue<Agent> queue;
+		private final List<Channel> inputs=new ArrayList<>();
+		private final List<Channel> outputs=new ArrayList<>();
+		private final List<LogicalProcess> successors=new ArrayList<>();
+
+		/** incoming messages, may be added by other logical processes */
+		private final Queue<Envelope> mailbox=new ConcurrentLinkedQueue<>();
+
+		/** incoming messages not yet delivered, sorted by time of delivery */
+		private final EventQueue<Envelope> pending=new HeapEventQueue<>();
+
+		private final List<Agent> cel=new ArrayList<>(); // current event list, reused in each cycle
+
+		private final long stop;
+
+		/** time of the next event, no messages will be sent before */
+		private volatile long clock=Long.MIN_VALUE;
+
+		/** set while waiting for other processes to advance */
+		private volatile boolean waiting=false;
+
+		LogicalProcess(EventQueue<Agent> eq, long end) {
+			queue=eq;
+			stop=end;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!aborted&&(getNextTicks()<stop)) {
+					if (!awaitSafeTime(getNextTicks())) return;
+					final Time time=queue.getMin();
+					deliverMessages(time.getTicks());
+					cel.clear();
+					queue.drainMin(cel);
+					for (final Agent agent : cel) enqueueEvent(agent,agent.doEventSim(time),time);
+					getMessageForwardingStrategy().forwardMessages(cel);
+					sendMessages(time.getTicks());
+					publishClock(getNextTicks());
+				}
+			} catch (final RuntimeException exception) {
+				abort();
+				throw exception;
+			} finally {
+				publishClock(Long.MAX_VALUE); // this process will not send any more messages
+			}
+		}
+
+		private void enqueueEvent(Agent agent, Time tone, Time time) {
+			if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+					"Local event queue is empty in agent "+agent.getFullName());
+			if (tone.compareTo(time)<0) throw new Simulator.InvalidSimulatorStateException(
+					"Tone "+tone.toString()+" is before current simulation time "+time.toString()
+							+" in agent "+agent.getFullName());
+			queue.enqueue(agent,tone);
+		}
+
+		long getNextTicks() {
+			if (queue.isEmpty()) return Long.MAX_VALUE;
+			return queue.getMin().getTicks();
+		}
+
+		/**
+		 * Returns the latest time up to which events can be processed without
+		 * missing any message of another partition.
+		 */
+		private long getSafeTime() {
+			long result=Long.MAX_VALUE;
+			for (final Channel channel : inputs) result=Math.min(result,channel.getDeliveryTime(channel.source.clock));
+			return result;
+		}
+
+		/**
+		 * Blocks until events at the given time are safe to process.
+		 *
+		 * @return false if the simulation was aborted
+		 */
+		private boolean awaitSafeTime(long ticks) {
+			if (ticks<=getSafeTime()) return true;
+			synchronized (this) {
+				waiting=true;
+				try {
+					while (!aborted&&(ticks>getSafeTime())) wait();
+				} catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					abort();
+				} finally {
+					waiting=false;
+				}
+			}
+			return !aborted;
+		}
+
+		/**
+		 * Delivers all incoming messages needed by events at the given time to
+		 * their destination ports.
+		 */
+		private void deliverMessages(long ticks) {
+			receiveMessages();
+			while (!pending.isEmpty()&&(pending.getMin().getTicks()<ticks)) pending.dequeue().deliver();
+		}
+
+		/**
+		 * Delivers all remaining incoming messages at the end of a simulation run.
+		 */
+		private void flushMessages() {
+			receiveMessages();
+			while (!pending.isEmpty()) pending.dequeue().deliver();
+		}
+
+		private void receiveMessages() {
+			Envelope envelope=mailbox.poll();
+			while (envelope!=null) {
+				pending.enqueue(envelope,envelope.delivery);
+				envelope=mailbox.poll();
+			}
+		}
+
+		/**
+		 * Moves the messages of all outgoing channels to the receiving processes.
+		 */
+		private void sendMessages(long ticks) {
+			for (final Channel channel : outputs) if (channel.buffer.hasMessages()) {
+				channel.target.mailbox.add(new Envelope(channel,channel.buffer.readAll(),ticks));
+				channel.buffer.clearMessages();
+			}
+		}
+
+		private void publishClock(long ticks) {
+			clock=ticks;
+			for (final LogicalProcess process : successors) if (process.waiting) synchronized (process) {
+				process.notifyAll();
+			}
+		}
+
+	}
+
+	/**
+	 * Constructs a new conservative parallel simulator with given model, queue
+	 * implementation and messaging strategy
+	 * <p>
+	 * The given global event queue is used by the partition of agents placed
+	 * directly in the root domain, the factory creates the event queues of all
+	 * other partitions.
+	 *
+	 * @param root       the root domain of the model
+	 * @param queue      the queue implementation to use for the partition of
+	 *                   the root domain
+	 * @param factory    creates the queues of the other partitions
+	 * @param forwarding the strategy to use for message forwarding, must be
+	 *                   stateless
+	 */
+	public ConservativeParallelDESimulator(BasicDomain root, EventQueue<Agent> queue,
+			Supplier<EventQueue<Agent>> factory, MessageForwardingStrategy forwarding) {
+		super(root,queue,forwarding);
+		queueFactory=factory;
+	}
+
+	/**
+	 * Quick start constructor of a new conservative parallel simulator with a
+	 * given model
+	 * <p>
+	 * Uses {@code RecursiveMessageForwarding} and a {@code LadderEventQueue} for
+	 * each partition as default options.
+	 *
+	 * @param root the root domain of the model
+	 */
+	public ConservativeParallelDESimulator(BasicDomain root) {
+		this(root,new LadderEventQueue<Agent>(),LadderEventQueue::new,new RecursiveMessageForwarding());
+	}
+
+	/**
+	 * Declares the lookahead of a connection between two partitions.
+	 * <p>
+	 * The lookahead is the minimal time a message sent via this connection needs
+	 * to take effect in the receiving partition. A message sent at time
+	 * {@code t} is visible to the receiver's events after {@code t+lookahead}.
+	 * Connections within the same partition are not affected.
+	 *
+	 * @param from      the source port of the connection
+	 * @param to        the destination port of the connection
+	 * @param lookahead the lookahead of the connection, may be zero
+	 * @exception ModelEntity.PortConnectionException if the ports are not
+	 *                                                connected
+	 */
+	public void declareLookahead(Port from, Port to, Time lookahead) {
+		if (!from.isConnectedTo(to)) throw new ModelEntity.PortConnectionException(
+				"Cannot declare lookahead of unconnected ports in "+from.getParent().getFullName());
+		if (lookahead.getTicks()<0) throw new IllegalArgumentException("Lookahead must not be negative");
+		channels.removeIf(channel -> (channel.from==from)&&(channel.to==to));
+		channels.add(new Channel(from,to,lookahead.getTicks()));
+	}
+
+	/**
+	 * The global event queue only contains the agents of the root partition, so
+	 * it is not saved with a checkpoint.
+	 */
+	@Override
+	protected EventQueue<Agent> getCheckpointQueue() {
+		return null;
+	}
+
+	@Override
+	public void runSimulation(Time stop) {
+		aborted=false;
+		final Map<ModelEntity, LogicalProcess> partitions=buildPartitions(stop.getTicks());
+		final List<Channel> crossing=new ArrayList<>();
+		for (final Channel channel : channels) {
+			channel.source=getPartition(partitions,channel.from);
+			channel.target=getPartition(partitions,channel.to);
+			if (channel.source!=channel.target) crossing.add(channel);
+		}
+		checkConnections(partitions,getRootDomain());
+		for (final Channel channel : crossing) {
+			channel.source.outputs.add(channel);
+			channel.target.inputs.add(channel);
+			if (!channel.source.successors.contains(channel.target)) channel.source.successors.add(channel.target);
+			channel.from.disconnect(channel.to);
+			channel.from.connect(channel.buffer);
+		}
+		for (final LogicalProcess process : processes) process.clock=process.getNextTicks();
+		getSimulationContext().setRunning(true);
+		final ExecutorService executor=Executors.newFixedThreadPool(processes.size());
+		final List<Future<?>> futures=new ArrayList<>();
+		try {
+			for (final LogicalProcess process : processes) futures.add(executor.submit(process));
+			for (final Future<?> future : futures) future.get();
+		} catch (final ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+			throw new Simulator.InvalidSimulatorStateException(exception.getCause().toString());
+		} catch (final InterruptedException exception) {
+			abort();
+			Thread.currentThread().interrupt();
+		} finally {
+			stopProcesses(executor,futures);
+			getSimulationContext().setRunning(false);
+			for (final Channel channel : crossing) {
+				channel.from.disconnect(channel.buffer);
+				channel.from.connect(channel.to);
+			}
+			stopProcessAgents();
+		}
+		// deliver remaining messages, as done by the sequential simulator at the end of a run
+		long end=Long.MAX_VALUE;
+		for (final LogicalProcess process : processes) {
+			process.flushMessages();
+			end=Math.min(end,process.getNextTicks());
+		}
+		setSimulationTicks(end);
+		callEventsProcessedHook();
+	}
+
+	/**
+	 * Partitions the model into logical processes and fills their event queues.
+	 *
+	 * @return mapping of the root domain's entities to their logical processes
+	 */
+	private Map<ModelEntity, LogicalProcess> buildPartitions(long stop) {
+		processes.clear();
+		final EventQueue<Agent> geq=getGlobalEventQueue();
+		while (!geq.isEmpty()) geq.dequeueAll(); // remove events of a previous run
+		final LogicalProcess rootProcess=new LogicalProcess(geq,stop);
+		processes.add(rootProcess);
+		final Map<ModelEntity, LogicalProcess> result=new IdentityHashMap<>();
+		result.put(getRootDomain(),rootProcess);
+		for (final ModelEntity entity : getRootDomain().listDomainEntities()) {
+			if (entity instanceof Domain) {
+				final LogicalProcess process=new LogicalProcess(queueFactory.get(),stop);
+				initEventQueue(process.queue,((Domain) entity).listAllAgents(true));
+				processes.add(process);
+				result.put(entity,process);
+			} else result.put(entity,rootProcess);
+		}
+		initEventQueue(geq,getRootDomain().listAllAgents(false));
+		return result;
+	}
+
+	private static void initEventQueue(EventQueue<Agent> queue, List<Agent> agents) {
+		queue.enqueueAll(agents,(Agent agent) -> {
+			final Time tone=agent.getTimeOfNextEvent();
+			if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+					"Local event queue empty in agent "+agent.getFullName());
+			return tone;
+		});
+	}
+
+	/**
+	 * Checks that all connections between different partitions are declared.
+	 *
+	 * @param partitions mapping of the root domain's entities to their logical
+	 *                   processes
+	 * @param entity     the entity to check together with its subtree
+	 * @exception Simulator.InvalidSimulatorStateException if there is an
+	 *                                                     undeclared connection
+	 */
+	private void checkConnections(Map<ModelEntity, LogicalProcess> partitions, ModelEntity entity) {
+		checkConnections(partitions,entity.getInport());
+		checkConnections(partitions,entity.getOutport());
+		if (entity instanceof Domain)
+			for (final ModelEntity child : ((Domain) entity).listDomainEntities()) checkConnections(partitions,child);
+	}
+
+	private void checkConnections(Map<ModelEntity, LogicalProcess> partitions, Port from) {
+		if (from==null) return;
+		final LogicalProcess source=getPartition(partitions,from);
+		for (final Port to : from.listConnections()) if ((getPartition(partitions,to)!=source)&&!isDeclared(from,to))
+			throw new Simulator.InvalidSimulatorStateException("Undeclared connection between partitions from "
+					+from.getParent().getFullName()+" to "+to.getParent().getFullName());
+	}
+
+	private boolean isDeclared(Port from, Port to) {
+		for (final Channel channel : channels) if ((channel.from==from)&&(channel.to==to)) return true;
+		return false;
+	}
+
+	/**
+	 * Stops all logical processes still running, e.g. after a failure, and waits
+	 * until their threads have terminated.
+	 */
+	private void stopProcesses(ExecutorService executor, List<Future<?>> futures) {
+		boolean running=false;
+		for (final Future<?> future : futures) running|=!future.isDone();
+		if (running) {
+			abort();
+			for (final Future<?> future : futures) future.cancel(true);
+		}
+		executor.shutdown();
+		boolean interrupted=false;
+		while (!executor.isTerminated()) try {
+			executor.awaitTermination(1,TimeUnit.SECONDS);
+		} catch (final InterruptedException exception) {
+			interrupted=true;
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Returns the logical process the given port belongs to.
+	 */
+	private LogicalProcess getPartition(Map<ModelEntity, LogicalProcess> partitions, Port port) {
+		ModelEntity entity=port.getParent();
+		while ((entity.getParent()!=null)&&(entity.getParent()!=getRootDomain())) entity=entity.getParent();
+		return partitions.get(entity);
+	}
+
+	private void abort() {
+		aborted=true;
+		for (final LogicalProcess process : processes) synchronized (process) {
+			process.notifyAll();
+		}
+	}
+
+}
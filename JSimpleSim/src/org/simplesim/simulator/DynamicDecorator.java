@@ -10,21 +10,26 @@ import org.simplesim.core.instrumentation.Listener;
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.BasicAgent;
 import org.simplesim.model.Domain;
+import org.simplesim.model.SimulationContext;
 
 /**
  * Decorator class to enable dynamic changes of the model during simulation run.
  * <p>
  * This class wraps any other simulator implementation and registers itself as
  * {@code EventsProcessedListener} to be called after each simulation cycle.
- * Communication of the agents' change requests is done by a static and
- * thread-safe queue within the {@code AbstractAgent} class. Changes are done by
- * concrete implementations of the {@code ChangeRequest} interface. So, agents
+ * Communication of the agents' change requests is done by a thread-safe queue
+ * within the {@link SimulationContext} of the wrapped simulator. Changes are
+ * done by concrete implementations of the {@code ChangeRequest} interface. So, agents
  * prepare and organize the change process whereas the the various change
  * request implementations are responsible for the conduct of the specified
  * model change. This class ensures the processing of the change requests.
  * <p>
  * To use model change functionality, agents have to issue change request via
  * {@code AbstractAgent#addModelChangeRequest(ChangeRequest)} class.
+ * <p>
+ * Discrete event simulators integrate added and removed agents into their
+ * global event queue incrementally after the changes are done, so the queue is
+ * never rebuilt.
  *
  * @see ChangeRequest
  * @see BasicAgent
@@ -45,10 +50,10 @@ public final class DynamicDecorator implements Simulator {
 	 * implementations
 	 */
 	private void doModelChanges() {
-		ChangeRequest cr=BasicAgent.pollModelChangeRequest();
+		ChangeRequest cr=getSimulationContext().pollModelChangeRequest();
 		while (cr!=null) {
 			cr.doModelChange();
-			cr=BasicAgent.pollModelChangeRequest();
+			cr=getSimulationContext().pollModelChangeRequest();
 		}
 	}
 
@@ -61,6 +66,15 @@ public final class DynamicDecorator implements Simulator {
 	@Override
 	public Time getSimulationTime() { return simulator.getSimulationTime(); }
 
+	@Override
+	public long getSimulationTicks() { return simulator.getSimulationTicks(); }
+
+	@Override
+	public SimulationContext getSimulationContext() { return simulator.getSimulationContext(); }
+
+	@Override
+	public void setSimulationContext(SimulationContext value) { simulator.setSimulationContext(value); }
+
 	@Override
 	public void registerEventsProcessedListener(Listener<Simulator> listener) {
 		simulator.registerEventsProcessedListener(listener);
@@ -10,14 +10,15 @@
  */
 package org.simplesim.simulator;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.simplesim.core.messaging.MessageForwardingStrategy;
 import org.simplesim.core.messaging.RecursiveMessageForwarding;
 import org.simplesim.core.scheduling.EventQueue;
-import org.simplesim.core.scheduling.HeapEventQueue;
+import org.simplesim.core.scheduling.LadderEventQueue;
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
-import org.simplesim.model.BasicAgent;
 import org.simplesim.model.BasicDomain;
 import org.simplesim.model.Agent;
 
@@ -28,7 +29,7 @@ import org.simplesim.model.Agent;
  * queue. Then the {@code doEventSim} method of these imminent agents is called
  * sequentially.
  * <p>
- * Uses a {@code SortedBucketQueue} as default implementation of the global
+ * Uses a {@code LadderEventQueue} as default implementation of the global
  * event queue
  * <p>
  * This implementation is especially useful to run DES models.
@@ -51,24 +52,30 @@ public class SequentialDESimulator extends BasicSimulator {
 	/**
 	 * Quick start constructor of a sequential discrete-event simulator with a given model
 	 * <p>
-	 * Uses {@code RecursiveMessageForwarding} and a {@code HeapEventQueue} as
-	 * default options.
+	 * Uses {@code RecursiveMessageForwarding} and a {@code LadderEventQueue} as
+	 * default options, since the ladder queue scales well with large models.
 	 *
 	 * @param root the root domain of the model
 	 */
 	public SequentialDESimulator(BasicDomain root) {
-		this(root,new HeapEventQueue<Agent>(),new RecursiveMessageForwarding());
+		this(root,new LadderEventQueue<Agent>(),new RecursiveMessageForwarding());
 	}
 
 	@Override
 	public void runSimulation(Time stop) {
+		if (getTickEventQueue()!=null) {
+			runTickSimulation(stop.getTicks());
+			return;
+		}
 		initGlobalEventQueue();
-		setSimulationTime(getGlobalEventQueue().getMin());
+		setSimulationTime(getTimeOfNextCycle(stop));
+		final List<Agent> cel=new ArrayList<>(); // cel=current event list, reused in each cycle
 		while (getSimulationTime().compareTo(stop)<0) {
-			BasicAgent.setSimulationIsRunning(true);
+			getSimulationContext().setRunning(true);
 			// part I: process all current events by calling the agents' doEvent method
 			// and enqueue the next events of the agents
-			List<Agent> cel=getGlobalEventQueue().dequeueAll(); // cel=current event list
+			cel.clear();
+			getGlobalEventQueue().drainMin(cel);
 			// System.out.println("Number of concurrent events: "+list.size());
 			for (Agent agent : cel) {
 				final Time tone=agent.doEventSim(getSimulationTime());
@@ -80,11 +87,48 @@ public class SequentialDESimulator extends BasicSimulator {
 				getGlobalEventQueue().enqueue(agent,tone);
 			}
 			// part II: do the message forwarding
-			getMessageForwardingStrategy().forwardMessages(cel);
-			BasicAgent.setSimulationIsRunning(false);
+			forwardMessages(cel,getSimulationTime());
+			getSimulationContext().setRunning(false);
+			callEventsProcessedHook();
+			setSimulationTime(getTimeOfNextCycle(stop));
+		}
+		stopProcessAgents();
+	}
+
+	/**
+	 * Simulation loop using primitive time stamps if the global event queue is a
+	 * {@link TickEventQueue}.
+	 * <p>
+	 * Together with agents overriding {@link Agent#doEvent(long)} and using a
+	 * {@code TickEventQueue} as local event queue, a simulation cycle does not
+	 * create any {@code Time} objects.
+	 *
+	 * @param stop simulation time in ticks when the simulation should stop
+	 */
+	private void runTickSimulation(long stop) {
+		initGlobalEventQueue(); // may replace the queue when resuming from a checkpoint
+		final TickEventQueue<Agent> geq=getTickEventQueue();
+		setSimulationTicks(getTicksOfNextCycle(stop));
+		final List<Agent> cel=new ArrayList<>(); // cel=current event list, reused in each cycle
+		while (getSimulationTicks()<stop) {
+			getSimulationContext().setRunning(true);
+			cel.clear();
+			geq.drainMin(cel);
+			for (Agent agent : cel) {
+				final long tone=agent.doEventSim(getSimulationTicks());
+				if (tone==TickEventQueue.UNDEFINED) throw new Simulator.InvalidSimulatorStateException(
+						"Local event queue is empty in agent "+agent.getFullName());
+				if (tone<getSimulationTicks()) throw new Simulator.InvalidSimulatorStateException(
+						"Tone "+new Time(tone).toString()+" is before current simulation time "
+								+getSimulationTime().toString()+" in agent "+agent.getFullName());
+				geq.enqueue(agent,tone);
+			}
+			forwardMessages(cel,getSimulationTicks());
+			getSimulationContext().setRunning(false);
 			callEventsProcessedHook();
-			setSimulationTime(getGlobalEventQueue().getMin());
+			setSimulationTicks(getTicksOfNextCycle(stop));
 		}
+		stopProcessAgents();
 	}
 
 }
@@ -10,12 +10,20 @@
  */
 package org.simplesim.simulator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.simplesim.core.messaging.MessageForwardingStrategy;
 import org.simplesim.core.messaging.RecursiveMessageForwarding;
+import org.simplesim.core.scheduling.TickEventQueue;
 import org.simplesim.core.scheduling.Time;
-import org.simplesim.model.BasicAgent;
 import org.simplesim.model.BasicDomain;
 import org.simplesim.model.Agent;
 
@@ -26,13 +34,43 @@ import org.simplesim.model.Agent;
  * {@code doEventSim} method of the agents is called sequentially every
  * {@code timeStep}.
  * <p>
+ * If activity tracking is enabled, only active agents are called. An agent
+ * declaring itself idle (see {@link Agent#isIdle()}) is removed from the step
+ * loop until a message arrives at its inport or it is reactivated by
+ * {@link #activate(Agent)}. Thus, the cost of a time step scales with the
+ * number of active agents instead of all agents, which pays off for sparse
+ * cellular automata and large populations of mostly dormant agents.
+ * <p>
+ * The time step is one tick by default and can be set by
+ * {@link #setTimeStep(Time)}. In adaptive mode, the simulator skips all steps
+ * without activity: if no agent sent a message during a step, the simulation
+ * continues at the first step at or after the earliest time of next event of
+ * the agents called. Agents that have to be called in every step simply keep
+ * their local event queue empty, so their time of next event is undefined and
+ * no step is skipped.
+ * <p>
  * This implementation is especially useful to run cellular automata.
  *
  */
 public class SequentialTSSimulator extends BasicSimulator {
 
 	// the constant time step, no event queue
-	private final Time timeStep=Time.TICK;
+	private Time timeStep=Time.TICK;
+
+	// flag to skip steps without activity
+	private boolean adaptive=false;
+
+	// flag to call only active agents
+	private boolean tracking=false;
+
+	// active agents if activity tracking is enabled, in order of activation
+	private final List<Agent> active=new ArrayList<>();
+
+	// set of active agents to avoid duplicates
+	private final Set<Agent> members=Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// agents activated explicitly, may be added from other threads
+	private final Queue<Agent> activations=new ConcurrentLinkedQueue<>();
 
 	public SequentialTSSimulator(BasicDomain rt, MessageForwardingStrategy forwarding) {
 		super(rt,null,forwarding);
@@ -51,30 +89,210 @@ public class SequentialTSSimulator extends BasicSimulator {
 
 	@Override
 	public void runSimulation(Time stop) {
-		setSimulationTime(Time.ZERO);
-		List<Agent> cel=getRootDomain().listAllAgents(true); // cel=current event list
+		setSimulationTime(getStartTime());
+		List<Agent> cel=listAgents(); // cel=current event list
+		final Collection<Agent> receivers=new LinkedHashSet<>(); // idle agents receiving messages
+		if (isActivityTracking()) receivers.addAll(listWokenAgents());
 		boolean rebuildTaskList = false;
 
 		while (getSimulationTime().compareTo(stop)<0) {
-			BasicAgent.setSimulationIsRunning(true);
+			getSimulationContext().setRunning(true);
 			// part 0: costly rebuild of list only if there are changes to the model
 			if (rebuildTaskList) {
-				cel = getRootDomain().listAllAgents(true);
+				cel = listAgents();
 				rebuildTaskList = false;
 			}
+			if (isActivityTracking()) {
+				cel=updateActiveAgents(receivers);
+				receivers.clear();
+			}
 			// part I: process all current events by calling the agents' doEvent method
-			// in time step, iterate over ALL agents, ignore time of next event
+			// in time step, iterate over ALL (active) agents, ignore time of next event
 			for (Agent agent : cel) agent.doEventSim(getSimulationTime());
+			final long hint=isAdaptiveStep() ? getStepHint(cel) : Long.MIN_VALUE;
 			// part II: do the message forwarding
-			getMessageForwardingStrategy().forwardMessages(cel);
-			rebuildTaskList = BasicAgent.hasModelChangeRequest();
-			BasicAgent.setSimulationIsRunning(false);
+			forwardMessages(cel,receivers);
+			rebuildTaskList = getSimulationContext().hasModelChangeRequest();
+			getSimulationContext().setRunning(false);
 			callEventsProcessedHook();
-			// part III: add the time step
-			setSimulationTime(getSimulationTime().add(getTimeStep()));
+			// part III: add the time step or skip the steps without activity
+			setSimulationTime(getNextStepTime(rebuildTaskList ? Long.MIN_VALUE : hint,stop));
 		}
+		stopProcessAgents();
+	}
+
+	/**
+	 * Returns the time of the first step of a simulation run.
+	 *
+	 * @return zero or the step after the checkpoint to resume from
+	 * @see #resumeFrom(Checkpoint)
+	 */
+	protected Time getStartTime() {
+		final Checkpoint checkpoint=pollCheckpoint();
+		return checkpoint==null ? Time.ZERO : checkpoint.getSimulationTime().add(getTimeStep());
 	}
 
 	public Time getTimeStep() { return timeStep; }
 
+	/**
+	 * Sets the time between two steps.
+	 *
+	 * @param value the time step, must be at least one tick
+	 */
+	public void setTimeStep(Time value) {
+		if (value.getTicks()<=0) throw new IllegalArgumentException("Time step must be positive");
+		timeStep=value;
+	}
+
+	/**
+	 * Enables or disables the adaptive mode skipping steps without activity.
+	 *
+	 * @param value true to skip steps without messages up to the next event
+	 */
+	public void setAdaptiveStep(boolean value) { adaptive=value; }
+
+	public boolean isAdaptiveStep() { return adaptive; }
+
+	/**
+	 * Returns the earliest time of next event of the given agents.
+	 * <p>
+	 * To be called after the agents have been called and before the message
+	 * forwarding.
+	 *
+	 * @param agents the agents called in the current step
+	 * @return the earliest time of next event in ticks or {@code Long.MIN_VALUE}
+	 *         if an agent has outgoing messages or no time of next event
+	 */
+	protected static long getStepHint(List<Agent> agents) {
+		long result=Long.MAX_VALUE;
+		for (final Agent agent : agents) {
+			if ((agent.getOutport()!=null)&&agent.getOutport().hasMessages()) return Long.MIN_VALUE;
+			final long tone=agent.getTicksOfNextEvent();
+			if (tone==TickEventQueue.UNDEFINED) return Long.MIN_VALUE;
+			result=Math.min(result,tone);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the time of the next step.
+	 * <p>
+	 * In adaptive mode, steps before the given hint are skipped, but the
+	 * simulation does not jump beyond the first step at or after the stop time.
+	 * No step is skipped if there are pending activations or model change
+	 * requests, e.g. from a listener, as these have to be handled in the next
+	 * step. The caller has to pass {@code Long.MIN_VALUE} as hint if the model
+	 * was changed in the current step.
+	 *
+	 * @param hint earliest time of next activity in ticks, see
+	 *             {@link #getStepHint(List)}
+	 * @param stop simulation time when the simulation should stop
+	 * @return the time of the next step
+	 */
+	protected Time getNextStepTime(long hint, Time stop) {
+		final Time next=getSimulationTime().add(getTimeStep());
+		if (!isAdaptiveStep()||(hint<=next.getTicks())) return next;
+		if (!activations.isEmpty()||getSimulationContext().hasModelChangeRequest()) return next;
+		final long now=getSimulationTicks();
+		final long step=getTimeStep().getTicks();
+		final long target=Math.min(hint,stop.getTicks());
+		return new Time(now+((((target-now)+step)-1)/step)*step);
+	}
+
+	/**
+	 * Enables or disables activity tracking.
+	 * <p>
+	 * With activity tracking, idle agents are skipped until they receive a
+	 * message or are activated explicitly. Without, all agents are called in
+	 * each time step regardless of their idle flag.
+	 *
+	 * @param value true to call only active agents
+	 * @see Agent#isIdle()
+	 */
+	public void setActivityTracking(boolean value) { tracking=value; }
+
+	public boolean isActivityTracking() { return tracking; }
+
+	/**
+	 * Reactivates an idle agent, so it is called again from the next time step
+	 * on.
+	 * <p>
+	 * Only needed if activity tracking is enabled. May be called by other
+	 * threads, e.g. by an agent during a time step.
+	 *
+	 * @param agent the agent to activate
+	 */
+	public void activate(Agent agent) { activations.add(agent); }
+
+	/**
+	 * Lists the agents to call in each time step.
+	 * <p>
+	 * Without activity tracking, this is a read-only view of all agents of the
+	 * model, reflecting later model changes. Otherwise, the list of active
+	 * agents is rebuilt from all agents not being idle.
+	 *
+	 * @return list of agents to call
+	 */
+	protected List<Agent> listAgents() {
+		final List<Agent> agents=listModelAgents();
+		if (!isActivityTracking()) return agents;
+		active.clear();
+		members.clear();
+		for (final Agent agent : agents) if (!agent.isIdle()&&members.add(agent)) active.add(agent);
+		return active;
+	}
+
+	/**
+	 * Lists all idle agents with messages at their inport.
+	 * <p>
+	 * These agents have to be woken at the start of a simulation run if they
+	 * received messages in the last step before a checkpoint was saved.
+	 *
+	 * @return list of idle agents to wake
+	 */
+	protected List<Agent> listWokenAgents() {
+		final List<Agent> result=new ArrayList<>();
+		for (final Agent agent : listModelAgents())
+			if (agent.isIdle()&&(agent.getInport()!=null)&&agent.getInport().hasMessages()) result.add(agent);
+		return result;
+	}
+
+	/**
+	 * Removes all agents that became idle in the last time step and adds all
+	 * agents to be woken.
+	 * <p>
+	 * Takes time proportional to the number of active agents.
+	 *
+	 * @param woken idle agents that received messages in the last time step
+	 * @return list of agents to call in the next time step
+	 */
+	protected List<Agent> updateActiveAgents(Collection<Agent> woken) {
+		int size=0;
+		for (int index=0; index<active.size(); index++) {
+			final Agent agent=active.get(index);
+			if (agent.isIdle()) members.remove(agent);
+			else active.set(size++,agent);
+		}
+		active.subList(size,active.size()).clear();
+		for (final Agent agent : woken) if (members.add(agent)) active.add(agent);
+		Agent agent=activations.poll();
+		while (agent!=null) {
+			if (members.add(agent)) active.add(agent);
+			agent=activations.poll();
+		}
+		return active;
+	}
+
+	/**
+	 * Forwards the messages of the given agents and collects the idle receivers
+	 * if activity tracking is enabled.
+	 *
+	 * @param senders   the agents of the current time step
+	 * @param receivers collection to add the idle receivers to
+	 */
+	protected void forwardMessages(List<Agent> senders, Collection<Agent> receivers) {
+		if (isActivityTracking()) getMessageForwardingStrategy().forwardMessages(senders,receivers);
+		else getMessageForwardingStrategy().forwardMessages(senders);
+	}
+
 }
@@ -9,6 +9,7 @@ package org.simplesim.simulator;
 import org.simplesim.core.instrumentation.Listener;
 import org.simplesim.core.scheduling.Time;
 import org.simplesim.model.Domain;
+import org.simplesim.model.SimulationContext;
 
 /**
  * The simulator runs the simulation model. Its functionality comprises:
@@ -44,6 +45,40 @@ public interface Simulator {
 
 	Time getSimulationTime();
 
+	/**
+	 * Returns the current simulation time in ticks.
+	 * <p>
+	 * Implementations may override this method to avoid the creation of
+	 * {@code Time} objects.
+	 *
+	 * @return current simulation time in ticks
+	 */
+	default long getSimulationTicks() {
+		return getSimulationTime().getTicks();
+	}
+
+	/**
+	 * Returns the context of this simulator.
+	 * <p>
+	 * The context is attached to the root domain of the model and contains all
+	 * runtime information of the simulation, so several simulations can run
+	 * independently within the same JVM.
+	 *
+	 * @return the simulation context
+	 */
+	SimulationContext getSimulationContext();
+
+	/**
+	 * Replaces the context of this simulator and attaches it to the root domain
+	 * of the model.
+	 * <p>
+	 * Allows to prepare a context, e.g. with a seed, before the model is built.
+	 * Must not be called during a simulation run.
+	 *
+	 * @param value the new simulation context
+	 */
+	void setSimulationContext(SimulationContext value);
+
 	/**
 	 * Registers an {@code EventsProcessedListener} to be called after each
 	 * simulation cycle.
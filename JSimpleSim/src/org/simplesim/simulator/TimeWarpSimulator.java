@@ -0,0 +1,809 @@
+/*
+ * JSimpleSim is a framework to build multi-agent systems in a quick and easy way. This software is published as open
+ * source and licensed under the terms of GNU GPLv3. Contributors: - Rene Kuhlemann - development and initial
+ * implementation
+ */
+package org.simplesim.simulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.simplesim.core.messaging.AbstractMessage;
+import org.simplesim.core.messaging.MessageForwardingStrategy;
+import org.simplesim.core.messaging.Port;
+import org.simplesim.core.messaging.RecursiveMessageForwarding;
+import org.simplesim.core.scheduling.EventQueue;
+import org.simplesim.core.scheduling.IndexedHeapEventQueue;
+import org.simplesim.core.scheduling.Time;
+import org.simplesim.model.Agent;
+import org.simplesim.model.BasicAgent;
+import org.simplesim.model.BasicDomain;
+import org.simplesim.model.Domain;
+import org.simplesim.model.ModelEntity;
+import org.simplesim.model.ProcessAgent;
+
+/**
+ * Optimistic parallel simulator for discrete event models based on Time Warp
+ * <p>
+ * The model is partitioned into logical processes like in the
+ * {@link ConservativeParallelDESimulator}: each domain directly below the root
+ * domain forms a partition, all agents placed directly in the root domain form
+ * another one. Each logical process runs in its own thread and processes its
+ * events speculatively, without waiting for the other partitions. Thus, models
+ * with little or no lookahead can use all cores.
+ * <p>
+ * Before each event, the agent's state, local event queue and inport are saved
+ * as {@link BasicAgent.Memento}, using {@link org.simplesim.model.State#copy()}.
+ * If a message arrives with a time stamp before already processed events (a
+ * <i>straggler</i>), these events are rolled back in reverse order and the
+ * messages sent by them are cancelled by anti-messages. An anti-message
+ * annihilates its positive counterpart, rolling back the receiver as well if
+ * the message was already delivered. Messages within a partition are restored
+ * by truncating the inports to their size before the rolled back delivery.
+ * <p>
+ * A coordinator thread periodically pauses all logical processes to compute
+ * the global virtual time (GVT), the minimum of all next event times and the
+ * time stamps of all messages not yet received. Events up to the GVT can never be
+ * rolled back, so their saved states are discarded (fossil collection). The
+ * simulation time of this simulator reflects the GVT during a run. The run
+ * ends when the GVT reaches the stop time.
+ * <p>
+ * As with the sequential simulator, a message written at time {@code t} is
+ * visible to the receiver's events after {@code t}, so both simulators produce
+ * the same results.
+ * <p>
+ * Note: All connections between different partitions must be declared with
+ * {@link #declareChannel(Port, Port)}, otherwise the simulation run is
+ * rejected. All agents must be derived from
+ * {@link BasicAgent} with a copyable state and must only interact via
+ * messages, which must end at the inports of agents. Process agents are
+ * rejected, as their processes cannot be rolled back. The message forwarding
+ * strategy must be stateless and connection based, e.g.
+ * {@link RecursiveMessageForwarding}. The event queues must support
+ * {@code dequeue(E)} efficiently, an {@link IndexedHeapEventQueue} is used by
+ * default. The model structure must not change during a simulation run. Since
+ * there are no global simulation cycles, the {@code EventsProcessedListener}s
+ * are only notified once at the end of a run.
+ */
+public final class TimeWarpSimulator extends BasicSimulator {
+
+	/** maximum milliseconds between two calculations of the global virtual time */
+	private static final long GVT_PERIOD=10;
+
+	/** maximum number of uncommitted simulation cycles per logical process */
+	private static final int MAX_HISTORY=1<<16;
+
+	/** window in ticks at the start of a run with adaptive optimism */
+	private static final long INITIAL_WINDOW=1;
+
+	/** minimum number of cycles processed before the adaptive window is changed */
+	private static final long SAMPLE_CYCLES=256;
+
+	/** the adaptive window is halved if more than one in this number of cycles was rolled back */
+	private static final long SHRINK_RATIO=4;
+
+	/** the adaptive window is doubled if at most one in this number of cycles was rolled back */
+	private static final long GROW_RATIO=16;
+
+	private final Supplier<EventQueue<Agent>> queueFactory;
+
+	/** maximum number of ticks a logical process may run ahead of the global virtual time */
+	private long window=INITIAL_WINDOW;
+
+	/** flag to adapt the window to the rollbacks of each GVT round */
+	private boolean adaptive=true;
+
+	/** latest time a logical process may process events, i.e. global virtual time plus window */
+	private volatile long horizon=Long.MAX_VALUE;
+
+	/** declared connections between partitions */
+	private final List<Channel> channels=new ArrayList<>();
+
+	/** logical processes of the current simulation run */
+	private final List<LogicalProcess> processes=new ArrayList<>();
+
+	/** lock to pause the logical processes for GVT calculation */
+	private final Object coordinator=new Object();
+
+	private volatile boolean pauseRequested=false;
+	private volatile boolean finished=false;
+	private volatile boolean aborted=false;
+	private int paused=0; // number of paused logical processes, guarded by coordinator
+	private long round=0; // number of GVT calculations, guarded by coordinator
+	private long cycles=0, undone=0; // cycles done and undone until the last window change, guarded by coordinator
+	private boolean gvtRequested=false; // set by blocked logical processes, guarded by coordinator
+
+	/**
+	 * Connection between two partitions
+	 */
+	private static final class Channel {
+
+		private final Port from, to;
+		private final Port buffer;
+		private LogicalProcess source, target;
+
+		Channel(Port src, Port dest) {
+			from=src;
+			to=dest;
+			buffer=new BufferPort(dest.getParent());
+		}
+
+	}
+
+	/**
+	 * Messages sent over a channel at the same time or the anti-message
+	 * cancelling them
+	 */
+	private static final class Envelope {
+
+		private final Channel channel;
+		private final List<AbstractMessage<?>> messages;
+		private final Time time; // time of sending, the messages are visible to events after this time
+		private final Envelope positive; // the cancelled message, if this is an anti-message
+		private boolean delivered=false; // only accessed by the receiving process
+
+		Envelope(Channel c, Collection<AbstractMessage<?>> m, Time t) {
+			channel=c;
+			messages=new ArrayList<>(m);
+			time=t;
+			positive=null;
+		}
+
+		Envelope(Envelope cancel) {
+			channel=cancel.channel;
+			messages=Collections.emptyList();
+			time=cancel.time;
+			positive=cancel;
+		}
+
+		boolean isAntiMessage() {
+			return positive!=null;
+		}
+
+		/**
+		 * Writes the messages to the destination port and forwards them along
+		 * its connections.
+		 */
+		void deliver() {
+			channel.to.writeAll(messages);
+			Collection<Port> sources=Collections.singletonList(channel.to);
+			while (!sources.isEmpty()) {
+				final Collection<Port> destinations=new ArrayList<>();
+				for (final Port port : sources) if (!port.isEndPoint()) destinations.addAll(port.forwardMessages());
+				sources=destinations;
+			}
+		}
+
+	}
+
+	/**
+	 * Number of messages at a port before it was changed
+	 */
+	private static final class Mark {
+
+		private final Port port;
+		private final int count;
+
+		Mark(Port p, int c) {
+			port=p;
+			count=c;
+		}
+
+		/**
+		 * Removes all messages added after the mark was set.
+		 */
+		void undo() {
+			final List<AbstractMessage<?>> messages=new ArrayList<>(port.<AbstractMessage<?>>readAll());
+			port.clearMessages();
+			port.writeAll(messages.subList(0,count));
+		}
+
+	}
+
+	/**
+	 * Information needed to roll back a simulation cycle of a logical process
+	 */
+	private static final class Cycle {
+
+		private final Time time;
+		private final List<Agent> agents=new ArrayList<>();
+		private final List<BasicAgent.Memento> mementos=new ArrayList<>();
+		private final List<Envelope> delivered=new ArrayList<>();
+		private final List<Envelope> sent=new ArrayList<>();
+		private final List<Mark> deliveries=new ArrayList<>();
+		private final List<Mark> forwards=new ArrayList<>();
+
+		Cycle(Time t) {
+			time=t;
+		}
+
+	}
+
+	/**
+	 * Partition of the model with its own event queue, running in its own thread
+	 */
+	private final class LogicalProcess implements Runnable {
+
+		private final EventQueue<Agent> queue;
+		private final List<Channel> outputs=new ArrayList<>();
+
+		/** inports of all agents of this partition, to detect changes by message forwarding */
+		private final List<Port> inports=new ArrayList<>();
+		private int[] counts;
+
+		/** incoming messages and anti-messages, may be added by other logical processes */
+		private final Queue<Envelope> mailbox=new ConcurrentLinkedQueue<>();
+
+		/** incoming messages not yet delivered, sorted by time of sending */
+		private final EventQueue<Envelope> pending=new IndexedHeapEventQueue<>();
+
+		/** simulation cycles that may still be rolled back, in chronological order */
+		private final Deque<Cycle> history=new ArrayDeque<>();
+
+		private final List<Agent> cel=new ArrayList<>(); // current event list, reused in each cycle
+
+		private final long stop;
+		private long rollbacks=0;
+		private long cycles=0, undone=0; // simulation cycles done and undone, read while paused
+
+		/** set while waiting for messages */
+		private volatile boolean waiting=false;
+
+		LogicalProcess(EventQueue<Agent> eq, List<Agent> agents, long end) {
+			queue=eq;
+			stop=end;
+			for (final Agent agent : agents) {
+				if (!(agent instanceof BasicAgent)) throw new Simulator.InvalidSimulatorStateException(
+						"Agent "+agent.getFullName()+" does not support state saving");
+				if (agent instanceof ProcessAgent) throw new Simulator.InvalidSimulatorStateException(
+						"Process agent "+agent.getFullName()+" cannot be rolled back");
+				if (agent.getInport()!=null) inports.add(agent.getInport());
+			}
+			counts=new int[inports.size()];
+			initEventQueue(queue,agents);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!finished) {
+					if (pauseRequested) awaitResume();
+					else {
+						receiveMessages();
+						final long next=getNextTicks();
+						if ((next<stop)&&(next<=horizon)&&(history.size()<MAX_HISTORY)) doCycle();
+						else {
+							if (next<stop) requestGlobalVirtualTime(); // blocked by window or history
+							awaitMessages();
+						}
+					}
+				}
+			} catch (final RuntimeException exception) {
+				abort();
+				throw exception;
+			}
+		}
+
+		private void doCycle() {
+			final Time time=queue.getMin();
+			final Cycle cycle=new Cycle(time);
+			if (!pending.isEmpty()&&(pending.getMin().compareTo(time)<0)) {
+				markInports();
+				while (!pending.isEmpty()&&(pending.getMin().compareTo(time)<0)) {
+					final Envelope envelope=pending.dequeue();
+					envelope.deliver();
+					envelope.delivered=true;
+					cycle.delivered.add(envelope);
+				}
+				collectMarks(cycle.deliveries);
+			}
+			cel.clear();
+			queue.drainMin(cel);
+			for (final Agent agent : cel) {
+				cycle.agents.add(agent);
+				cycle.mementos.add(((BasicAgent<?, ?>) agent).saveMemento());
+				final Time tone=agent.doEventSim(time);
+				if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+						"Local event queue is empty in agent "+agent.getFullName());
+				if (tone.compareTo(time)<0) throw new Simulator.InvalidSimulatorStateException(
+						"Tone "+tone.toString()+" is before current simulation time "+time.toString()
+								+" in agent "+agent.getFullName());
+				queue.enqueue(agent,tone);
+			}
+			markInports();
+			getMessageForwardingStrategy().forwardMessages(cel);
+			collectMarks(cycle.forwards);
+			for (final Channel channel : outputs) if (channel.buffer.hasMessages()) {
+				final Envelope envelope=new Envelope(channel,channel.buffer.readAll(),time);
+				channel.buffer.clearMessages();
+				cycle.sent.add(envelope);
+				channel.target.post(envelope);
+			}
+			history.addLast(cycle);
+			cycles++;
+		}
+
+		/**
+		 * Undoes the last simulation cycle.
+		 */
+		private void undoCycle() {
+			final Cycle cycle=history.removeLast();
+			for (int index=cycle.forwards.size()-1; index>=0; index--) cycle.forwards.get(index).undo();
+			for (final Envelope envelope : cycle.sent) envelope.channel.target.post(new Envelope(envelope));
+			for (int index=cycle.agents.size()-1; index>=0; index--) {
+				final Agent agent=cycle.agents.get(index);
+				((BasicAgent<?, ?>) agent).restoreMemento(cycle.mementos.get(index));
+				queue.dequeue(agent);
+				queue.enqueue(agent,cycle.time);
+			}
+			for (int index=cycle.deliveries.size()-1; index>=0; index--) cycle.deliveries.get(index).undo();
+			for (final Envelope envelope : cycle.delivered) {
+				envelope.delivered=false;
+				pending.enqueue(envelope,envelope.time);
+			}
+			undone++;
+		}
+
+		/**
+		 * Undoes all simulation cycles after the given time.
+		 */
+		private void rollback(Time time) {
+			if (history.isEmpty()||(history.peekLast().time.compareTo(time)<=0)) return;
+			while (!history.isEmpty()&&(history.peekLast().time.compareTo(time)>0)) undoCycle();
+			rollbacks++;
+		}
+
+		/**
+		 * Handles all incoming messages and anti-messages, rolling back if
+		 * necessary.
+		 */
+		private void receiveMessages() {
+			Envelope envelope=mailbox.poll();
+			while (envelope!=null) {
+				if (envelope.isAntiMessage()) {
+					if (envelope.positive.delivered) rollback(envelope.time); // undelivers the positive message
+					pending.dequeue(envelope.positive);
+				} else {
+					rollback(envelope.time); // only if the message is a straggler
+					pending.enqueue(envelope,envelope.time);
+				}
+				envelope=mailbox.poll();
+			}
+		}
+
+		/**
+		 * Adds a message to the mailbox, called by other logical processes.
+		 */
+		private void post(Envelope envelope) {
+			mailbox.add(envelope);
+			if (waiting) synchronized (this) {
+				notifyAll();
+			}
+		}
+
+		private void awaitMessages() {
+			synchronized (this) {
+				waiting=true;
+				try {
+					while (!finished&&!pauseRequested&&mailbox.isEmpty()) wait();
+				} catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					abort();
+				} finally {
+					waiting=false;
+				}
+			}
+		}
+
+		private void requestGlobalVirtualTime() {
+			synchronized (coordinator) {
+				gvtRequested=true;
+				coordinator.notifyAll();
+			}
+		}
+
+		private void awaitResume() {
+			synchronized (coordinator) {
+				final long current=round;
+				paused++;
+				coordinator.notifyAll();
+				try {
+					while ((current==round)&&!finished) coordinator.wait();
+				} catch (final InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					abort();
+				}
+			}
+		}
+
+		private void markInports() {
+			for (int index=0; index<counts.length; index++) counts[index]=inports.get(index).countMessages();
+		}
+
+		private void collectMarks(List<Mark> marks) {
+			for (int index=0; index<counts.length; index++) {
+				final Port port=inports.get(index);
+				if (port.countMessages()!=counts[index]) marks.add(new Mark(port,counts[index]));
+			}
+		}
+
+		long getNextTicks() {
+			if (queue.isEmpty()) return Long.MAX_VALUE;
+			return queue.getMin().getTicks();
+		}
+
+		/**
+		 * Returns the earliest time this process may still be rolled back to,
+		 * only to be called while paused.
+		 * <p>
+		 * Received messages cannot cause a rollback, so only the next event and
+		 * the messages still in the mailbox are considered.
+		 */
+		long getLocalVirtualTime() {
+			long result=getNextTicks();
+			for (final Envelope envelope : mailbox) result=Math.min(result,envelope.time.getTicks());
+			return result;
+		}
+
+		/**
+		 * Discards all simulation cycles that cannot be rolled back anymore,
+		 * only to be called while paused.
+		 */
+		void collectFossils(long gvt) {
+			while (!history.isEmpty()&&(history.peekFirst().time.getTicks()<=gvt)) history.removeFirst();
+		}
+
+		/**
+		 * Delivers all remaining incoming messages at the end of a simulation run.
+		 */
+		void flushMessages() {
+			receiveMessages();
+			while (!pending.isEmpty()) pending.dequeue().deliver();
+		}
+
+	}
+
+	/**
+	 * Constructs a new Time Warp simulator with given model, queue implementation
+	 * and messaging strategy
+	 * <p>
+	 * The given global event queue is used by the partition of agents placed
+	 * directly in the root domain, the factory creates the event queues of all
+	 * other partitions.
+	 *
+	 * @param root       the root domain of the model
+	 * @param queue      the queue implementation to use for the partition of
+	 *                   the root domain
+	 * @param factory    creates the queues of the other partitions
+	 * @param forwarding the strategy to use for message forwarding, must be
+	 *                   stateless
+	 */
+	public TimeWarpSimulator(BasicDomain root, EventQueue<Agent> queue, Supplier<EventQueue<Agent>> factory,
+			MessageForwardingStrategy forwarding) {
+		super(root,queue,forwarding);
+		queueFactory=factory;
+	}
+
+	/**
+	 * Quick start constructor of a new Time Warp simulator with a given model
+	 * <p>
+	 * Uses {@code RecursiveMessageForwarding} and an
+	 * {@code IndexedHeapEventQueue} for each partition as default options.
+	 *
+	 * @param root the root domain of the model
+	 */
+	public TimeWarpSimulator(BasicDomain root) {
+		this(root,new IndexedHeapEventQueue<Agent>(),IndexedHeapEventQueue::new,new RecursiveMessageForwarding());
+	}
+
+	/**
+	 * Declares a connection between two partitions.
+	 * <p>
+	 * Connections within the same partition are not affected.
+	 *
+	 * @param from the source port of the connection
+	 * @param to   the destination port of the connection
+	 * @exception ModelEntity.PortConnectionException if the ports are not
+	 *                                                connected
+	 */
+	public void declareChannel(Port from, Port to) {
+		if (!from.isConnectedTo(to)) throw new ModelEntity.PortConnectionException(
+				"Cannot declare channel of unconnected ports in "+from.getParent().getFullName());
+		for (final Channel channel : channels) if ((channel.from==from)&&(channel.to==to)) return;
+		channels.add(new Channel(from,to));
+	}
+
+	/**
+	 * Limits the optimism of the simulation.
+	 * <p>
+	 * A logical process only processes events up to the given time window
+	 * beyond the global virtual time. A smaller window reduces cascading
+	 * rollbacks, but also the parallelism. Without a window, the optimism is only
+	 * limited by the number of saved simulation cycles.
+	 * <p>
+	 * By default, the window is adapted during a run: starting with one tick, it
+	 * is doubled while few cycles are rolled back and halved if more than a
+	 * quarter of the cycles were rolled back, each time after a few hundred
+	 * cycles. Setting a window disables the adaptation.
+	 *
+	 * @param value the fixed time window or {@code null} for an unlimited window
+	 * @see #setAdaptiveOptimism()
+	 */
+	public void setOptimismWindow(Time value) {
+		window=value==null ? Long.MAX_VALUE : value.getTicks();
+		adaptive=false;
+	}
+
+	/**
+	 * Enables the adaptation of the optimism window, which is the default.
+	 *
+	 * @see #setOptimismWindow(Time)
+	 */
+	public void setAdaptiveOptimism() {
+		adaptive=true;
+	}
+
+	/**
+	 * Returns the current optimism window, i.e. the last adapted one after a run.
+	 *
+	 * @return the time window or {@code null} if the window is unlimited
+	 */
+	public Time getOptimismWindow() {
+		return window==Long.MAX_VALUE ? null : new Time(window);
+	}
+
+	/**
+	 * Returns the number of rollbacks of the last simulation run.
+	 *
+	 * @return number of rollbacks
+	 */
+	public long getRollbacks() {
+		long result=0;
+		for (final LogicalProcess process : processes) result+=process.rollbacks;
+		return result;
+	}
+
+	/**
+	 * The global event queue only contains the agents of the root partition, so
+	 * it is not saved with a checkpoint.
+	 */
+	@Override
+	protected EventQueue<Agent> getCheckpointQueue() {
+		return null;
+	}
+
+	@Override
+	public void runSimulation(Time stop) {
+		pauseRequested=false;
+		finished=false;
+		aborted=false;
+		gvtRequested=false;
+		paused=0;
+		cycles=0;
+		undone=0;
+		if (adaptive) window=INITIAL_WINDOW;
+		final Map<ModelEntity, LogicalProcess> partitions=buildPartitions(stop.getTicks());
+		long gvt=Long.MAX_VALUE;
+		for (final LogicalProcess process : processes) gvt=Math.min(gvt,process.getNextTicks());
+		horizon=addTicks(gvt,window);
+		final List<Channel> crossing=new ArrayList<>();
+		for (final Channel channel : channels) {
+			channel.source=getPartition(partitions,channel.from);
+			channel.target=getPartition(partitions,channel.to);
+			if (channel.source!=channel.target) crossing.add(channel);
+		}
+		checkConnections(partitions,getRootDomain());
+		for (final Channel channel : crossing) {
+			channel.source.outputs.add(channel);
+			channel.from.disconnect(channel.to);
+			channel.from.connect(channel.buffer);
+		}
+		getSimulationContext().setRunning(true);
+		final ExecutorService executor=Executors.newFixedThreadPool(processes.size());
+		final List<Future<?>> futures=new ArrayList<>();
+		try {
+			for (final LogicalProcess process : processes) futures.add(executor.submit(process));
+			coordinate(stop.getTicks());
+			for (final Future<?> future : futures) future.get();
+		} catch (final ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+			throw new Simulator.InvalidSimulatorStateException(exception.getCause().toString());
+		} catch (final InterruptedException exception) {
+			abort();
+			Thread.currentThread().interrupt();
+		} finally {
+			stopProcesses(executor,futures);
+			stopProcessAgents();
+			getSimulationContext().setRunning(false);
+			for (final Channel channel : crossing) {
+				channel.from.disconnect(channel.buffer);
+				channel.from.connect(channel.to);
+			}
+		}
+		// deliver remaining messages, as done by the sequential simulator at the end of a run
+		long end=Long.MAX_VALUE;
+		for (final LogicalProcess process : processes) {
+			process.flushMessages();
+			end=Math.min(end,process.getNextTicks());
+		}
+		setSimulationTicks(end);
+		callEventsProcessedHook();
+	}
+
+	/**
+	 * Periodically calculates the global virtual time until it reaches the stop
+	 * time.
+	 */
+	private void coordinate(long stop) throws InterruptedException {
+		while (!finished) {
+			synchronized (coordinator) {
+				if (!gvtRequested&&!aborted) coordinator.wait(GVT_PERIOD);
+				gvtRequested=false;
+			}
+			pauseRequested=true;
+			for (final LogicalProcess process : processes) synchronized (process) {
+				process.notifyAll();
+			}
+			synchronized (coordinator) {
+				while ((paused<processes.size())&&!aborted) coordinator.wait();
+				if (aborted) return;
+				long gvt=Long.MAX_VALUE;
+				for (final LogicalProcess process : processes) gvt=Math.min(gvt,process.getLocalVirtualTime());
+				for (final LogicalProcess process : processes) process.collectFossils(gvt);
+				if (gvt>=stop) finished=true;
+				else setSimulationTicks(gvt);
+				if (adaptive) adaptWindow(gvt,stop);
+				horizon=addTicks(gvt,window);
+				paused=0;
+				round++;
+				pauseRequested=false;
+				coordinator.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Adapts the optimism window to the share of rolled back cycles since its
+	 * last change, only to be called while all logical processes are paused.
+	 * <p>
+	 * The window is not doubled beyond the remaining time of the run, so it can
+	 * shrink fast if rollbacks start later on.
+	 */
+	private void adaptWindow(long gvt, long stop) {
+		long done=0, rolledBack=0;
+		for (final LogicalProcess process : processes) {
+			done+=process.cycles;
+			rolledBack+=process.undone;
+		}
+		final long processed=done-cycles;
+		final long wasted=rolledBack-undone;
+		if (processed<SAMPLE_CYCLES) return; // too few cycles for a decision yet
+		cycles=done;
+		undone=rolledBack;
+		if ((wasted*SHRINK_RATIO)>processed) window=Math.max(INITIAL_WINDOW,window>>1);
+		else if (((wasted*GROW_RATIO)<=processed)&&(window<(stop-gvt))) window=addTicks(window,window);
+	}
+
+	/**
+	 * Partitions the model into logical processes and fills their event queues.
+	 *
+	 * @return mapping of the root domain's entities to their logical processes
+	 */
+	private Map<ModelEntity, LogicalProcess> buildPartitions(long stop) {
+		processes.clear();
+		final EventQueue<Agent> geq=getGlobalEventQueue();
+		while (!geq.isEmpty()) geq.dequeueAll(); // remove events of a previous run
+		final LogicalProcess rootProcess=new LogicalProcess(geq,getRootDomain().listAllAgents(false),stop);
+		processes.add(rootProcess);
+		final Map<ModelEntity, LogicalProcess> result=new IdentityHashMap<>();
+		result.put(getRootDomain(),rootProcess);
+		for (final ModelEntity entity : getRootDomain().listDomainEntities()) {
+			if (entity instanceof Domain) {
+				final LogicalProcess process=new LogicalProcess(queueFactory.get(),
+						((Domain) entity).listAllAgents(true),stop);
+				processes.add(process);
+				result.put(entity,process);
+			} else result.put(entity,rootProcess);
+		}
+		return result;
+	}
+
+	private static long addTicks(long ticks, long delta) {
+		if (ticks>(Long.MAX_VALUE-delta)) return Long.MAX_VALUE;
+		return ticks+delta;
+	}
+
+	private static void initEventQueue(EventQueue<Agent> queue, List<Agent> agents) {
+		queue.enqueueAll(agents,(Agent agent) -> {
+			final Time tone=agent.getTimeOfNextEvent();
+			if (tone==null) throw new Simulator.InvalidSimulatorStateException(
+					"Local event queue empty in agent "+agent.getFullName());
+			return tone;
+		});
+	}
+
+	/**
+	 * Checks that all connections between different partitions are declared.
+	 *
+	 * @param partitions mapping of the root domain's entities to their logical
+	 *                   processes
+	 * @param entity     the entity to check together with its subtree
+	 * @exception Simulator.InvalidSimulatorStateException if there is an
+	 *                                                     undeclared connection
+	 */
+	private void checkConnections(Map<ModelEntity, LogicalProcess> partitions, ModelEntity entity) {
+		checkConnections(partitions,entity.getInport());
+		checkConnections(partitions,entity.getOutport());
+		if (entity instanceof Domain)
+			for (final ModelEntity child : ((Domain) entity).listDomainEntities()) checkConnections(partitions,child);
+	}
+
+	private void checkConnections(Map<ModelEntity, LogicalProcess> partitions, Port from) {
+		if (from==null) return;
+		final LogicalProcess source=getPartition(partitions,from);
+		for (final Port to : from.listConnections()) if ((getPartition(partitions,to)!=source)&&!isDeclared(from,to))
+			throw new Simulator.InvalidSimulatorStateException("Undeclared connection between partitions from "
+					+from.getParent().getFullName()+" to "+to.getParent().getFullName());
+	}
+
+	private boolean isDeclared(Port from, Port to) {
+		for (final Channel channel : channels) if ((channel.from==from)&&(channel.to==to)) return true;
+		return false;
+	}
+
+	/**
+	 * Stops all logical processes still running, e.g. after a failure, and waits
+	 * until their threads have terminated.
+	 */
+	private void stopProcesses(ExecutorService executor, List<Future<?>> futures) {
+		boolean running=false;
+		for (final Future<?> future : futures) running|=!future.isDone();
+		if (running) {
+			abort();
+			for (final Future<?> future : futures) future.cancel(true);
+		}
+		executor.shutdown();
+		boolean interrupted=false;
+		while (!executor.isTerminated()) try {
+			executor.awaitTermination(1,TimeUnit.SECONDS);
+		} catch (final InterruptedException exception) {
+			interrupted=true;
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Returns the logical process the given port belongs to.
+	 */
+	private LogicalProcess getPartition(Map<ModelEntity, LogicalProcess> partitions, Port port) {
+		ModelEntity entity=port.getParent();
+		while ((entity.getParent()!=null)&&(entity.getParent()!=getRootDomain())) entity=entity.getParent();
+		return partitions.get(entity);
+	}
+
+	private void abort() {
+		aborted=true;
+		finished=true;
+		synchronized (coordinator) {
+			coordinator.notifyAll();
+		}
+		for (final LogicalProcess process : processes) synchronized (process) {
+			process.notifyAll();
+		}
+	}
+
+}